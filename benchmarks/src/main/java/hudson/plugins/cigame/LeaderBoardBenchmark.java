@@ -0,0 +1,212 @@
+package hudson.plugins.cigame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.cglib.proxy.MethodInterceptor;
+import org.mockito.cglib.proxy.MethodProxy;
+import org.mockito.internal.creation.jmock.ClassImposterizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import org.kohsuke.stapler.export.Flavor;
+import org.kohsuke.stapler.export.Model;
+import org.kohsuke.stapler.export.ModelBuilder;
+
+import hudson.model.User;
+import hudson.plugins.cigame.LeaderBoardAction.UserScore;
+import hudson.plugins.cigame.benchmark.BaselineCheck;
+
+/**
+ * Measures building the leader board of a population of users, for case sensitive and
+ * case insensitive user names: adding the users to the index, reading the sorted scores
+ * from the index, creating the snapshot that the leader board is read from, the whole
+ * {@link LeaderBoardAction#getUserScores(Collection, boolean)}, and exporting the scores
+ * as JSON the way <code>/cigame/api/json</code> does.
+ *
+ * {@link #main(String[])} runs the benchmarks and compares the results with the
+ * baseline in <code>baseline/leaderboard.json</code>. The baseline has to be recorded
+ * again when a benchmark is added or changes what it measures, see the benchmarks pom.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaderBoardBenchmark {
+
+    private static final Model<LeaderBoard> LEADER_BOARD_MODEL = new ModelBuilder().get(LeaderBoard.class);
+
+    @Param({ "1000", "10000", "100000" })
+    public int userCount;
+
+    @Param({ "true", "false" })
+    public boolean usernameIsCasesensitive;
+
+    private List<User> users;
+    private LeaderBoardIndex index;
+    private LeaderBoard leaderBoard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        users = createUsers(userCount);
+        index = new LeaderBoardIndex(usernameIsCasesensitive);
+        index.addAll(users);
+        leaderBoard = new LeaderBoard(index.getUserScores());
+    }
+
+    @Benchmark
+    public LeaderBoardIndex buildIndex() {
+        LeaderBoardIndex newIndex = new LeaderBoardIndex(usernameIsCasesensitive);
+        newIndex.addAll(users);
+        return newIndex;
+    }
+
+    @Benchmark
+    public List<UserScore> getSortedScores() {
+        return index.getUserScores();
+    }
+
+    @Benchmark
+    public LeaderBoardSnapshot createSnapshot() {
+        return index.createSnapshot();
+    }
+
+    @Benchmark
+    public List<UserScore> getUserScores() {
+        return new LeaderBoardAction().getUserScores(users, usernameIsCasesensitive);
+    }
+
+    @Benchmark
+    public long exportJson() throws IOException {
+        CountingWriter writer = new CountingWriter();
+        LEADER_BOARD_MODEL.writeTo(leaderBoard, Flavor.JSON.createDataWriter(leaderBoard, writer));
+        return writer.count;
+    }
+
+    /**
+     * Creates users with ids that sort in random order, where every tenth user has the
+     * upper case id of another user and every twentieth user is not participating.
+     * The scores are random and many users share the same score.
+     */
+    static List<User> createUsers(int count) {
+        Random random = new Random(count);
+        List<User> users = new ArrayList<User>(count);
+        for (int i = 0; i < count; i++) {
+            String id = Integer.toString(random.nextInt(count * 10), 36) + "-user" + i; //$NON-NLS-1$
+            if (i % 10 == 9) {
+                id = users.get(random.nextInt(i)).getId().toUpperCase();
+            }
+            UserScoreProperty property = new UserScoreProperty(random.nextInt(200) / 2.0 - 20, (i % 20) != 19);
+            users.add(ClassImposterizer.INSTANCE.imposterise(new StubUser(id, property), User.class));
+        }
+        return users;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File result = new File("target/leaderboard.json"); //$NON-NLS-1$
+        new Runner(new OptionsBuilder()
+                .include(LeaderBoardBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getPath())
+                .build()).run();
+        if (!BaselineCheck.check(result, new File("baseline/leaderboard.json"), BaselineCheck.DEFAULT_TOLERANCE)) { //$NON-NLS-1$
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The part of the leader board that is exported, without the Hudson instance.
+     */
+    @ExportedBean(defaultVisibility = 999)
+    public static class LeaderBoard {
+        private final List<UserScore> userScores;
+
+        LeaderBoard(List<UserScore> userScores) {
+            this.userScores = userScores;
+        }
+
+        @Exported
+        public List<UserScore> getUserScores() {
+            return userScores;
+        }
+    }
+
+    /**
+     * A user that is not loaded from Hudson. The users are generated subclasses, as
+     * {@link User} can not be constructed outside of Hudson, but unlike mocks they do
+     * not record the calls made to them.
+     */
+    private static class StubUser implements MethodInterceptor {
+        private final String id;
+        private final UserScoreProperty property;
+
+        StubUser(String id, UserScoreProperty property) {
+            this.id = id;
+            this.property = property;
+        }
+
+        public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getId") || name.equals("getFullName") || name.equals("getDisplayName")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                return id;
+            } else if (name.equals("getDescription")) { //$NON-NLS-1$
+                return null;
+            } else if (name.equals("getAbsoluteUrl")) { //$NON-NLS-1$
+                return "http://localhost:8080/user/" + id; //$NON-NLS-1$
+            } else if (name.equals("getProperty")) { //$NON-NLS-1$
+                return ((Class<?>) args[0]).isInstance(property) ? property : null;
+            }
+            return proxy.invokeSuper(obj, args);
+        }
+    }
+
+    /**
+     * Writer that only counts the written characters.
+     */
+    private static class CountingWriter extends Writer {
+        private long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
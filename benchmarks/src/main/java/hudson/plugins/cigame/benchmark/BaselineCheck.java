@@ -0,0 +1,159 @@
+package hudson.plugins.cigame.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Compares the results of a JMH run with a baseline run, both in the JSON result format
+ * of JMH, and reports the benchmarks that got slower or allocate more than the baseline.
+ *
+ * A benchmark is compared on its primary score and, if both runs were made with the GC
+ * profiler, on the bytes it allocates per operation. A benchmark that is not in the
+ * baseline is reported too, so a new or changed benchmark can not pass unchecked. As the scores depend on the machine, the baseline should
+ * be recorded on the machine that runs the check, by copying the results file of a JMH
+ * run to the baseline. The check fails if there is no baseline.
+ */
+public class BaselineCheck {
+
+    /** The fraction a score may get worse than the baseline before it is reported. */
+    public static final double DEFAULT_TOLERANCE = 0.25;
+
+    /** Name of the secondary metric of the GC profiler with the bytes allocated per operation. */
+    static final String ALLOCATION_METRIC = "gc.alloc.rate.norm"; //$NON-NLS-1$
+
+    /** Allocations that differ less than this from the baseline are not reported. */
+    static final double ALLOCATION_SLACK_BYTES = 64;
+
+    private BaselineCheck() {
+    }
+
+    /**
+     * Compares the results with the baseline, and prints the regressions.
+     *
+     * @param results the results file of the JMH run
+     * @param baseline the results file of the baseline run
+     * @param tolerance the fraction a score may get worse
+     * @return true, if there are no regressions; false, if there are or if there is no baseline
+     * @throws IOException thrown if a file could not be read
+     */
+    public static boolean check(File results, File baseline, double tolerance) throws IOException {
+        if (!baseline.isFile()) {
+            System.err.println("There is no baseline " + baseline + ", record one by copying " //$NON-NLS-1$ //$NON-NLS-2$
+                    + results + " to it on this machine"); //$NON-NLS-1$
+            return false;
+        }
+        List<String> regressions = getRegressions(read(results), read(baseline), tolerance);
+        for (String regression : regressions) {
+            System.err.println(regression);
+        }
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions compared with " + baseline); //$NON-NLS-1$
+        }
+        return regressions.isEmpty();
+    }
+
+    /**
+     * Returns a description of every score that is worse than in the baseline.
+     */
+    static List<String> getRegressions(JSONArray results, JSONArray baseline, double tolerance) {
+        Map<String, JSONObject> baselineResults = new HashMap<String, JSONObject>();
+        for (int i = 0; i < baseline.size(); i++) {
+            JSONObject result = baseline.getJSONObject(i);
+            baselineResults.put(getKey(result), result);
+        }
+
+        List<String> regressions = new ArrayList<String>();
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            String key = getKey(result);
+            JSONObject baselineResult = baselineResults.get(key);
+            if (baselineResult == null) {
+                regressions.add(key + ": not in the baseline"); //$NON-NLS-1$
+                continue;
+            }
+            double score = result.getJSONObject("primaryMetric").getDouble("score"); //$NON-NLS-1$ //$NON-NLS-2$
+            double baselineScore = baselineResult.getJSONObject("primaryMetric").getDouble("score"); //$NON-NLS-1$ //$NON-NLS-2$
+            boolean higherIsBetter = "thrpt".equals(result.getString("mode")); //$NON-NLS-1$ //$NON-NLS-2$
+            if (higherIsBetter ? (score < baselineScore * (1 - tolerance)) : (score > baselineScore * (1 + tolerance))) {
+                regressions.add(key + ": score " + score + " " + getUnit(result) //$NON-NLS-1$ //$NON-NLS-2$
+                        + ", baseline " + baselineScore); //$NON-NLS-1$
+            }
+
+            JSONObject allocation = getAllocationMetric(result);
+            JSONObject baselineAllocation = getAllocationMetric(baselineResult);
+            if ((allocation != null) && (baselineAllocation != null)) {
+                double bytes = allocation.getDouble("score"); //$NON-NLS-1$
+                double baselineBytes = baselineAllocation.getDouble("score"); //$NON-NLS-1$
+                if ((bytes > baselineBytes * (1 + tolerance)) && (bytes - baselineBytes > ALLOCATION_SLACK_BYTES)) {
+                    regressions.add(key + ": allocated " + bytes + " B/op, baseline " + baselineBytes); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Returns the name of the benchmark with its parameters, e.g. <code>Benchmark.run{size=10}</code>.
+     */
+    private static String getKey(JSONObject result) {
+        Map<String, String> params = new TreeMap<String, String>();
+        JSONObject paramsObject = result.optJSONObject("params"); //$NON-NLS-1$
+        if (paramsObject != null) {
+            for (Iterator<?> it = paramsObject.keys(); it.hasNext();) {
+                String name = (String) it.next();
+                params.put(name, paramsObject.getString(name));
+            }
+        }
+        return result.getString("benchmark") + params; //$NON-NLS-1$
+    }
+
+    private static String getUnit(JSONObject result) {
+        return result.getJSONObject("primaryMetric").optString("scoreUnit"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static JSONObject getAllocationMetric(JSONObject result) {
+        JSONObject metrics = result.optJSONObject("secondaryMetrics"); //$NON-NLS-1$
+        if (metrics == null) {
+            return null;
+        }
+        for (Iterator<?> it = metrics.keys(); it.hasNext();) {
+            String name = (String) it.next();
+            // the GC profiler prefixes its metrics with a dot
+            if (name.endsWith(ALLOCATION_METRIC)) {
+                return metrics.getJSONObject(name);
+            }
+        }
+        return null;
+    }
+
+    private static JSONArray read(File file) throws IOException {
+        return JSONArray.fromObject(FileUtils.readFileToString(file, "UTF-8")); //$NON-NLS-1$
+    }
+
+    /**
+     * Compares a results file with a baseline file, e.g.
+     * <code>BaselineCheck target/results.json baseline/results.json 0.25</code>.
+     * Exits with status 1 if there are regressions.
+     */
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 2) || (args.length > 3)) {
+            System.err.println("Usage: BaselineCheck <results> <baseline> [tolerance]"); //$NON-NLS-1$
+            System.exit(2);
+        }
+        double tolerance = (args.length == 3) ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE;
+        if (!check(new File(args[0]), new File(args[1]), tolerance)) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package hudson.plugins.cigame.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import hudson.model.AbstractBuild;
+import hudson.plugins.cigame.model.EvaluationContext;
+import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.RuleTimings;
+import hudson.plugins.cigame.model.ScoreCard;
+import hudson.plugins.cigame.rules.build.BuildRuleSet;
+import hudson.plugins.cigame.rules.plugins.checkstyle.CheckstyleRuleSet;
+import hudson.plugins.cigame.rules.plugins.findbugs.FindBugsRuleSet;
+import hudson.plugins.cigame.rules.plugins.opentasks.OpenTasksRuleSet;
+import hudson.plugins.cigame.rules.plugins.pmd.PmdRuleSet;
+import hudson.plugins.cigame.rules.plugins.violation.ViolationsRuleSet;
+import hudson.plugins.cigame.rules.plugins.warnings.WarningsRuleSet;
+import hudson.plugins.cigame.rules.unittesting.TestCaseRuleSet;
+import hudson.plugins.cigame.rules.unittesting.UnitTestingRuleSet;
+
+/**
+ * Measures the time and memory it takes to score a build with all the rules, the way
+ * the {@link hudson.plugins.cigame.GamePublisher} scores it: with a new evaluation
+ * context per build and the rule timings turned on.
+ *
+ * Run {@link #main(String[])}, or the benchmarks jar, to get the average time per build
+ * together with the bytes allocated per build ({@code gc.alloc.rate.norm}) for every
+ * combination of the parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreCardBenchmark {
+
+    /** Number of threads that evaluate the rules in parallel, as in the plugin. */
+    private static final int RULE_EVALUATION_THREADS = 4;
+
+    @Param({ "1", "20" })
+    public int historyDepth;
+
+    @Param({ "0", "10", "100" })
+    public int moduleCount;
+
+    @Param({ "100", "5000" })
+    public int testCount;
+
+    @Param({ "10", "1000" })
+    public int annotationCount;
+
+    private RuleBook ruleBook;
+    private AbstractBuild<?, ?> build;
+    private ExecutorService ruleExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ruleBook = new RuleBook(new BuildRuleSet());
+        ruleBook.addRuleSet(new UnitTestingRuleSet());
+        ruleBook.addRuleSet(new TestCaseRuleSet());
+        ruleBook.addRuleSet(new OpenTasksRuleSet());
+        ruleBook.addRuleSet(new ViolationsRuleSet());
+        ruleBook.addRuleSet(new PmdRuleSet());
+        ruleBook.addRuleSet(new FindBugsRuleSet());
+        ruleBook.addRuleSet(new WarningsRuleSet());
+        ruleBook.addRuleSet(new CheckstyleRuleSet());
+        build = new SyntheticBuilds(historyDepth, moduleCount, testCount, annotationCount).createBuild();
+        ruleExecutor = Executors.newFixedThreadPool(RULE_EVALUATION_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ruleExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public ScoreCard record() {
+        ScoreCard scoreCard = new ScoreCard();
+        scoreCard.record(build, ruleBook, createContext(), null);
+        return scoreCard;
+    }
+
+    @Benchmark
+    public ScoreCard recordInParallel() throws InterruptedException {
+        ScoreCard scoreCard = new ScoreCard();
+        scoreCard.record(build, ruleBook, createContext(), ruleExecutor, 60, TimeUnit.SECONDS, null);
+        return scoreCard;
+    }
+
+    private static EvaluationContext createContext() {
+        EvaluationContext context = new EvaluationContext();
+        context.setAttribute(RuleTimings.class, new RuleTimings());
+        return context;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScoreCardBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,473 @@
+package hudson.plugins.cigame.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+
+import hudson.maven.MavenBuild;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.model.FreeStyleBuild;
+import hudson.model.Result;
+import hudson.plugins.analysis.core.HealthDescriptor;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.checkstyle.CheckStyleResult;
+import hudson.plugins.findbugs.FindBugsResult;
+import hudson.plugins.pmd.PmdResult;
+import hudson.plugins.tasks.TasksResult;
+import hudson.plugins.violations.ViolationsReport;
+import hudson.plugins.warnings.WarningsResult;
+import hudson.tasks.test.AbstractTestResultAction;
+
+/**
+ * Hand written stubs of the Hudson model objects that the rules read.
+ *
+ * Mocks are not used, as a mock records every call made to it and would be measured
+ * along with the rules. The builds, modules and analysis results can not be constructed
+ * without a running Hudson, so they are instantiated without calling a constructor,
+ * and only the methods that the rules call are implemented.
+ */
+final class Stubs {
+
+    private static final Objenesis OBJENESIS = new ObjenesisStd();
+
+    /** Health descriptor of the analysis result actions, without thresholds. */
+    static final HealthDescriptor HEALTH_DESCRIPTOR = new StubHealthDescriptor();
+
+    private Stubs() {
+    }
+
+    /**
+     * The state of a stubbed build.
+     */
+    static class BuildData {
+        private final Result result;
+        private final int number;
+        private final AbstractBuild<?, ?> previousBuild;
+        private final AbstractTestResultAction<?> testResultAction;
+        private final List<Action> actions;
+
+        BuildData(Result result, int number, AbstractBuild<?, ?> previousBuild,
+                AbstractTestResultAction<?> testResultAction, List<Action> actions) {
+            this.result = result;
+            this.number = number;
+            this.previousBuild = previousBuild;
+            this.testResultAction = testResultAction;
+            this.actions = actions;
+        }
+
+        /**
+         * Returns the actions of the type, as {@link hudson.model.Actionable#getActions(Class)} does.
+         */
+        <T extends Action> List<T> getActions(Class<T> type) {
+            List<T> result = new ArrayList<T>();
+            for (Action action : actions) {
+                if (type.isInstance(action)) {
+                    result.add(type.cast(action));
+                }
+            }
+            return result;
+        }
+    }
+
+    static FreeStyleBuild newFreeStyleBuild(BuildData data) {
+        StubFreeStyleBuild build = (StubFreeStyleBuild) OBJENESIS.newInstance(StubFreeStyleBuild.class);
+        build.data = data;
+        return build;
+    }
+
+    static MavenBuild newMavenBuild(BuildData data) {
+        StubMavenBuild build = (StubMavenBuild) OBJENESIS.newInstance(StubMavenBuild.class);
+        build.data = data;
+        return build;
+    }
+
+    static MavenModuleSetBuild newMavenModuleSetBuild(BuildData data, Map<MavenModule, MavenBuild> moduleLastBuilds) {
+        StubMavenModuleSetBuild build = (StubMavenModuleSetBuild) OBJENESIS.newInstance(StubMavenModuleSetBuild.class);
+        build.data = data;
+        build.moduleLastBuilds = Collections.unmodifiableMap(moduleLastBuilds);
+        return build;
+    }
+
+    /**
+     * Returns a module, which is only used as a key of the module builds.
+     */
+    static MavenModule newMavenModule() {
+        return (MavenModule) OBJENESIS.newInstance(MavenModule.class);
+    }
+
+    static CheckStyleResult newCheckStyleResult(int[] numberOfAnnotations) {
+        StubCheckStyleResult result = (StubCheckStyleResult) OBJENESIS.newInstance(StubCheckStyleResult.class);
+        result.numberOfAnnotations = numberOfAnnotations;
+        return result;
+    }
+
+    static FindBugsResult newFindBugsResult(int[] numberOfAnnotations) {
+        StubFindBugsResult result = (StubFindBugsResult) OBJENESIS.newInstance(StubFindBugsResult.class);
+        result.numberOfAnnotations = numberOfAnnotations;
+        return result;
+    }
+
+    static PmdResult newPmdResult(int[] numberOfAnnotations) {
+        StubPmdResult result = (StubPmdResult) OBJENESIS.newInstance(StubPmdResult.class);
+        result.numberOfAnnotations = numberOfAnnotations;
+        return result;
+    }
+
+    static TasksResult newTasksResult(int[] numberOfAnnotations) {
+        StubTasksResult result = (StubTasksResult) OBJENESIS.newInstance(StubTasksResult.class);
+        result.numberOfAnnotations = numberOfAnnotations;
+        return result;
+    }
+
+    static WarningsResult newWarningsResult(int[] numberOfAnnotations) {
+        StubWarningsResult result = (StubWarningsResult) OBJENESIS.newInstance(StubWarningsResult.class);
+        result.numberOfAnnotations = numberOfAnnotations;
+        return result;
+    }
+
+    private static int getNumberOfAnnotations(int[] numberOfAnnotations, Priority priority) {
+        return numberOfAnnotations[priority.ordinal()];
+    }
+
+    private static int getNumberOfAnnotations(int[] numberOfAnnotations) {
+        int sum = 0;
+        for (int count : numberOfAnnotations) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubFreeStyleBuild extends FreeStyleBuild {
+        private BuildData data;
+
+        private StubFreeStyleBuild() throws Exception {
+            super(null);
+        }
+
+        @Override
+        public Result getResult() {
+            return data.result;
+        }
+
+        @Override
+        public int getNumber() {
+            return data.number;
+        }
+
+        @Override
+        public FreeStyleBuild getPreviousBuild() {
+            return (FreeStyleBuild) data.previousBuild;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public AbstractTestResultAction getTestResultAction() {
+            return data.testResultAction;
+        }
+
+        @Override
+        public <T extends Action> List<T> getActions(Class<T> type) {
+            return data.getActions(type);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubMavenBuild extends MavenBuild {
+        private BuildData data;
+
+        private StubMavenBuild() throws Exception {
+            super(null);
+        }
+
+        @Override
+        public Result getResult() {
+            return data.result;
+        }
+
+        @Override
+        public int getNumber() {
+            return data.number;
+        }
+
+        @Override
+        public MavenBuild getPreviousBuild() {
+            return (MavenBuild) data.previousBuild;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public AbstractTestResultAction getTestResultAction() {
+            return data.testResultAction;
+        }
+
+        @Override
+        public <T extends Action> List<T> getActions(Class<T> type) {
+            return data.getActions(type);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubMavenModuleSetBuild extends MavenModuleSetBuild {
+        private BuildData data;
+        private Map<MavenModule, MavenBuild> moduleLastBuilds;
+
+        private StubMavenModuleSetBuild() throws Exception {
+            super(null);
+        }
+
+        @Override
+        public Result getResult() {
+            return data.result;
+        }
+
+        @Override
+        public int getNumber() {
+            return data.number;
+        }
+
+        @Override
+        public MavenModuleSetBuild getPreviousBuild() {
+            return (MavenModuleSetBuild) data.previousBuild;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public AbstractTestResultAction getTestResultAction() {
+            return data.testResultAction;
+        }
+
+        @Override
+        public <T extends Action> List<T> getActions(Class<T> type) {
+            return data.getActions(type);
+        }
+
+        @Override
+        public Map<MavenModule, MavenBuild> getModuleLastBuilds() {
+            return moduleLastBuilds;
+        }
+    }
+
+    /**
+     * Test result with the counts of the build; the names of the failed tests are not known.
+     */
+    @SuppressWarnings("unchecked")
+    static class StubTestResultAction extends AbstractTestResultAction {
+        private final int totalCount;
+        private final int failCount;
+        private final int skipCount;
+
+        StubTestResultAction(int totalCount, int failCount, int skipCount) {
+            super(null);
+            this.totalCount = totalCount;
+            this.failCount = failCount;
+            this.skipCount = skipCount;
+        }
+
+        @Override
+        public int getTotalCount() {
+            return totalCount;
+        }
+
+        @Override
+        public int getFailCount() {
+            return failCount;
+        }
+
+        @Override
+        public int getSkipCount() {
+            return skipCount;
+        }
+
+        @Override
+        public Object getResult() {
+            return this;
+        }
+    }
+
+    /**
+     * Violations report with the number of violations of every type.
+     */
+    @SuppressWarnings("serial")
+    static class StubViolationsReport extends ViolationsReport {
+        private final Map<String, Integer> counts = new HashMap<String, Integer>();
+        private final Map<String, TypeReport> typeReports = new HashMap<String, TypeReport>();
+
+        StubViolationsReport(Map<String, Integer> counts) {
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                typeReports.put(entry.getKey(), new TypeReport(entry.getKey(), null, entry.getValue()));
+                this.counts.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public Map<String, TypeReport> getTypeReports() {
+            return typeReports;
+        }
+
+        @Override
+        public int typeCount(String type) {
+            Integer count = counts.get(type);
+            return (count == null) ? 0 : count.intValue();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubHealthDescriptor implements HealthDescriptor {
+        public String getThreshold() {
+            return null;
+        }
+
+        public String getNewThreshold() {
+            return null;
+        }
+
+        public String getFailureThreshold() {
+            return null;
+        }
+
+        public String getNewFailureThreshold() {
+            return null;
+        }
+
+        public String getHealthy() {
+            return null;
+        }
+
+        public String getUnHealthy() {
+            return null;
+        }
+
+        public Priority getMinimumPriority() {
+            return Priority.LOW;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubCheckStyleResult extends CheckStyleResult {
+        private int[] numberOfAnnotations;
+
+        private StubCheckStyleResult() {
+            super(null, null, null);
+        }
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public int getNumberOfAnnotations() {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations);
+        }
+
+        @Override
+        public int getNumberOfAnnotations(Priority priority) {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations, priority);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubFindBugsResult extends FindBugsResult {
+        private int[] numberOfAnnotations;
+
+        private StubFindBugsResult() {
+            super(null, null, null);
+        }
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public int getNumberOfAnnotations() {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations);
+        }
+
+        @Override
+        public int getNumberOfAnnotations(Priority priority) {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations, priority);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubPmdResult extends PmdResult {
+        private int[] numberOfAnnotations;
+
+        private StubPmdResult() {
+            super(null, null, null);
+        }
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public int getNumberOfAnnotations() {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations);
+        }
+
+        @Override
+        public int getNumberOfAnnotations(Priority priority) {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations, priority);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubTasksResult extends TasksResult {
+        private int[] numberOfAnnotations;
+
+        private StubTasksResult() {
+            super(null, null, null, null, null, null);
+        }
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public int getNumberOfAnnotations() {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations);
+        }
+
+        @Override
+        public int getNumberOfAnnotations(Priority priority) {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations, priority);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class StubWarningsResult extends WarningsResult {
+        private int[] numberOfAnnotations;
+
+        private StubWarningsResult() {
+            super(null, null, null);
+        }
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public int getNumberOfAnnotations() {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations);
+        }
+
+        @Override
+        public int getNumberOfAnnotations(Priority priority) {
+            return Stubs.getNumberOfAnnotations(numberOfAnnotations, priority);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package hudson.plugins.cigame.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hudson.maven.MavenBuild;
+import hudson.maven.MavenModule;
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.model.Result;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.checkstyle.CheckStyleResultAction;
+import hudson.plugins.cigame.ScoreCardAction;
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.util.HashedNames;
+import hudson.plugins.findbugs.FindBugsResultAction;
+import hudson.plugins.pmd.PmdResultAction;
+import hudson.plugins.tasks.TasksResultAction;
+import hudson.plugins.violations.ViolationsBuildAction;
+import hudson.plugins.warnings.WarningsResultAction;
+
+/**
+ * A synthetic build to score, with its history.
+ *
+ * The build has {@code historyDepth} previous builds. The oldest one was scored and
+ * is the build that the rules compare with; the ones in between were not built, so the
+ * rules that skip unbuilt builds walk back the whole history to find it. With modules,
+ * the build is a Maven multi module build where every module has the same history;
+ * without, it is a free style build. Every module, or the free style build, has
+ * {@code testCount} tests and {@code annotationCount} warnings of every static analysis
+ * plugin and violation type, and the previous build has a few more, so that the rules score.
+ */
+final class SyntheticBuilds {
+
+    /** The violation types that are reported. */
+    static final String[] VIOLATION_TYPES = { "pmd", "cpd", "checkstyle", "findbugs" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    private final int historyDepth;
+    private final int moduleCount;
+    private final int testCount;
+    private final int annotationCount;
+
+    /**
+     * @param historyDepth number of previous builds, at least 1
+     * @param moduleCount number of modules, or 0 for a free style build
+     * @param testCount number of tests of every module
+     * @param annotationCount number of warnings of every plugin in every module
+     */
+    SyntheticBuilds(int historyDepth, int moduleCount, int testCount, int annotationCount) {
+        if (historyDepth < 1) {
+            throw new IllegalArgumentException("The history depth must be at least 1"); //$NON-NLS-1$
+        }
+        this.historyDepth = historyDepth;
+        this.moduleCount = moduleCount;
+        this.testCount = testCount;
+        this.annotationCount = annotationCount;
+    }
+
+    /**
+     * Creates the build and its history.
+     * @return the build to score
+     */
+    AbstractBuild<?, ?> createBuild() {
+        if (moduleCount == 0) {
+            AbstractBuild<?, ?> build = null;
+            for (int age = historyDepth; age >= 0; age--) {
+                build = Stubs.newFreeStyleBuild(createBuildData(age, build, "test")); //$NON-NLS-1$
+            }
+            return build;
+        }
+
+        List<MavenModule> modules = new ArrayList<MavenModule>();
+        MavenBuild[] moduleBuilds = new MavenBuild[moduleCount];
+        for (int i = 0; i < moduleCount; i++) {
+            modules.add(Stubs.newMavenModule());
+        }
+        AbstractBuild<?, ?> build = null;
+        for (int age = historyDepth; age >= 0; age--) {
+            Map<MavenModule, MavenBuild> moduleLastBuilds = new LinkedHashMap<MavenModule, MavenBuild>();
+            for (int i = 0; i < moduleCount; i++) {
+                moduleBuilds[i] = Stubs.newMavenBuild(createBuildData(age, moduleBuilds[i], "module" + i)); //$NON-NLS-1$
+                moduleLastBuilds.put(modules.get(i), moduleBuilds[i]);
+            }
+            build = Stubs.newMavenModuleSetBuild(new Stubs.BuildData(getResult(age), getNumber(age), build, null,
+                    new ArrayList<Action>()), moduleLastBuilds);
+        }
+        return build;
+    }
+
+    private Result getResult(int age) {
+        return ((age == 0) || (age == historyDepth)) ? Result.SUCCESS : Result.NOT_BUILT;
+    }
+
+    private int getNumber(int age) {
+        return historyDepth - age + 1;
+    }
+
+    private Stubs.BuildData createBuildData(int age, AbstractBuild<?, ?> previousBuild, String testPrefix) {
+        Result result = getResult(age);
+        List<Action> actions = new ArrayList<Action>();
+        if (result == Result.NOT_BUILT) {
+            return new Stubs.BuildData(result, getNumber(age), previousBuild, null, actions);
+        }
+
+        // the previous build has more tests and warnings, and a few more failed tests
+        int extra = (age == 0) ? 0 : 1 + testCount / 50;
+        int totalCount = testCount + extra;
+        int failCount = testCount / 100 + extra;
+        int[] numberOfAnnotations = getNumberOfAnnotations(annotationCount + ((age == 0) ? 0 : 5));
+        actions.add(new CheckStyleResultAction(null, Stubs.HEALTH_DESCRIPTOR, Stubs.newCheckStyleResult(numberOfAnnotations)));
+        actions.add(new FindBugsResultAction(null, Stubs.HEALTH_DESCRIPTOR, Stubs.newFindBugsResult(numberOfAnnotations)));
+        actions.add(new PmdResultAction(null, Stubs.HEALTH_DESCRIPTOR, Stubs.newPmdResult(numberOfAnnotations)));
+        actions.add(new TasksResultAction(null, Stubs.HEALTH_DESCRIPTOR, Stubs.newTasksResult(numberOfAnnotations)));
+        actions.add(new WarningsResultAction(null, Stubs.HEALTH_DESCRIPTOR, Stubs.newWarningsResult(numberOfAnnotations)));
+        Map<String, Integer> violations = new LinkedHashMap<String, Integer>();
+        for (String type : VIOLATION_TYPES) {
+            violations.put(type, annotationCount + ((age == 0) ? 0 : 5));
+        }
+        actions.add(new ViolationsBuildAction(null, new Stubs.StubViolationsReport(violations)));
+
+        if (age == 0) {
+            // the build being scored only has its test result
+            return new Stubs.BuildData(result, getNumber(age), previousBuild,
+                    new Stubs.StubTestResultAction(totalCount, failCount, 0), actions);
+        }
+        // scored builds keep a digest of their tests in the score card
+        List<String> failedTests = new ArrayList<String>();
+        for (int i = 0; i < failCount; i++) {
+            failedTests.add(testPrefix + ".SyntheticTest.test" + i); //$NON-NLS-1$
+        }
+        TestCountDigest digest = new TestCountDigest(totalCount, failCount, 0, HashedNames.of(failedTests));
+        actions.add(new ScoreCardAction(null, null, digest));
+        return new Stubs.BuildData(result, getNumber(age), previousBuild, null, actions);
+    }
+
+    /**
+     * Splits the warnings over the priorities: a tenth high, three tenths normal and the rest low.
+     */
+    private static int[] getNumberOfAnnotations(int count) {
+        int[] numberOfAnnotations = new int[Priority.values().length];
+        numberOfAnnotations[Priority.HIGH.ordinal()] = count / 10;
+        numberOfAnnotations[Priority.NORMAL.ordinal()] = count * 3 / 10;
+        numberOfAnnotations[Priority.LOW.ordinal()] = count - count / 10 - count * 3 / 10;
+        return numberOfAnnotations;
+    }
+}
@@ -0,0 +1,92 @@
+package hudson.plugins.cigame.benchmark;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+public class BaselineCheckTest {
+
+    @Test
+    public void assertSlowerBenchmarksAreReported() {
+        JSONArray baseline = toArray(createResult("run", "avgt", 100, 1000), createResult("other", "avgt", 100, 1000));
+        JSONArray results = toArray(createResult("run", "avgt", 130, 1000), createResult("other", "avgt", 120, 1000));
+
+        List<String> regressions = BaselineCheck.getRegressions(results, baseline, 0.25);
+
+        assertThat(regressions.size(), is(1));
+        assertTrue(regressions.get(0).startsWith("Benchmark.run{size=10}: score 130.0"));
+    }
+
+    @Test
+    public void assertLowerThroughputIsReported() {
+        JSONArray baseline = toArray(createResult("run", "thrpt", 100, 1000));
+
+        assertTrue(BaselineCheck.getRegressions(toArray(createResult("run", "thrpt", 130, 1000)), baseline, 0.25).isEmpty());
+        assertThat(BaselineCheck.getRegressions(toArray(createResult("run", "thrpt", 70, 1000)), baseline, 0.25).size(), is(1));
+    }
+
+    @Test
+    public void assertAllocationsAreCompared() {
+        JSONArray baseline = toArray(createResult("run", "avgt", 100, 1000), createResult("small", "avgt", 100, 0));
+        JSONArray results = toArray(createResult("run", "avgt", 100, 2000), createResult("small", "avgt", 100, 32));
+
+        List<String> regressions = BaselineCheck.getRegressions(results, baseline, 0.25);
+
+        assertThat(regressions.size(), is(1));
+        assertTrue(regressions.get(0).startsWith("Benchmark.run{size=10}: allocated 2000.0"));
+    }
+
+    @Test
+    public void assertBenchmarksWithoutBaselineAreReported() {
+        JSONArray baseline = toArray(createResult("run", "avgt", 100, 1000));
+        JSONObject newResult = createResult("run", "avgt", 100, 1000);
+        newResult.getJSONObject("params").put("size", "20");
+
+        List<String> regressions = BaselineCheck.getRegressions(toArray(newResult), baseline, 0.25);
+
+        assertThat(regressions.size(), is(1));
+        assertThat(regressions.get(0), is("Benchmark.run{size=20}: not in the baseline"));
+    }
+
+    @Test
+    public void assertCheckFailsWithoutBaseline() throws Exception {
+        File missing = new File("target/missing-baseline.json");
+
+        assertFalse(BaselineCheck.check(new File("target/results.json"), missing, 0.25));
+    }
+
+    private static JSONArray toArray(JSONObject... results) {
+        JSONArray array = new JSONArray();
+        for (JSONObject result : results) {
+            array.add(result);
+        }
+        return array;
+    }
+
+    private static JSONObject createResult(String name, String mode, double score, double allocatedBytes) {
+        JSONObject result = new JSONObject();
+        result.put("benchmark", "Benchmark." + name);
+        result.put("mode", mode);
+        JSONObject params = new JSONObject();
+        params.put("size", "10");
+        result.put("params", params);
+        JSONObject primaryMetric = new JSONObject();
+        primaryMetric.put("score", score);
+        primaryMetric.put("scoreUnit", "us/op");
+        result.put("primaryMetric", primaryMetric);
+        JSONObject allocation = new JSONObject();
+        allocation.put("score", allocatedBytes);
+        allocation.put("scoreUnit", "B/op");
+        JSONObject secondaryMetrics = new JSONObject();
+        secondaryMetrics.put("·" + BaselineCheck.ALLOCATION_METRIC, allocation);
+        result.put("secondaryMetrics", secondaryMetrics);
+        return result;
+    }
+}
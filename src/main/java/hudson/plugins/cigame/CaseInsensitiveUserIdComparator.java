@@ -8,7 +8,33 @@ import java.util.Comparator;
  * Comparator that ignores casing on the User's ID
  */
 class CaseInsensitiveUserIdComparator implements Comparator<User> {
+
     public int compare(User arg0, User arg1) {
-        return arg0.getId().compareToIgnoreCase(arg1.getId());
-    }            
+        return getCanonicalId(arg0.getId()).compareTo(getCanonicalId(arg1.getId()));
+    }
+
+    /**
+     * Returns the id with its casing removed. Two ids are equal ignoring case
+     * if, and only if, their canonical ids are equal, which makes the canonical
+     * id usable as a key in hash based collections. An id that is already
+     * canonical is returned as it is, without being copied.
+     * 
+     * @param id the user id
+     * @return the canonical id
+     */
+    static String getCanonicalId(String id) {
+        char[] chars = null;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            // same character mapping as String.equalsIgnoreCase()
+            char canonical = Character.toLowerCase(Character.toUpperCase(c));
+            if (canonical != c) {
+                if (chars == null) {
+                    chars = id.toCharArray();
+                }
+                chars[i] = canonical;
+            }
+        }
+        return (chars == null) ? id : new String(chars);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package hudson.plugins.cigame;
+
+/**
+ * The points a user has been given per day, for the last {@link #CAPACITY} days.
+ *
+ * The points are kept in a ring buffer of doubles, with one bucket per day, so the
+ * scores of a user take a fixed amount of memory and the score of a time window is
+ * the sum of at most one bucket per day of the window. Days are numbered as returned
+ * by {@link ScoreWindow#getDay(long)}.
+ */
+final class DailyScores {
+
+    /** The number of days that are kept, enough for the longest {@link ScoreWindow}. */
+    static final int CAPACITY = 31;
+
+    private final double[] buckets = new double[CAPACITY];
+
+    /** The day of the newest bucket. */
+    private long lastDay;
+
+    /**
+     * Adds points to the score of the day. Points for days that are older than the
+     * kept days are ignored.
+     *
+     * @param day the day the points were given
+     * @param points the points to add
+     */
+    synchronized void add(long day, double points) {
+        if (day > lastDay) {
+            // the buckets of the days in between are reused for the new days
+            for (long d = Math.max(lastDay + 1, day - CAPACITY + 1); d <= day; d++) {
+                buckets[getIndex(d)] = 0;
+            }
+            lastDay = day;
+        } else if (day <= lastDay - CAPACITY) {
+            return;
+        }
+        buckets[getIndex(day)] += points;
+    }
+
+    /**
+     * Returns the sum of the points of the days between the first and last day.
+     *
+     * @param firstDay the first day, inclusive
+     * @param toDay the last day, inclusive
+     * @return the score of the days
+     */
+    synchronized double getScore(long firstDay, long toDay) {
+        double score = 0;
+        long from = Math.max(firstDay, lastDay - CAPACITY + 1);
+        long to = Math.min(toDay, lastDay);
+        for (long day = from; day <= to; day++) {
+            score += buckets[getIndex(day)];
+        }
+        return score;
+    }
+
+    /**
+     * Sets the points of all days to 0.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            buckets[i] = 0;
+        }
+    }
+
+    private static int getIndex(long day) {
+        return (int) (((day % CAPACITY) + CAPACITY) % CAPACITY);
+    }
+}
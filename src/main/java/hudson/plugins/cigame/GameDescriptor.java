@@ -1,11 +1,28 @@
 package hudson.plugins.cigame;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import net.sf.json.JSONObject;
 
 import org.kohsuke.stapler.StaplerRequest;
 
 import hudson.Extension;
+import hudson.XmlFile;
 import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.cigame.model.BuildHistoryIndex;
 import hudson.plugins.cigame.model.RuleBook;
 import hudson.plugins.cigame.model.RuleSet;
 import hudson.plugins.cigame.rules.build.BuildRuleSet;
@@ -15,9 +32,12 @@ import hudson.plugins.cigame.rules.plugins.opentasks.OpenTasksRuleSet;
 import hudson.plugins.cigame.rules.plugins.pmd.PmdRuleSet;
 import hudson.plugins.cigame.rules.plugins.violation.ViolationsRuleSet;
 import hudson.plugins.cigame.rules.plugins.warnings.WarningsRuleSet;
+import hudson.plugins.cigame.rules.unittesting.FlakyTestHistory;
+import hudson.plugins.cigame.rules.unittesting.TestCaseRuleSet;
 import hudson.plugins.cigame.rules.unittesting.UnitTestingRuleSet;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Publisher;
+import hudson.util.DaemonThreadFactory;
 
 @Extension
 public class GameDescriptor extends BuildStepDescriptor<Publisher> {
@@ -25,8 +45,34 @@ public class GameDescriptor extends BuildStepDescriptor<Publisher> {
     public static final String ACTION_LOGO_LARGE = "/plugin/ci-game/icons/game-32x32.png"; //$NON-NLS-1$
     public static final String ACTION_LOGO_MEDIUM = "/plugin/ci-game/icons/game-22x22.png"; //$NON-NLS-1$
     
+    private static final Logger LOGGER = Logger.getLogger(GameDescriptor.class.getName());
+    
+    private static final String SCORE_LEDGER_FILENAME = "cigame-scores.ledger"; //$NON-NLS-1$
+    private static final long SCORE_LEDGER_WRITE_PERIOD = TimeUnit.SECONDS.toMillis(1);
+    private static final long SCORE_LEDGER_FOLD_PERIOD = TimeUnit.MINUTES.toMillis(5);
+    private static final int SCORING_WORKERS = 2;
+    private static final int SCORING_QUEUE_CAPACITY = 100;
+    private static final long SCORING_SHUTDOWN_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+    private static final long LEADER_BOARD_PUBLISH_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long SCORE_EVENT_FLUSH_PERIOD = TimeUnit.SECONDS.toMillis(1);
+    private static final int SCORE_EVENT_CLIENT_CAPACITY = 100;
+    /** Every client of the score event stream holds a request thread, so they are kept well below the usual pool size. */
+    private static final int MAX_SCORE_EVENT_CLIENTS = 50;
+    private static final int RULE_EVALUATION_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    
     private transient RuleBook rulebook;
+    private transient LeaderBoardIndex leaderBoardIndex;
+    private transient volatile LeaderBoardPublisher leaderBoardPublisher;
+    private transient ScoreLedger scoreLedger;
+    private transient ScoringQueue scoringQueue;
+    private transient ExecutorService ruleExecutor;
+    private transient Map<String, BuildHistoryIndex> buildHistoryIndexes;
+    private transient Map<String, FlakyTestHistory> flakyTestHistories;
+    private transient RuleMetrics ruleMetrics;
+    private transient ScoreEventBroadcaster scoreEventBroadcaster;
     private boolean namesAreCaseSensitive = true;
+    private boolean scoringIsAsynchronous;
+    private boolean rulesAreEvaluatedInParallel;
 
     public GameDescriptor() {
         super(GamePublisher.class);
@@ -44,6 +90,7 @@ public class GameDescriptor extends BuildStepDescriptor<Publisher> {
 
             addRuleSetIfAvailable(rulebook, new BuildRuleSet());
             addRuleSetIfAvailable(rulebook, new UnitTestingRuleSet());
+            addRuleSetIfAvailable(rulebook, new TestCaseRuleSet());
             addRuleSetIfAvailable(rulebook, new OpenTasksRuleSet());
             addRuleSetIfAvailable(rulebook, new ViolationsRuleSet());
             addRuleSetIfAvailable(rulebook, new PmdRuleSet());
@@ -54,6 +101,254 @@ public class GameDescriptor extends BuildStepDescriptor<Publisher> {
         return rulebook;
     }
 
+    /**
+     * Returns the leader board index, which is built from all users the first time it is used.
+     * 
+     * @return the index of the users participating in the game.
+     */
+    synchronized LeaderBoardIndex getLeaderBoardIndex() {
+        if (leaderBoardIndex == null) {
+            leaderBoardIndex = new LeaderBoardIndex(namesAreCaseSensitive);
+            leaderBoardIndex.addAll(User.getAll());
+        }
+        return leaderBoardIndex;
+    }
+
+    /**
+     * Returns the latest published snapshot of the leader board index. Reading the snapshot
+     * does not block, as it is published by its own thread when the scores change.
+     * 
+     * @return the snapshot of the leader board.
+     */
+    LeaderBoardSnapshot getLeaderBoardSnapshot() {
+        return getLeaderBoardSnapshot(null);
+    }
+
+    /**
+     * Returns the latest published snapshot of the leader board of the time window that
+     * ends today. The window snapshots are published by the same thread as the lifetime
+     * snapshot, which also rolls the windows when the day changes.
+     * 
+     * @param window the time window, or null for the lifetime scores
+     * @return the snapshot of the leader board.
+     */
+    LeaderBoardSnapshot getLeaderBoardSnapshot(ScoreWindow window) {
+        LeaderBoardPublisher publisher = leaderBoardPublisher;
+        if (publisher == null) {
+            publisher = getLeaderBoardPublisher();
+        }
+        return publisher.getSnapshot(window);
+    }
+
+    private synchronized LeaderBoardPublisher getLeaderBoardPublisher() {
+        if (leaderBoardPublisher == null) {
+            leaderBoardPublisher = new LeaderBoardPublisher(getLeaderBoardIndex(), 
+                    LEADER_BOARD_PUBLISH_DELAY, TimeUnit.MILLISECONDS);
+        }
+        return leaderBoardPublisher;
+    }
+
+    /**
+     * Returns the score version of the leader board index, which is increased every time
+     * a score changes.
+     * 
+     * @return the current score version.
+     */
+    long getScoreVersion() {
+        return getLeaderBoardIndex().getVersion();
+    }
+
+    /**
+     * Discards the leader board index, so that it is rebuilt from all users the next time it is used.
+     */
+    synchronized void invalidateLeaderBoardIndex() {
+        leaderBoardIndex = null;
+        if (leaderBoardPublisher != null) {
+            leaderBoardPublisher.shutdown();
+            leaderBoardPublisher = null;
+        }
+    }
+
+    /**
+     * Updates the position of the user in the leader board index, if the index has been built.
+     * 
+     * @param user the user whose score or participation may have changed
+     */
+    void updateLeaderBoardIndex(User user) {
+        LeaderBoardIndex index;
+        synchronized (this) {
+            index = leaderBoardIndex;
+        }
+        if (index != null) {
+            index.update(user);
+        }
+    }
+
+    /**
+     * Returns the score ledger, which replays any score changes that were not saved
+     * with the users the first time it is used.
+     * 
+     * @return the ledger that records the score changes.
+     */
+    synchronized ScoreLedger getScoreLedger() {
+        if (scoreLedger == null) {
+            scoreLedger = new ScoreLedger(new File(Hudson.getInstance().getRootDir(), SCORE_LEDGER_FILENAME));
+            try {
+                scoreLedger.load(User.getAll());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to replay the score ledger", e); //$NON-NLS-1$
+            }
+            scoreLedger.start(SCORE_LEDGER_WRITE_PERIOD, SCORE_LEDGER_FOLD_PERIOD, TimeUnit.MILLISECONDS);
+            invalidateLeaderBoardIndex();
+        }
+        return scoreLedger;
+    }
+
+    /**
+     * Returns the sequence number of the last score change in the score ledger, without
+     * creating the ledger.
+     * 
+     * @return the last sequence number; 0, if the ledger has not been loaded
+     */
+    synchronized long getLastScoreLedgerSequence() {
+        return (scoreLedger == null) ? 0 : scoreLedger.getLastSequence();
+    }
+
+    /**
+     * Scores the queued builds and then writes and folds the score ledger one last time.
+     * Called when Hudson is stopped.
+     */
+    void stop() {
+        ScoringQueue queue;
+        ScoreLedger ledger;
+        synchronized (this) {
+            queue = scoringQueue;
+            ledger = scoreLedger;
+        }
+        if (queue != null) {
+            try {
+                if (!queue.shutdown(SCORING_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warning("Stopped waiting for the queued builds to be scored"); //$NON-NLS-1$
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ledger != null) {
+            try {
+                ledger.stop();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to fold the score ledger", e); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * Returns the queue of builds waiting to be scored, when builds are scored asynchronously.
+     * 
+     * @return the scoring queue; null, if builds are scored on the build executor.
+     */
+    synchronized ScoringQueue getScoringQueue() {
+        if (scoringIsAsynchronous && (scoringQueue == null)) {
+            scoringQueue = new ScoringQueue(SCORING_WORKERS, SCORING_QUEUE_CAPACITY);
+        } else if (!scoringIsAsynchronous && (scoringQueue != null) && scoringQueue.isTerminated()) {
+            scoringQueue = null;
+        }
+        return scoringQueue;
+    }
+
+    /**
+     * Returns the executor that evaluates the rules of a build in parallel.
+     * 
+     * @return the rule executor; null, if the rules are evaluated one after another.
+     */
+    synchronized ExecutorService getRuleExecutor() {
+        if (rulesAreEvaluatedInParallel && (ruleExecutor == null)) {
+            ruleExecutor = Executors.newFixedThreadPool(RULE_EVALUATION_THREADS, new DaemonThreadFactory());
+        }
+        return ruleExecutor;
+    }
+
+    /**
+     * Returns the timing metrics of the rules that scored the latest builds.
+     * 
+     * @return the rule metrics.
+     */
+    synchronized RuleMetrics getRuleMetrics() {
+        if (ruleMetrics == null) {
+            ruleMetrics = new RuleMetrics();
+        }
+        return ruleMetrics;
+    }
+
+    /**
+     * Returns the broadcaster that sends the added scores to the clients of the score event stream.
+     * 
+     * @return the score event broadcaster.
+     */
+    synchronized ScoreEventBroadcaster getScoreEventBroadcaster() {
+        if (scoreEventBroadcaster == null) {
+            scoreEventBroadcaster = new ScoreEventBroadcaster(SCORE_EVENT_FLUSH_PERIOD, TimeUnit.MILLISECONDS, 
+                    SCORE_EVENT_CLIENT_CAPACITY, MAX_SCORE_EVENT_CLIENTS);
+        }
+        return scoreEventBroadcaster;
+    }
+
+    /**
+     * Returns the index of the scored builds of the job, which is read the first time it is used.
+     * 
+     * @param project the job
+     * @return the build history index of the job.
+     */
+    synchronized BuildHistoryIndex getBuildHistoryIndex(AbstractProject<?, ?> project) {
+        if (buildHistoryIndexes == null) {
+            buildHistoryIndexes = new HashMap<String, BuildHistoryIndex>();
+        }
+        BuildHistoryIndex index = buildHistoryIndexes.get(project.getFullName());
+        if ((index == null) || (index.getProject() != project)) {
+            // the job may have been replaced by a new job with the same name
+            index = new BuildHistoryIndex(project, new File(project.getRootDir(), BuildHistoryIndex.FILENAME));
+            buildHistoryIndexes.put(project.getFullName(), index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the services to score a build of the project with.
+     * @param project the project of the build
+     * @return the services
+     */
+    ScoringServices getScoringServices(AbstractProject<?, ?> project) {
+        ScoringServices services = new ScoringServices();
+        services.setLeaderBoardIndex(getLeaderBoardIndex());
+        services.setScoreLedger(getScoreLedger());
+        services.setRuleExecutor(getRuleExecutor());
+        services.setHistoryIndex(getBuildHistoryIndex(project));
+        services.setFlakyTestHistory(getFlakyTestHistory(project));
+        services.setRuleMetrics(getRuleMetrics());
+        services.setScoreEvents(getScoreEventBroadcaster());
+        return services;
+    }
+
+    /**
+     * Returns the flaky test history of the job, which is read the first time it is used.
+     * 
+     * @param project the job
+     * @return the flaky test history of the job.
+     */
+    synchronized FlakyTestHistory getFlakyTestHistory(AbstractProject<?, ?> project) {
+        if (flakyTestHistories == null) {
+            flakyTestHistories = new HashMap<String, FlakyTestHistory>();
+        }
+        File file = new File(project.getRootDir(), FlakyTestHistory.FILENAME);
+        FlakyTestHistory history = flakyTestHistories.get(project.getFullName());
+        if ((history == null) || !history.getFile().equals(file)) {
+            history = new FlakyTestHistory(file);
+            flakyTestHistories.put(project.getFullName(), history);
+        }
+        return history;
+    }
+
     private void addRuleSetIfAvailable(RuleBook book, RuleSet ruleSet) {
         if (ruleSet.isAvailable()) {
             book.addRuleSet(ruleSet);
@@ -84,10 +379,61 @@ public class GameDescriptor extends BuildStepDescriptor<Publisher> {
 
     public void setNamesAreCaseSensitive(boolean namesAreCaseSensitive) {
         this.namesAreCaseSensitive = namesAreCaseSensitive;
+        invalidateLeaderBoardIndex();
+    }
+
+    public boolean getScoringIsAsynchronous() {
+        return scoringIsAsynchronous;
+    }
+
+    public synchronized void setScoringIsAsynchronous(boolean scoringIsAsynchronous) {
+        this.scoringIsAsynchronous = scoringIsAsynchronous;
+        if (!scoringIsAsynchronous && (scoringQueue != null)) {
+            // queued builds are still scored, the queue refuses new builds until they have been
+            scoringQueue.shutdown();
+        }
+    }
+
+    public boolean getRulesAreEvaluatedInParallel() {
+        return rulesAreEvaluatedInParallel;
+    }
+
+    public synchronized void setRulesAreEvaluatedInParallel(boolean rulesAreEvaluatedInParallel) {
+        this.rulesAreEvaluatedInParallel = rulesAreEvaluatedInParallel;
+        if (!rulesAreEvaluatedInParallel && (ruleExecutor != null)) {
+            ruleExecutor.shutdown();
+            ruleExecutor = null;
+        }
     }
 
     @Override
     public boolean isApplicable(Class<? extends AbstractProject> arg0) {
         return true;
     }
+
+    /**
+     * Replays the score ledger when Hudson has been started, so the users have their
+     * correct scores before the first build is scored.
+     */
+    @Extension
+    public static class ScoreLedgerLoader extends ItemListener {
+        @Override
+        public void onLoaded() {
+            Hudson.getInstance().getDescriptorByType(GameDescriptor.class).getScoreLedger();
+        }
+    }
+
+    /**
+     * Updates the leader board when a user has been saved, as the score or the participation
+     * may have been changed on the configuration page of the user.
+     */
+    @Extension
+    public static class UserSaveListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof User) {
+                Hudson.getInstance().getDescriptorByType(GameDescriptor.class).updateLeaderBoardIndex((User) o);
+            }
+        }
+    }
 }
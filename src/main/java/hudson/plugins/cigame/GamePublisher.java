@@ -6,6 +6,10 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
@@ -14,8 +18,16 @@ import hudson.model.Action;
 import hudson.model.BuildListener;
 import hudson.model.Result;
 import hudson.model.User;
+import hudson.plugins.cigame.model.BuildHistoryIndex;
+import hudson.plugins.cigame.model.EvaluationContext;
+import hudson.plugins.cigame.model.Rule;
 import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.RuleSet;
+import hudson.plugins.cigame.model.RuleTimings;
 import hudson.plugins.cigame.model.ScoreCard;
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.model.TestCountDigestAction;
+import hudson.plugins.cigame.rules.unittesting.FlakyTestHistory;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.Entry;
 import hudson.tasks.BuildStepMonitor;
@@ -23,6 +35,11 @@ import hudson.tasks.Notifier;
 
 public class GamePublisher extends Notifier {
 
+    private static final Logger LOGGER = Logger.getLogger(GamePublisher.class.getName());
+
+    /** Max time a rule may run, when the rules are evaluated in parallel. */
+    private static final long RULE_TIMEOUT_SECONDS = 60;
+
     @Override
     public GameDescriptor getDescriptor() {
         return (GameDescriptor) super.getDescriptor();
@@ -39,37 +56,116 @@ public class GamePublisher extends Notifier {
     }
 
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+    public boolean perform(final AbstractBuild<?, ?> build, Launcher launcher,
             BuildListener listener) throws InterruptedException, IOException {
 
-        perform(build, getDescriptor().getRuleBook(), getDescriptor().getNamesAreCaseSensitive(), listener);
+        final GameDescriptor descriptor = getDescriptor();
+        ScoringQueue scoringQueue = descriptor.getScoringQueue();
+        if (scoringQueue != null) {
+            String project = build.getProject().getFullName();
+            boolean queued = scoringQueue.offer(project, new Runnable() {
+                public void run() {
+                    try {
+                        perform(build, descriptor, null);
+                        build.save();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Failed to score " + build, e); //$NON-NLS-1$
+                    } catch (InterruptedException e) {
+                        LOGGER.log(Level.WARNING, "Interrupted while scoring " + build, e); //$NON-NLS-1$
+                    }
+                }
+            });
+            if (queued) {
+                listener.getLogger().append("[ci-game] queued for scoring, builds waiting: " + scoringQueue.getQueueDepth() + "\n");
+                return true;
+            }
+            listener.getLogger().append("[ci-game] scoring queue is full, scoring on the build executor\n");
+            // the earlier builds of the project are scored first
+            scoringQueue.startInline(project);
+            try {
+                perform(build, descriptor, listener);
+            } finally {
+                scoringQueue.finishInline(project);
+            }
+            return true;
+        }
+        perform(build, descriptor, listener);
         return true;
     }
 
+    private void perform(AbstractBuild<?, ?> build, GameDescriptor descriptor, BuildListener listener) 
+            throws IOException, InterruptedException {
+        perform(build, descriptor.getRuleBook(), descriptor.getNamesAreCaseSensitive(), 
+                descriptor.getScoringServices(build.getProject()), listener);
+    }
+
+    boolean perform(AbstractBuild<?, ?> build, RuleBook ruleBook, boolean usernameIsCasesensitive, BuildListener listener) 
+            throws IOException, InterruptedException {
+        return perform(build, ruleBook, usernameIsCasesensitive, new ScoringServices(), listener);
+    }
+
     /**
      * Calculates score from the build and rule book and adds a Game action to the build.
      * @param build build to calculate points for
      * @param ruleBook rules used in calculation
      * @param usernameIsCasesensitive user names in Hudson are case insensitive.
+     * @param services the services to use while scoring
      * @param listener the build listener
      * @return true, if any user scores were updated; false, otherwise
      * @throws IOException thrown if there was a problem setting a user property
+     * @throws InterruptedException thrown if the thread was interrupted while waiting for the rules
      */
-    boolean perform(AbstractBuild<?, ?> build, RuleBook ruleBook, boolean usernameIsCasesensitive, BuildListener listener) throws IOException {
+    boolean perform(AbstractBuild<?, ?> build, RuleBook ruleBook, boolean usernameIsCasesensitive, 
+            ScoringServices services, BuildListener listener) throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        BuildHistoryIndex historyIndex = services.getHistoryIndex();
+        FlakyTestHistory flakyTestHistory = services.getFlakyTestHistory();
+        ExecutorService ruleExecutor = services.getRuleExecutor();
+        EvaluationContext context = new EvaluationContext(historyIndex, build);
+        if (flakyTestHistory != null) {
+            context.setAttribute(FlakyTestHistory.class, flakyTestHistory);
+        }
+        RuleTimings timings = new RuleTimings();
+        context.setAttribute(RuleTimings.class, timings);
         ScoreCard sc = new ScoreCard();
-        sc.record(build, ruleBook, listener);
+        if (ruleExecutor != null) {
+            sc.record(build, ruleBook, context, ruleExecutor, RULE_TIMEOUT_SECONDS, TimeUnit.SECONDS, listener);
+        } else {
+            sc.record(build, ruleBook, context, listener);
+        }
 
-        ScoreCardAction action = new ScoreCardAction(sc, build);
+        ScoreCardAction action = new ScoreCardAction(sc, build, context.getTestCountDigest(build));
         build.getActions().add(action);
+        try {
+            TestCountDigestAction.addToModuleBuilds(build, context);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to keep the test counts of the modules of " + build, e); //$NON-NLS-1$
+        }
+
+        if (historyIndex != null) {
+            try {
+                historyIndex.add(context.getSummary(build));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to add " + build + " to the build history index", e); //$NON-NLS-1$
+            }
+        }
+        TestCountDigest testCounts = context.getTestCountDigest(build);
+        if ((flakyTestHistory != null) && (testCounts != null) && (testCounts.getFailedTests() != null)) {
+            try {
+                flakyTestHistory.update(build.getNumber(), testCounts.getFailedTests());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to add " + build + " to the flaky test history", e); //$NON-NLS-1$
+            }
+        }
         
         List<AbstractBuild<?, ?>> accountableBuilds = new ArrayList<AbstractBuild<?,?>>();
         accountableBuilds.add(build);
         
         // also add all previous aborted builds:
-        AbstractBuild<?, ?> previousBuild = build.getPreviousBuild();
+        AbstractBuild<?, ?> previousBuild = context.getPreviousBuild(build);
         while (previousBuild != null && previousBuild.getResult() == Result.ABORTED) {
         	accountableBuilds.add(previousBuild);
-        	previousBuild = previousBuild.getPreviousBuild();
+        	previousBuild = context.getPreviousBuild(previousBuild);
         }
         
         Set<User> players = new TreeSet<User>(usernameIsCasesensitive ? null : new UsernameCaseinsensitiveComparator());
@@ -82,18 +178,54 @@ public class GamePublisher extends Notifier {
         	}
         }
         
-        return updateUserScores(players, sc.getTotalPoints());
+        boolean isUpdated = updateUserScores(build, players, sc.getTotalPoints(), services);
+
+        long performTime = System.nanoTime() - startTime;
+        if (services.getRuleMetrics() != null) {
+            services.getRuleMetrics().record(ruleBook, timings, performTime);
+        }
+        if (listener != null) {
+            listener.getLogger().append(getTimingSummary(ruleBook, timings, performTime) + "\n");
+        }
+        return isUpdated;
+    }
+
+    /**
+     * Returns a line with the time it took to score the build and the rule that took the longest.
+     */
+    static String getTimingSummary(RuleBook ruleBook, RuleTimings timings, long performTime) {
+        Rule slowestRule = null;
+        for (RuleSet ruleSet : ruleBook.getRuleSets()) {
+            for (Rule rule : ruleSet.getRules()) {
+                if ((slowestRule == null) || (timings.getTime(rule) > timings.getTime(slowestRule))) {
+                    slowestRule = rule;
+                }
+            }
+        }
+        StringBuilder summary = new StringBuilder("[ci-game] scored in ") //$NON-NLS-1$
+                .append(TimeUnit.NANOSECONDS.toMillis(performTime)).append(" ms"); //$NON-NLS-1$
+        if (slowestRule != null) {
+            summary.append(", slowest rule: ").append(slowestRule.getName()) //$NON-NLS-1$
+                    .append(" (").append(TimeUnit.NANOSECONDS.toMillis(timings.getTime(slowestRule))).append(" ms)"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return summary.toString();
     }
 
     /**
      * Add the score to the users that have committed code in the change set
      * 
+     * @param build the build that was scored
      * @param changeSet the change set, used to get users
      * @param score the score that the build was worth
+     * @param services the leader board index, score ledger and score event broadcaster to use
      * @throws IOException thrown if the property could not be added to the user object.
      * @return true, if any user scores was updated; false, otherwise
      */
-    private boolean updateUserScores(Set<User> players, double score) throws IOException {
+    private boolean updateUserScores(AbstractBuild<?, ?> build, Set<User> players, double score, 
+            ScoringServices services) throws IOException {
+        LeaderBoardIndex leaderBoardIndex = services.getLeaderBoardIndex();
+        ScoreLedger scoreLedger = services.getScoreLedger();
+        ScoreEventBroadcaster scoreEvents = services.getScoreEvents();
         if (score != 0) {
             for (User user : players) {
                 UserScoreProperty property = user.getProperty(UserScoreProperty.class);
@@ -102,9 +234,21 @@ public class GamePublisher extends Notifier {
                     user.addProperty(property);
                 }
                 if (property.isParticipatingInGame()) {
-                    property.setScore(property.getScore() + score);
+                    if (scoreLedger != null) {
+                        scoreLedger.addScore(user, property, score);
+                    } else {
+                        property.addScore(score);
+                        user.save();
+                    }
+                }
+                if (leaderBoardIndex != null) {
+                    leaderBoardIndex.update(user);
+                }
+                if ((scoreEvents != null) && property.isParticipatingInGame()) {
+                    int rank = (leaderBoardIndex != null) ? leaderBoardIndex.getRank(user.getId()) : 0;
+                    scoreEvents.add(new ScoreEvent(user.getId(), score, property.getScore(), rank, 
+                            build.getFullDisplayName(), build.getUrl()));
                 }
-                user.save();
             }
         }
         return (!players.isEmpty());
@@ -1,13 +1,17 @@
 package hudson.plugins.cigame;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import net.sf.json.JSONObject;
 
 import hudson.Extension;
+import hudson.Util;
+import hudson.model.Api;
 import hudson.model.Hudson;
 import hudson.model.RootAction;
 import hudson.model.User;
@@ -15,6 +19,7 @@ import hudson.security.ACL;
 import hudson.security.AccessControlled;
 import hudson.security.Permission;
 
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.export.Exported;
@@ -31,6 +36,12 @@ public class LeaderBoardAction implements RootAction, AccessControlled {
 
     private static final long serialVersionUID = 1L;
 
+    /** Max time between two writes to the score event stream. */
+    private static final long EVENT_HEARTBEAT_SECONDS = 15;
+
+    /** Time a client of the score event stream is asked to wait when the max number of clients are connected. */
+    static final long EVENT_RETRY_AFTER_SECONDS = 60;
+
     public String getDisplayName() {
         return Messages.Leaderboard_Title();
     }
@@ -44,55 +55,213 @@ public class LeaderBoardAction implements RootAction, AccessControlled {
     }
 
     /**
-     * Returns the user that are participants in the ci game
+     * Returns the user that are participants in the ci game.
+     * 
+     * The list can be paged with the request parameters <code>top</code>, the max number of
+     * users to return, and <code>after</code>, the <code>score,userId</code> of the last user
+     * on the previous page. E.g. <code>/cigame/api/json?top=20&amp;after=12.0,john</code>
+     * The request parameter <code>window</code> selects the leader board of a {@link ScoreWindow},
+     * e.g. <code>/cigame/api/json?window=month</code>.
+     * The scores are read from the latest published snapshot of the leader board, so they
+     * may be shortly behind the scores of the users.
      * 
      * @return list containing users.
      */
     @Exported
     public List<UserScore> getUserScores() {
-        return getUserScores(User.getAll(), Hudson.getInstance().getDescriptorByType(GameDescriptor.class).getNamesAreCaseSensitive());
+        StaplerRequest req = Stapler.getCurrentRequest();
+        LeaderBoardSnapshot snapshot = getLeaderBoardSnapshot(req);
+        if (req == null) {
+            return snapshot.getUserScores();
+        }
+        return getUserScores(snapshot, req.getParameter("top"), req.getParameter("after")); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
-    List<UserScore> getUserScores(Collection<User> users, boolean usernameIsCasesensitive) {
-        ArrayList<UserScore> list = new ArrayList<UserScore>();
-
-        Collection<User> players;
-        if (usernameIsCasesensitive) {
-            players = users;
-        } else {
-            List<User> playerList = new ArrayList<User>();
-            CaseInsensitiveUserIdComparator caseInsensitiveUserIdComparator = new CaseInsensitiveUserIdComparator();
-            for (User user : users) {
-                if (Collections.binarySearch(playerList, user, caseInsensitiveUserIdComparator) < 0) {
-                    playerList.add(user);
-                }
+    /**
+     * Returns the snapshot of the leader board of the time window in the <code>window</code>
+     * request parameter, or of the lifetime scores if there is no such parameter.
+     * 
+     * @throws IllegalArgumentException thrown if there is no time window with the name
+     */
+    private LeaderBoardSnapshot getLeaderBoardSnapshot(StaplerRequest req) {
+        String window = (req == null) ? null : Util.fixEmpty(req.getParameter("window")); //$NON-NLS-1$
+        return getGameDescriptor().getLeaderBoardSnapshot(ScoreWindow.fromName(window));
+    }
+
+    /**
+     * Returns the remote API of the leader board, which is tagged with the score version
+     * of the snapshot of the requested leader board. Malformed paging or window parameters
+     * are answered with 400.
+     */
+    public Api getApi() {
+        return new ScoreApi(this) {
+            @Override
+            protected long getScoreVersion(StaplerRequest req) {
+                checkPageParameters(req.getParameter("top"), req.getParameter("after")); //$NON-NLS-1$ //$NON-NLS-2$
+                return getLeaderBoardSnapshot(req).getVersion();
             }
-            players = playerList;
+        };
+    }
+
+    /**
+     * Returns the queue of builds waiting to be scored. The queue is not part of the
+     * export of the leader board, as it changes without the score version changing; it
+     * has its own remote API.
+     * 
+     * @return the scoring queue; null, if builds are scored on the build executor.
+     */
+    public ScoringQueue getScoringQueue() {
+        return getGameDescriptor().getScoringQueue();
+    }
+
+    List<UserScore> getUserScores(LeaderBoardSnapshot snapshot, String top, String after) {
+        int limit = parseTop(top);
+        if (Util.fixEmpty(after) == null) {
+            return snapshot.getUserScores(0, null, limit);
         }
-        
-        for (User user : players) {
-            UserScoreProperty property = user.getProperty(UserScoreProperty.class);
-            if ((property != null) && property.isParticipatingInGame()) {
-                list.add(new UserScore(user, property.getScore(), user.getDescription()));
-            }
+        return snapshot.getUserScores(parseAfterScore(after), after.substring(after.indexOf(',') + 1), limit);
+    }
+
+    /**
+     * Checks the paging parameters, see {@link #getUserScores()}.
+     * 
+     * @throws IllegalArgumentException thrown if a parameter is malformed
+     */
+    static void checkPageParameters(String top, String after) {
+        parseTop(top);
+        if (Util.fixEmpty(after) != null) {
+            parseAfterScore(after);
         }
+    }
 
-        Collections.sort(list, new Comparator<UserScore>() {
-            public int compare(UserScore o1, UserScore o2) {
-                if (o1.score < o2.score)
-                    return 1;
-                if (o1.score > o2.score)
-                    return -1;
-                return 0;
-            }
-        });
+    /**
+     * Returns the max number of users of the <code>top</code> parameter, or -1 for all users.
+     */
+    private static int parseTop(String top) {
+        if (Util.fixEmpty(top) == null) {
+            return -1;
+        }
+        int limit;
+        try {
+            limit = Integer.parseInt(top);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("top must be a number: " + top); //$NON-NLS-1$
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("top must not be negative: " + top); //$NON-NLS-1$
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the score of the <code>score,userId</code> cursor of the <code>after</code> parameter.
+     */
+    private static double parseAfterScore(String after) {
+        int separator = after.indexOf(',');
+        if (separator < 0) {
+            throw new IllegalArgumentException("after must be given as score,userId: " + after); //$NON-NLS-1$
+        }
+        try {
+            return Double.parseDouble(after.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("after must be given as score,userId: " + after); //$NON-NLS-1$
+        }
+    }
 
-        return list;
+    List<UserScore> getUserScores(Collection<User> users, boolean usernameIsCasesensitive) {
+        LeaderBoardIndex index = new LeaderBoardIndex(usernameIsCasesensitive);
+        index.addAll(users);
+        return index.getUserScores();
+    }
+
+    /**
+     * Writes the rank and score of a user as JSON, e.g. <code>/cigame/rank?user=john</code>.
+     * If no user is given, the rank of the current user is returned. The <code>window</code>
+     * parameter selects the rank in a time window, e.g. <code>/cigame/rank?window=week</code>,
+     * an unknown window is answered with 400.
+     */
+    public void doRank(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        String userId = Util.fixEmpty(req.getParameter("user")); //$NON-NLS-1$
+        if ((userId == null) && (User.current() != null)) {
+            userId = User.current().getId();
+        }
+        LeaderBoardSnapshot snapshot;
+        try {
+            snapshot = getLeaderBoardSnapshot(req);
+        } catch (IllegalArgumentException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        JSONObject rank = (userId == null) ? null : getRank(snapshot, userId);
+        if (rank == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        rsp.setContentType("application/json;charset=UTF-8"); //$NON-NLS-1$
+        rsp.getWriter().print(rank.toString());
+    }
+
+    /**
+     * Streams the scores that are added to the users as Server-Sent Events, e.g.
+     * <code>/cigame/events</code>. The scores are sent in batches, as <code>scores</code>
+     * events with a JSON array of the user, the added score (<code>delta</code>), the new
+     * <code>total</code> and <code>rank</code> of the user, and the <code>build</code> that
+     * was scored. The response does not end until the client goes away.
+     * 
+     * Every client holds a request thread while it is connected, so at most 50 clients are
+     * connected at the same time. Further clients are answered with
+     * <code>503 Service Unavailable</code> and a <code>Retry-After</code> header.
+     */
+    public void doEvents(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        ScoreEventBroadcaster broadcaster = getGameDescriptor().getScoreEventBroadcaster();
+        ScoreEventBroadcaster.Subscription subscription = broadcaster.subscribe();
+        if (subscription == null) {
+            rsp.setHeader("Retry-After", String.valueOf(EVENT_RETRY_AFTER_SECONDS)); //$NON-NLS-1$
+            rsp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        try {
+            rsp.setContentType(ScoreEventBroadcaster.CONTENT_TYPE);
+            rsp.setHeader("Cache-Control", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
+            subscription.streamTo(rsp.getWriter(), EVENT_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            broadcaster.unsubscribe(subscription);
+        }
+    }
+
+    /**
+     * Writes the percentiles of the time it took to score the latest builds as JSON, for
+     * the whole scoring, per rule set and per rule, e.g. <code>/cigame/metrics</code>.
+     */
+    public void doMetrics(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        rsp.setContentType("application/json;charset=UTF-8"); //$NON-NLS-1$
+        rsp.getWriter().print(getGameDescriptor().getRuleMetrics().toJSON().toString());
+    }
+
+    JSONObject getRank(LeaderBoardSnapshot snapshot, String userId) {
+        Double score = snapshot.getScore(userId);
+        if (score == null) {
+            return null;
+        }
+        JSONObject rank = new JSONObject();
+        rank.put("user", userId); //$NON-NLS-1$
+        rank.put("rank", snapshot.getRank(userId)); //$NON-NLS-1$
+        rank.put("score", score); //$NON-NLS-1$
+        return rank;
     }
 
     public void doResetScores( StaplerRequest req, StaplerResponse rsp ) throws IOException {
         if (Hudson.getInstance().getACL().hasPermission(Hudson.ADMINISTER)) {
-            doResetScores(User.getAll());
+            final LeaderBoardIndex index = getGameDescriptor().getLeaderBoardIndex();
+            // no scores are added during the reset, and the changes recorded before it are not replayed
+            getGameDescriptor().getScoreLedger().resetScores(new ScoreLedger.ScoreReset() {
+                public void resetScores() throws IOException {
+                    doResetScores(User.getAll());
+                    index.resetScores();
+                }
+            });
         }
         rsp.sendRedirect2(req.getContextPath());
     }
@@ -102,14 +271,18 @@ public class LeaderBoardAction implements RootAction, AccessControlled {
             UserScoreProperty property = user.getProperty(UserScoreProperty.class);
             if (property != null) {
                 property.setScore(0);
+                property.clearDailyScores();
                 user.save();
             }
         }
     }
 
+    private GameDescriptor getGameDescriptor() {
+        return Hudson.getInstance().getDescriptorByType(GameDescriptor.class);
+    }
     
     @ExportedBean(defaultVisibility = 999)
-    public class UserScore {
+    public static class UserScore {
         private User user;
         private double score;
         private String description;
@@ -0,0 +1,286 @@
+package hudson.plugins.cigame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hudson.model.User;
+import hudson.plugins.cigame.LeaderBoardAction.UserScore;
+import hudson.plugins.cigame.util.OrderStatisticTree;
+
+/**
+ * Index of the users participating in the game, sorted by their score.
+ *
+ * The index is updated in place when a score changes, so that the leader board
+ * does not have to walk all users and sort them for every request. The leader board
+ * is read from immutable snapshots of the index, which a {@link LeaderBoardPublisher}
+ * is told to publish after every change.
+ *
+ * An index can also sort the users by the points they were given during a
+ * {@link ScoreWindow}. The window indexes are kept by the index of the lifetime scores,
+ * which passes every update on to them, and are rebuilt by the publisher when the day
+ * changes.
+ *
+ * Every change gives the index a new score version, which is higher than all earlier
+ * versions of any index, so clients can tell whether the scores have changed.
+ */
+class LeaderBoardIndex {
+
+    private static final AtomicLong LAST_VERSION = new AtomicLong();
+
+    private final boolean usernameIsCasesensitive;
+    private final ScoreWindow window;
+    private final long day;
+    private final Map<String, Entry> entriesByKey = new HashMap<String, Entry>();
+    private final OrderStatisticTree<Entry> entries = new OrderStatisticTree<Entry>();
+    private final Map<ScoreWindow, LeaderBoardIndex> windowIndexes = new EnumMap<ScoreWindow, LeaderBoardIndex>(ScoreWindow.class);
+    private LeaderBoardPublisher publisher;
+    private volatile long version = LAST_VERSION.incrementAndGet();
+
+    LeaderBoardIndex(boolean usernameIsCasesensitive) {
+        this(usernameIsCasesensitive, null, 0);
+    }
+
+    /**
+     * @param usernameIsCasesensitive whether users with the same name in another case are different users
+     * @param window the time window of the scores, or null for the lifetime scores
+     * @param day the last day of the time window
+     */
+    LeaderBoardIndex(boolean usernameIsCasesensitive, ScoreWindow window, long day) {
+        this.usernameIsCasesensitive = usernameIsCasesensitive;
+        this.window = window;
+        this.day = day;
+    }
+
+    /**
+     * Returns the score version of the index, which is increased every time a score changes.
+     *
+     * @return the score version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds the users to the index. If names are case insensitive, only the first
+     * of several users with the same name is added.
+     *
+     * @param users users to add
+     */
+    synchronized void addAll(Collection<User> users) {
+        for (User user : users) {
+            if (!entriesByKey.containsKey(getKey(user))) {
+                update(user);
+            }
+        }
+    }
+
+    /**
+     * Sets the publisher that is told when the index has changed.
+     *
+     * @param publisher the publisher of the snapshots, or null
+     */
+    synchronized void setPublisher(LeaderBoardPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Updates the position of the user in the index from its current {@link UserScoreProperty}.
+     * Users that are not participating in the game are removed from the index.
+     *
+     * @param user the user whose score has changed
+     */
+    synchronized void update(User user) {
+        String key = getKey(user);
+        Entry entry = entriesByKey.get(key);
+        if (entry != null) {
+            if (!entry.user.getId().equals(user.getId())) {
+                // another user with the same (case insensitive) name is shown on the leader board
+                return;
+            }
+            entries.remove(entry);
+            entriesByKey.remove(key);
+        }
+        UserScoreProperty property = user.getProperty(UserScoreProperty.class);
+        if ((property != null) && property.isParticipatingInGame()) {
+            double score = (window == null) ? property.getScore() : property.getScore(window, day);
+            entry = new Entry(key, user, score);
+            entries.add(entry);
+            entriesByKey.put(key, entry);
+        }
+        for (LeaderBoardIndex windowIndex : windowIndexes.values()) {
+            windowIndex.update(user);
+        }
+        scoresChanged();
+    }
+
+    /**
+     * Sets the score of all users in the index to 0.
+     */
+    synchronized void resetScores() {
+        List<Entry> oldEntries = new ArrayList<Entry>(entriesByKey.values());
+        entries.clear();
+        entriesByKey.clear();
+        for (Entry entry : oldEntries) {
+            Entry resetEntry = new Entry(entry.key, entry.user, 0);
+            entries.add(resetEntry);
+            entriesByKey.put(resetEntry.key, resetEntry);
+        }
+        // the window indexes are rebuilt from the reset users
+        windowIndexes.clear();
+        scoresChanged();
+    }
+
+    /**
+     * Returns the index of the scores of the users in this index during the time window
+     * that ends on the given day. The window index is built the first time it is used, and
+     * again when the day changes.
+     *
+     * @param window the time window
+     * @param today the last day of the window
+     * @return the index of the window
+     */
+    synchronized LeaderBoardIndex getWindowIndex(ScoreWindow window, long today) {
+        LeaderBoardIndex windowIndex = windowIndexes.get(window);
+        if ((windowIndex == null) || (windowIndex.day != today)) {
+            windowIndex = new LeaderBoardIndex(usernameIsCasesensitive, window, today);
+            for (Entry entry : entries) {
+                windowIndex.update(entry.user);
+            }
+            windowIndexes.put(window, windowIndex);
+        }
+        return windowIndex;
+    }
+
+    /**
+     * Returns an immutable copy of the index, to read the leader board from without locking.
+     *
+     * @return the snapshot of the current scores
+     */
+    synchronized LeaderBoardSnapshot createSnapshot() {
+        String[] keys = new String[entries.size()];
+        UserScore[] scores = new UserScore[entries.size()];
+        int i = 0;
+        for (Entry entry : entries) {
+            keys[i] = entry.key;
+            scores[i] = new UserScore(entry.user, entry.score, entry.user.getDescription());
+            i++;
+        }
+        return new LeaderBoardSnapshot(version, keys, scores, usernameIsCasesensitive);
+    }
+
+    /**
+     * Returns the scores of the participating users, with the highest score first.
+     *
+     * @return list containing the user scores
+     */
+    synchronized List<UserScore> getUserScores() {
+        return toUserScores(entries.iterator(), null, entries.size());
+    }
+
+    /**
+     * Returns a page of the scores of the participating users, with the highest score first.
+     * The cost is proportional to the size of the page, not to the number of users.
+     *
+     * @param afterScore score of the last user on the previous page
+     * @param afterUserId id of the last user on the previous page, or null to start from the top
+     * @param limit max number of scores to return, or -1 for all remaining
+     * @return list containing the user scores after the given user
+     */
+    synchronized List<UserScore> getUserScores(double afterScore, String afterUserId, int limit) {
+        if (limit < 0) {
+            limit = entries.size();
+        }
+        if (afterUserId == null) {
+            return toUserScores(entries.iterator(), null, limit);
+        }
+        Entry cursor = new Entry(getKey(afterUserId), null, afterScore);
+        return toUserScores(entries.iterator(cursor), cursor, limit);
+    }
+
+    /**
+     * Returns the rank of the user on the leader board. Users with the same score
+     * share the same rank, i.e. the rank is one more than the number of users with
+     * a higher score.
+     *
+     * @param userId id of the user
+     * @return the rank, starting at 1; or 0 if the user is not on the leader board
+     */
+    synchronized int getRank(String userId) {
+        Entry entry = entriesByKey.get(getKey(userId));
+        if (entry == null) {
+            return 0;
+        }
+        // no key sorts before the empty string, so this counts the users with a higher score
+        return entries.headCount(new Entry("", null, entry.score)) + 1; //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the score of the user on the leader board.
+     *
+     * @param userId id of the user
+     * @return the score, or null if the user is not on the leader board
+     */
+    synchronized Double getScore(String userId) {
+        Entry entry = entriesByKey.get(getKey(userId));
+        return (entry == null) ? null : Double.valueOf(entry.score);
+    }
+
+    private List<UserScore> toUserScores(Iterator<Entry> iterator, Entry cursor, int limit) {
+        List<UserScore> list = new ArrayList<UserScore>(Math.min(limit, entries.size()));
+        while (iterator.hasNext() && (list.size() < limit)) {
+            Entry entry = iterator.next();
+            if ((cursor == null) || (entry.compareTo(cursor) != 0)) {
+                list.add(new UserScore(entry.user, entry.score, entry.user.getDescription()));
+            }
+        }
+        return list;
+    }
+
+    private void scoresChanged() {
+        version = LAST_VERSION.incrementAndGet();
+        if (publisher != null) {
+            publisher.scoresChanged();
+        }
+    }
+
+    private String getKey(User user) {
+        return getKey(user.getId());
+    }
+
+    private String getKey(String userId) {
+        if (usernameIsCasesensitive) {
+            return userId;
+        }
+        return CaseInsensitiveUserIdComparator.getCanonicalId(userId);
+    }
+
+    /**
+     * Position of a user in the index. Entries are immutable, as the score is
+     * used for ordering them.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final String key;
+        private final User user;
+        private final double score;
+
+        Entry(String key, User user, double score) {
+            this.key = key;
+            this.user = user;
+            this.score = score;
+        }
+
+        public int compareTo(Entry o) {
+            if (score < o.score)
+                return 1;
+            if (score > o.score)
+                return -1;
+            return key.compareTo(o.key);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package hudson.plugins.cigame;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.util.DaemonThreadFactory;
+
+/**
+ * Publishes immutable snapshots of the {@link LeaderBoardIndex} for the leader board to
+ * be read from.
+ *
+ * A single thread creates the snapshots. When the scores change, the snapshot is
+ * published after a delay, so that all changes made during the delay, e.g. by a build
+ * with many committers, are published in one snapshot. The published snapshot is
+ * replaced atomically, so readers never block and never see a partly updated ranking.
+ *
+ * The snapshots of the leader boards of every {@link ScoreWindow} are published by the
+ * same thread. It also rebuilds the window indexes when the day changes, which it checks
+ * once per day check period, so a request never waits for a window index to be built.
+ */
+class LeaderBoardPublisher {
+
+    private static final Logger LOGGER = Logger.getLogger(LeaderBoardPublisher.class.getName());
+
+    /** Time between two checks whether the day has changed and the windows have to be rolled. */
+    private static final long DAY_CHECK_PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+    private final LeaderBoardIndex index;
+    private final long delay;
+    private final TimeUnit unit;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean publishIsScheduled = new AtomicBoolean();
+    private volatile LeaderBoardSnapshot snapshot;
+    private volatile Map<ScoreWindow, LeaderBoardSnapshot> windowSnapshots;
+    /** The last day of the windows of the published window snapshots. */
+    private volatile long day;
+
+    /**
+     * Creates a publisher and publishes the first snapshots of the index and its windows.
+     *
+     * @param index the index to publish
+     * @param delay the time to wait after a change before the snapshot is published
+     * @param unit the unit of the delay
+     */
+    LeaderBoardPublisher(LeaderBoardIndex index, long delay, TimeUnit unit) {
+        this.index = index;
+        this.delay = delay;
+        this.unit = unit;
+        executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        index.setPublisher(this);
+        publish(ScoreWindow.today());
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                if (ScoreWindow.today() != day) {
+                    scoresChanged();
+                }
+            }
+        }, DAY_CHECK_PERIOD, DAY_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the latest published snapshot.
+     *
+     * @return the snapshot of the leader board
+     */
+    LeaderBoardSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the latest published snapshot of the leader board of a time window.
+     *
+     * @param window the time window, or null for the lifetime scores
+     * @return the snapshot of the leader board
+     */
+    LeaderBoardSnapshot getSnapshot(ScoreWindow window) {
+        return (window == null) ? snapshot : windowSnapshots.get(window);
+    }
+
+    /**
+     * Schedules the publishing of a new snapshot, unless it has already been scheduled.
+     */
+    void scoresChanged() {
+        if (publishIsScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(new Runnable() {
+                    public void run() {
+                        publish();
+                    }
+                }, delay, unit);
+            } catch (RuntimeException e) {
+                // the publisher has been stopped
+                publishIsScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Creates the snapshots of the index and of the windows that end today, and publishes them.
+     */
+    void publish() {
+        publish(ScoreWindow.today());
+    }
+
+    /**
+     * Creates the snapshots of the index and of the windows that end on the given day, and
+     * publishes them. A snapshot is only created again if its index has changed.
+     *
+     * @param today the last day of the windows
+     */
+    void publish(long today) {
+        // changes made while the snapshots are created schedule another publish
+        publishIsScheduled.set(false);
+        try {
+            snapshot = createSnapshot(index, snapshot);
+            Map<ScoreWindow, LeaderBoardSnapshot> snapshots = new EnumMap<ScoreWindow, LeaderBoardSnapshot>(ScoreWindow.class);
+            for (ScoreWindow window : ScoreWindow.values()) {
+                LeaderBoardSnapshot previous = (windowSnapshots == null) ? null : windowSnapshots.get(window);
+                snapshots.put(window, createSnapshot(index.getWindowIndex(window, today), previous));
+            }
+            windowSnapshots = snapshots;
+            day = today;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to publish the leader board", e); //$NON-NLS-1$
+        }
+    }
+
+    private static LeaderBoardSnapshot createSnapshot(LeaderBoardIndex index, LeaderBoardSnapshot previous) {
+        if ((previous != null) && (previous.getVersion() == index.getVersion())) {
+            return previous;
+        }
+        return index.createSnapshot();
+    }
+
+    /**
+     * Stops the publisher thread. The index is not published anymore.
+     */
+    void shutdown() {
+        index.setPublisher(null);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,149 @@
+package hudson.plugins.cigame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hudson.plugins.cigame.LeaderBoardAction.UserScore;
+
+/**
+ * Immutable copy of the leader board, with the highest score first.
+ *
+ * The snapshot is never changed after it has been created, so any number of threads
+ * can read it without locking, and the lists it returns are views of its array
+ * instead of copies.
+ *
+ * @see LeaderBoardPublisher
+ */
+final class LeaderBoardSnapshot {
+
+    private final long version;
+    private final boolean usernameIsCasesensitive;
+    private final String[] keys;
+    private final UserScore[] scores;
+    private final int[] ranks;
+    private final Map<String, Integer> positionsByKey;
+    private final List<UserScore> scoreList;
+
+    /**
+     * @param version the score version of the index the snapshot was created from
+     * @param keys the keys of the users in the index, in the same order as the scores
+     * @param scores the scores, sorted with the highest score first and then by key
+     * @param usernameIsCasesensitive whether the keys are the user ids or the canonical user ids
+     */
+    LeaderBoardSnapshot(long version, String[] keys, UserScore[] scores, boolean usernameIsCasesensitive) {
+        this.version = version;
+        this.usernameIsCasesensitive = usernameIsCasesensitive;
+        this.keys = keys;
+        this.scores = scores;
+        ranks = new int[scores.length];
+        positionsByKey = new HashMap<String, Integer>(scores.length * 4 / 3 + 1);
+        for (int i = 0; i < scores.length; i++) {
+            boolean sharesRank = (i > 0) && (scores[i].getScore() == scores[i - 1].getScore());
+            ranks[i] = sharesRank ? ranks[i - 1] : i + 1;
+            positionsByKey.put(keys[i], Integer.valueOf(i));
+        }
+        scoreList = Collections.unmodifiableList(Arrays.asList(scores));
+    }
+
+    /**
+     * Returns the score version of the index the snapshot was created from.
+     *
+     * @return the score version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the scores of the participating users, with the highest score first.
+     *
+     * @return unmodifiable list containing the user scores
+     */
+    List<UserScore> getUserScores() {
+        return scoreList;
+    }
+
+    /**
+     * Returns a page of the scores of the participating users, with the highest score first.
+     *
+     * @param afterScore score of the last user on the previous page
+     * @param afterUserId id of the last user on the previous page, or null to start from the top
+     * @param limit max number of scores to return, or -1 for all remaining
+     * @return unmodifiable list containing the user scores after the given user
+     */
+    List<UserScore> getUserScores(double afterScore, String afterUserId, int limit) {
+        int from = (afterUserId == null) ? 0 : indexAfter(afterScore, getKey(afterUserId));
+        int to = (limit < 0) ? scores.length : (int) Math.min((long) from + limit, scores.length);
+        return scoreList.subList(from, to);
+    }
+
+    /**
+     * Returns the rank of the user on the leader board. Users with the same score
+     * share the same rank.
+     *
+     * @param userId id of the user
+     * @return the rank, starting at 1; or 0 if the user is not on the leader board
+     */
+    int getRank(String userId) {
+        Integer position = positionsByKey.get(getKey(userId));
+        return (position == null) ? 0 : ranks[position.intValue()];
+    }
+
+    /**
+     * Returns the score of the user on the leader board.
+     *
+     * @param userId id of the user
+     * @return the score, or null if the user is not on the leader board
+     */
+    Double getScore(String userId) {
+        Integer position = positionsByKey.get(getKey(userId));
+        return (position == null) ? null : Double.valueOf(scores[position.intValue()].getScore());
+    }
+
+    /**
+     * Returns the number of users on the leader board.
+     */
+    int size() {
+        return scores.length;
+    }
+
+    /**
+     * Returns the position of the first score that sorts after the given score and key.
+     */
+    private int indexAfter(double score, String key) {
+        int low = 0;
+        int high = scores.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, score, key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the score at the position with the given score and key, in the order of
+     * the leader board.
+     */
+    private int compare(int position, double score, String key) {
+        double positionScore = scores[position].getScore();
+        if (positionScore > score)
+            return -1;
+        if (positionScore < score)
+            return 1;
+        return keys[position].compareTo(key);
+    }
+
+    private String getKey(String userId) {
+        if (usernameIsCasesensitive) {
+            return userId;
+        }
+        return CaseInsensitiveUserIdComparator.getCanonicalId(userId);
+    }
+}
@@ -0,0 +1,15 @@
+package hudson.plugins.cigame;
+
+import hudson.Plugin;
+import hudson.model.Hudson;
+
+/**
+ * Entry point of the plugin, which saves the pending score changes when Hudson is stopped.
+ */
+public class PluginImpl extends Plugin {
+
+    @Override
+    public void stop() throws Exception {
+        Hudson.getInstance().getDescriptorByType(GameDescriptor.class).stop();
+    }
+}
@@ -0,0 +1,142 @@
+package hudson.plugins.cigame;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.json.JSONObject;
+
+import hudson.plugins.cigame.model.Rule;
+import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.RuleSet;
+import hudson.plugins.cigame.model.RuleTimings;
+
+/**
+ * Rolling histograms of the time and memory it took to score the latest builds, per
+ * rule, per rule set and for the whole scoring of a build, to find the rules that make
+ * scoring slow. Only the latest {@link #WINDOW} builds are kept in each histogram.
+ *
+ * The metrics are kept in memory and are lost when Hudson is restarted.
+ */
+class RuleMetrics {
+
+    /** Number of latest samples in a histogram. */
+    static final int WINDOW = 1000;
+
+    private final Histogram performHistogram = new Histogram();
+    private final Map<String, Histogram> ruleSetHistograms = new LinkedHashMap<String, Histogram>();
+    private final Map<String, Histogram> ruleHistograms = new LinkedHashMap<String, Histogram>();
+
+    /**
+     * Adds the timings of the rules that scored a build.
+     *
+     * @param ruleBook the rules that scored the build
+     * @param timings the timings of the rules
+     * @param performTime the time the whole scoring took, in nanoseconds
+     */
+    synchronized void record(RuleBook ruleBook, RuleTimings timings, long performTime) {
+        performHistogram.add(performTime, -1);
+        for (RuleSet ruleSet : ruleBook.getRuleSets()) {
+            long ruleSetTime = 0;
+            long ruleSetAllocatedBytes = 0;
+            for (Rule rule : ruleSet.getRules()) {
+                if (timings.getCount(rule) == 0) {
+                    continue;
+                }
+                long allocatedBytes = timings.getAllocatedBytes(rule);
+                getHistogram(ruleHistograms, ruleSet.getName() + "/" + rule.getName()) //$NON-NLS-1$
+                        .add(timings.getTime(rule), allocatedBytes);
+                ruleSetTime += timings.getTime(rule);
+                ruleSetAllocatedBytes = (allocatedBytes < 0) ? -1 : ruleSetAllocatedBytes + allocatedBytes;
+            }
+            getHistogram(ruleSetHistograms, ruleSet.getName()).add(ruleSetTime, ruleSetAllocatedBytes);
+        }
+    }
+
+    /**
+     * Returns the metrics as JSON, with the percentiles of every histogram.
+     */
+    synchronized JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("perform", performHistogram.toJSON()); //$NON-NLS-1$
+        json.put("ruleSets", toJSON(ruleSetHistograms)); //$NON-NLS-1$
+        json.put("rules", toJSON(ruleHistograms)); //$NON-NLS-1$
+        return json;
+    }
+
+    private static JSONObject toJSON(Map<String, Histogram> histograms) {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            json.put(entry.getKey(), entry.getValue().toJSON());
+        }
+        return json;
+    }
+
+    private static Histogram getHistogram(Map<String, Histogram> histograms, String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * The latest samples of a time in nanoseconds and a number of allocated bytes, in ring buffers.
+     */
+    static class Histogram {
+        private final long[] times = new long[WINDOW];
+        private final long[] allocatedBytes = new long[WINDOW];
+        private long count;
+        private boolean allocationIsKnown = true;
+
+        void add(long time, long bytes) {
+            int i = (int) (count % WINDOW);
+            times[i] = time;
+            allocatedBytes[i] = bytes;
+            allocationIsKnown &= (bytes >= 0);
+            count++;
+        }
+
+        /**
+         * Returns the time below which the given fraction of the samples are.
+         * @return the time in nanoseconds, or 0 if there are no samples
+         */
+        long getTimePercentile(double fraction) {
+            return getPercentile(times, fraction);
+        }
+
+        long getAllocatedBytesPercentile(double fraction) {
+            return getPercentile(allocatedBytes, fraction);
+        }
+
+        private long getPercentile(long[] samples, double fraction) {
+            int size = (int) Math.min(count, WINDOW);
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(fraction * size) - 1)];
+        }
+
+        JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("count", count); //$NON-NLS-1$
+            json.put("p50Millis", toMillis(getTimePercentile(0.50))); //$NON-NLS-1$
+            json.put("p95Millis", toMillis(getTimePercentile(0.95))); //$NON-NLS-1$
+            json.put("p99Millis", toMillis(getTimePercentile(0.99))); //$NON-NLS-1$
+            if (allocationIsKnown) {
+                json.put("p50AllocatedBytes", getAllocatedBytesPercentile(0.50)); //$NON-NLS-1$
+                json.put("p95AllocatedBytes", getAllocatedBytesPercentile(0.95)); //$NON-NLS-1$
+                json.put("p99AllocatedBytes", getAllocatedBytesPercentile(0.99)); //$NON-NLS-1$
+            }
+            return json;
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package hudson.plugins.cigame;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Flavor;
+import org.kohsuke.stapler.export.Model;
+import org.kohsuke.stapler.export.ModelBuilder;
+
+import hudson.model.Api;
+import hudson.plugins.cigame.util.CompressingResponseWriter;
+
+/**
+ * Remote API of the leader board and the score cards, that tags the exports with the
+ * score version.
+ *
+ * The score version is returned as a weak ETag, and a request with an
+ * <code>If-None-Match</code> header for the current version is answered with
+ * <code>304 Not Modified</code> before anything is exported. Large JSON exports are
+ * gzip compressed, if the client accepts it, so the ETag is weak: the compressed and
+ * the uncompressed body of a version have the same ETag, but not the same bytes. A request with malformed parameters is
+ * answered with <code>400 Bad Request</code>.
+ */
+public class ScoreApi extends Api {
+
+    /** The number of characters up to which a JSON export is not compressed. */
+    static final int COMPRESSION_THRESHOLD = 8 * 1024;
+
+    private static final ModelBuilder MODEL_BUILDER = new ModelBuilder();
+
+    /** Separates the score versions of this run from the versions of earlier runs, which start over at 1. */
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final long scoreVersion;
+
+    /**
+     * @param bean the action to export
+     * @param scoreVersion the score version, read before anything of the action is exported
+     */
+    public ScoreApi(Object bean, long scoreVersion) {
+        super(bean);
+        this.scoreVersion = scoreVersion;
+    }
+
+    /**
+     * Creates the API of an action whose score version depends on the request, see
+     * {@link #getScoreVersion(StaplerRequest)}.
+     * 
+     * @param bean the action to export
+     */
+    protected ScoreApi(Object bean) {
+        this(bean, 0);
+    }
+
+    /**
+     * Returns the score version of the export that is requested. Called before anything
+     * of the action is exported.
+     * 
+     * @param req the request
+     * @return the score version
+     * @throws IllegalArgumentException thrown if the request parameters are malformed
+     */
+    protected long getScoreVersion(StaplerRequest req) {
+        return scoreVersion;
+    }
+
+    /**
+     * Returns the weak ETag of the score version, e.g. <code>W/"gbk5ns2a-42"</code>.
+     */
+    static String getETag(long scoreVersion) {
+        return "W/\"" + EPOCH + '-' + Long.toString(scoreVersion, Character.MAX_RADIX) + '"';
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void doJson(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        if (isNotModified(req, rsp)) {
+            return;
+        }
+        rsp.setContentType(Flavor.JSON.contentType);
+        String jsonp = req.getParameter("jsonp"); //$NON-NLS-1$
+        String depth = req.getParameter("depth"); //$NON-NLS-1$
+        Writer writer = new CompressingResponseWriter(req, rsp, COMPRESSION_THRESHOLD);
+        if (jsonp != null) {
+            writer.write(jsonp + '(');
+        }
+        Model model = MODEL_BUILDER.get(bean.getClass());
+        model.writeTo(bean, (depth == null) ? 0 : Integer.parseInt(depth), Flavor.JSON.createDataWriter(bean, writer));
+        if (jsonp != null) {
+            writer.write(')');
+        }
+        writer.close();
+    }
+
+    @Override
+    public void doXml(StaplerRequest req, StaplerResponse rsp, @QueryParameter String xpath, 
+            @QueryParameter String wrapper, @QueryParameter int depth) throws IOException, ServletException {
+        if (isNotModified(req, rsp)) {
+            return;
+        }
+        super.doXml(req, rsp, xpath, wrapper, depth);
+    }
+
+    /**
+     * Sets the ETag of the response, and answers the request with 304 if the client
+     * already has the current score version, or with 400 if the request is malformed.
+     * 
+     * @return true, if the response has been sent; false, if the export has to be written
+     */
+    boolean isNotModified(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        long version;
+        try {
+            version = getScoreVersion(req);
+        } catch (IllegalArgumentException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return true;
+        }
+        String etag = getETag(version);
+        rsp.setHeader("ETag", etag); //$NON-NLS-1$
+        // clients must check that the scores have not changed before they use their copy
+        rsp.setHeader("Cache-Control", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
+        // also on 304, as the cached body depends on the accepted encodings
+        rsp.setHeader("Vary", "Accept-Encoding"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (matches(req.getHeader("If-None-Match"), etag)) { //$NON-NLS-1$
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true, if the ETag is one of the ETags in the <code>If-None-Match</code> header.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = getOpaqueTag(etag);
+        for (String tag : ifNoneMatch.split(",")) { //$NON-NLS-1$
+            tag = tag.trim();
+            // If-None-Match uses the weak comparison
+            if (getOpaqueTag(tag).equals(opaqueTag) || tag.equals("*")) { //$NON-NLS-1$
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ETag without the weak indicator.
+     */
+    private static String getOpaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag; //$NON-NLS-1$
+    }
+}
@@ -4,16 +4,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Action;
+import hudson.model.Api;
 import hudson.model.Hudson;
 import hudson.model.User;
 import hudson.plugins.cigame.model.ScoreCard;
+import hudson.plugins.cigame.model.TestCountDigest;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.Entry;
 
@@ -23,7 +27,7 @@ import hudson.scm.ChangeLogSet.Entry;
  * @author Erik Ramfelt
  */
 @ExportedBean(defaultVisibility = 999)
-public class ScoreCardAction implements Action {
+public class ScoreCardAction implements Action, TestCountDigest.Holder {
 
     private static final long serialVersionUID = 1L;
 
@@ -31,9 +35,21 @@ public class ScoreCardAction implements Action {
 
     private ScoreCard scorecard;
 
+    private TestCountDigest testCountDigest;
+
     public ScoreCardAction(ScoreCard scorecard, AbstractBuild<?, ?> b) {
+        this(scorecard, b, null);
+    }
+
+    /**
+     * @param scorecard the score card of the build
+     * @param b the build
+     * @param testCountDigest the test counts of the build, kept for scoring later builds; may be null
+     */
+    public ScoreCardAction(ScoreCard scorecard, AbstractBuild<?, ?> b, TestCountDigest testCountDigest) {
         build = b;
         this.scorecard = scorecard;
+        this.testCountDigest = testCountDigest;
     }
 
     public AbstractBuild<?, ?> getBuild() {
@@ -57,21 +73,33 @@ public class ScoreCardAction implements Action {
         return scorecard;
     }
 
+    public TestCountDigest getTestCountDigest() {
+        return testCountDigest;
+    }
+
+    /**
+     * Returns the remote API of the score card, which is tagged with the score version, as
+     * the exported participants change with their scores.
+     */
+    public Api getApi() {
+        return new ScoreApi(this, Hudson.getInstance().getDescriptorByType(GameDescriptor.class).getScoreVersion());
+    }
+
     @Exported
     public Collection<User> getParticipants() {
         return getParticipants(Hudson.getInstance().getDescriptorByType(GameDescriptor.class).getNamesAreCaseSensitive());
     }
     
     Collection<User> getParticipants(boolean usernameIsCasesensitive) {
-        Comparator<User> userIdComparator = new CaseInsensitiveUserIdComparator();
         List<User> players = new ArrayList<User>();
+        Set<String> playerIds = new HashSet<String>();
         ChangeLogSet<? extends Entry> changeSet = build.getChangeSet();
         for (Entry entry : changeSet) {
             User user = entry.getAuthor();
             UserScoreProperty property = user.getProperty(UserScoreProperty.class);
             if ((property != null) 
                     && property.isParticipatingInGame() 
-                    && (usernameIsCasesensitive || Collections.binarySearch(players, user, userIdComparator) < 0)) {
+                    && (usernameIsCasesensitive || playerIds.add(CaseInsensitiveUserIdComparator.getCanonicalId(user.getId())))) {
                 players.add(user);
             }
         }
@@ -0,0 +1,71 @@
+package hudson.plugins.cigame;
+
+import net.sf.json.JSONObject;
+
+/**
+ * A score that has been added to a user by a build, as it is sent to the clients
+ * of the score event stream.
+ *
+ * @see ScoreEventBroadcaster
+ */
+final class ScoreEvent {
+
+    private final String userId;
+    private final double delta;
+    private final double total;
+    private final int rank;
+    private final String build;
+    private final String buildUrl;
+
+    /**
+     * @param userId id of the user
+     * @param delta the score that was added
+     * @param total the score of the user after it was added
+     * @param rank the rank of the user after the score was added, or 0 if not known
+     * @param build the full display name of the build that was scored
+     * @param buildUrl the url of the build, relative to the Hudson root
+     */
+    ScoreEvent(String userId, double delta, double total, int rank, String build, String buildUrl) {
+        this.userId = userId;
+        this.delta = delta;
+        this.total = total;
+        this.rank = rank;
+        this.build = build;
+        this.buildUrl = buildUrl;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    double getDelta() {
+        return delta;
+    }
+
+    double getTotal() {
+        return total;
+    }
+
+    int getRank() {
+        return rank;
+    }
+
+    String getBuild() {
+        return build;
+    }
+
+    String getBuildUrl() {
+        return buildUrl;
+    }
+
+    JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("user", userId); //$NON-NLS-1$
+        json.put("delta", delta); //$NON-NLS-1$
+        json.put("total", total); //$NON-NLS-1$
+        json.put("rank", rank); //$NON-NLS-1$
+        json.put("build", build); //$NON-NLS-1$
+        json.put("buildUrl", buildUrl); //$NON-NLS-1$
+        return json;
+    }
+}
@@ -0,0 +1,207 @@
+package hudson.plugins.cigame;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.json.JSONArray;
+
+import hudson.util.DaemonThreadFactory;
+
+/**
+ * Sends the scores that are added to the users to the clients of the score event
+ * stream, as Server-Sent Events.
+ *
+ * The events are collected and sent in batches once per flush period. A batch is
+ * written as an event stream message only once, and the same message is queued for
+ * every subscription, so the cost of a batch does not grow with the work per client.
+ * A client that does not keep up with the messages is dropped when its queue is full.
+ *
+ * Every client holds a request thread of the servlet container while it is connected,
+ * so the number of clients is capped, and a client that comes when the cap is reached
+ * is not subscribed.
+ */
+class ScoreEventBroadcaster {
+
+    private static final Logger LOGGER = Logger.getLogger(ScoreEventBroadcaster.class.getName());
+
+    static final String CONTENT_TYPE = "text/event-stream;charset=UTF-8"; //$NON-NLS-1$
+
+    /** Comment line that is sent when there are no events, so broken connections are noticed. */
+    static final String HEARTBEAT = ": heartbeat\n\n"; //$NON-NLS-1$
+
+    private final int subscriptionCapacity;
+    private final int maxSubscriptions;
+    private final List<ScoreEvent> pendingEvents = new ArrayList<ScoreEvent>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+    private final ScheduledExecutorService executor;
+    private long lastBatchId;
+
+    /**
+     * @param flushPeriod the time between two batches of events
+     * @param unit the unit of the flush period
+     * @param subscriptionCapacity the max number of batches that are queued for a client
+     * @param maxSubscriptions the max number of clients that are connected at the same time
+     */
+    ScoreEventBroadcaster(long flushPeriod, TimeUnit unit, int subscriptionCapacity, int maxSubscriptions) {
+        this.subscriptionCapacity = subscriptionCapacity;
+        this.maxSubscriptions = maxSubscriptions;
+        executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to send the score events", e); //$NON-NLS-1$
+                }
+            }
+        }, flushPeriod, flushPeriod, unit);
+    }
+
+    /**
+     * Adds an event to the next batch.
+     *
+     * @param event the score that was added to a user
+     */
+    synchronized void add(ScoreEvent event) {
+        pendingEvents.add(event);
+    }
+
+    /**
+     * Sends the events that have been added since the last batch to all subscriptions.
+     */
+    void flush() {
+        List<ScoreEvent> events;
+        synchronized (this) {
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+            events = new ArrayList<ScoreEvent>(pendingEvents);
+            pendingEvents.clear();
+        }
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        String message = toMessage(++lastBatchId, events);
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.offer(message)) {
+                LOGGER.fine("Dropped a score event client that does not keep up"); //$NON-NLS-1$
+                unsubscribe(subscription);
+            }
+        }
+    }
+
+    /**
+     * Returns the batch as an event stream message, e.g.
+     * <code>id: 7\nevent: scores\ndata: [{"user":"john","delta":1,...}]\n\n</code>.
+     */
+    static String toMessage(long batchId, List<ScoreEvent> events) {
+        JSONArray data = new JSONArray();
+        for (ScoreEvent event : events) {
+            data.add(event.toJSON());
+        }
+        return "id: " + batchId + "\nevent: scores\ndata: " + data + "\n\n"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * Starts to queue the batches for a new client.
+     *
+     * @return the subscription of the client, or null if the max number of clients are connected
+     */
+    synchronized Subscription subscribe() {
+        if (subscriptions.size() >= maxSubscriptions) {
+            return null;
+        }
+        Subscription subscription = new Subscription(subscriptionCapacity);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Stops to queue the batches for a client, and ends its stream.
+     *
+     * @param subscription the subscription of the client
+     */
+    void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+        subscription.close();
+    }
+
+    /**
+     * Returns the number of clients that are connected to the stream.
+     */
+    int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Stops sending events, and ends the streams of all clients.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            unsubscribe(subscription);
+        }
+    }
+
+    /**
+     * The queue of the batches that have not been written to a client yet.
+     */
+    static class Subscription {
+        /** Queued to wake up the stream when the subscription is closed. */
+        private static final String END_OF_STREAM = new String();
+
+        private final BlockingQueue<String> messages;
+        private volatile boolean closed;
+
+        Subscription(int capacity) {
+            // one more for the end of the stream
+            messages = new ArrayBlockingQueue<String>(capacity + 1);
+        }
+
+        private boolean offer(String message) {
+            return !closed && (messages.remainingCapacity() > 1) && messages.offer(message);
+        }
+
+        private void close() {
+            closed = true;
+            messages.offer(END_OF_STREAM);
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Writes the batches to the client as they are queued, until the subscription is
+         * closed or the client has gone away. A heartbeat is written when there has not been
+         * a batch for a while.
+         *
+         * @param writer the writer of the response
+         * @param heartbeatPeriod the max time between two writes
+         * @param unit the unit of the heartbeat period
+         * @throws InterruptedException thrown if the thread was interrupted while waiting for a batch
+         */
+        void streamTo(PrintWriter writer, long heartbeatPeriod, TimeUnit unit) throws InterruptedException {
+            writer.print(HEARTBEAT);
+            writer.flush();
+            // the print writer does not throw when the client has gone away, it sets the error flag
+            while (!writer.checkError()) {
+                String message = messages.poll(heartbeatPeriod, unit);
+                if ((message == END_OF_STREAM) || closed) {
+                    return;
+                }
+                writer.print((message == null) ? HEARTBEAT : message);
+                writer.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package hudson.plugins.cigame;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.model.User;
+import hudson.plugins.cigame.util.StringHash;
+import hudson.util.DaemonThreadFactory;
+
+/**
+ * Append only log of score changes, which takes saving the users off the build.
+ *
+ * Every score change is applied to the {@link UserScoreProperty} in memory and
+ * written to the ledger as a fixed size record (hash of the user id, points,
+ * sequence number and day of the change). A background thread appends the records to the ledger file
+ * every second, and periodically folds the ledger by saving the changed users
+ * and removing the records of the saved changes from the file. The users are
+ * saved while scores are being added, only the changes to the user being saved
+ * wait for it.
+ *
+ * The property remembers the sequence number of the last record applied to it,
+ * so replaying the ledger after a restart only applies the records that were not
+ * saved with the user. A replayed change is added to the scores of the day it was
+ * made, not of the day it is replayed. Score changes that are not written when Hudson is stopped
+ * (at most the last second) are lost.
+ */
+class ScoreLedger {
+
+    private static final Logger LOGGER = Logger.getLogger(ScoreLedger.class.getName());
+
+    /** Size of a record: user id hash (long), points (double), sequence number (long) and day (long). */
+    static final int RECORD_SIZE = 32;
+
+    private final File file;
+
+    /**
+     * Scores are added while holding the read lock, so builds do not wait for each other.
+     * Loading and resetting the ledger, and starting a fold of it, holds the write lock.
+     */
+    private final ReadWriteLock foldLock = new ReentrantReadWriteLock();
+    /** Serializes the folds and resets, which remove records from the ledger file. */
+    private final Object foldGuard = new Object();
+    /** Guards the ledger file, may be acquired while holding {@link #foldLock} but not the other way around. */
+    private final Object fileLock = new Object();
+    private final Queue<Record> pendingRecords = new ConcurrentLinkedQueue<Record>();
+    private final ConcurrentMap<String, User> dirtyUsers = new ConcurrentHashMap<String, User>();
+    private final AtomicLong lastSequence = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    ScoreLedger(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Applies the records in the ledger file which have not been saved with the users,
+     * saves the users and truncates the file. Must be called before any scores are added.
+     *
+     * @param users all users
+     * @throws IOException thrown if the ledger could not be read or a user could not be saved
+     */
+    void load(Collection<User> users) throws IOException {
+        foldLock.writeLock().lock();
+        try {
+            long sequence = 0;
+            Map<Long, User> usersByHash = new HashMap<Long, User>();
+            for (User user : users) {
+                UserScoreProperty property = user.getProperty(UserScoreProperty.class);
+                if (property != null) {
+                    usersByHash.put(StringHash.hash64(user.getId()), user);
+                    sequence = Math.max(sequence, property.getLedgerSequence());
+                }
+            }
+
+            Set<User> changedUsers = new LinkedHashSet<User>();
+            if (file.exists()) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    while (true) {
+                        Record record = Record.read(in);
+                        sequence = Math.max(sequence, record.sequence);
+
+                        User user = usersByHash.get(record.userHash);
+                        if (user == null) {
+                            LOGGER.warning("Ignoring score change for unknown user in " + file); //$NON-NLS-1$
+                            continue;
+                        }
+                        UserScoreProperty property = user.getProperty(UserScoreProperty.class);
+                        if (record.sequence > property.getLedgerSequence()) {
+                            property.addScore(record.points, record.day);
+                            property.setLedgerSequence(record.sequence);
+                            changedUsers.add(user);
+                        }
+                    }
+                } catch (EOFException e) {
+                    // end of ledger, a partly written last record is ignored
+                } finally {
+                    in.close();
+                }
+            }
+
+            for (User user : changedUsers) {
+                user.save();
+            }
+            truncate();
+            lastSequence.set(sequence);
+        } finally {
+            foldLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts writing the ledger and folding it in the background.
+     *
+     * @param writePeriod time between writes of the ledger
+     * @param foldPeriod time between folds of the ledger
+     * @param unit unit of the periods
+     */
+    synchronized void start(long writePeriod, long foldPeriod, TimeUnit unit) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    write();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to write score ledger " + file, e); //$NON-NLS-1$
+                }
+            }
+        }, writePeriod, writePeriod, unit);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    fold();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to fold score ledger " + file, e); //$NON-NLS-1$
+                }
+            }
+        }, foldPeriod, foldPeriod, unit);
+    }
+
+    /**
+     * Stops the background writing, after writing and folding the ledger one last time.
+     * Called when Hudson is stopped.
+     */
+    void stop() throws IOException {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        fold();
+    }
+
+    /**
+     * Adds points to the score of the user and records the change in the ledger.
+     * The user is saved when the ledger is folded. Scores can be added by several
+     * threads at the same time; only changes to the same user are serialized, also
+     * with the saving of the user.
+     *
+     * @param user the user
+     * @param property the score property of the user
+     * @param points the points to add
+     */
+    void addScore(User user, UserScoreProperty property, double points) {
+        addScore(user, property, points, ScoreWindow.today());
+    }
+
+    /**
+     * Adds points to the score of the user for the given day and records the change in the ledger.
+     *
+     * @param user the user
+     * @param property the score property of the user
+     * @param points the points to add
+     * @param day the day of the change, see {@link ScoreWindow#today()}
+     */
+    void addScore(User user, UserScoreProperty property, double points, long day) {
+        foldLock.readLock().lock();
+        try {
+            // the user is saved with both the score and the sequence number of the change, or neither
+            synchronized (user) {
+                synchronized (property) {
+                    // the sequence numbers of a user's changes must be increasing, also in the ledger file,
+                    // as replaying a record skips all earlier records of the user
+                    long sequence = lastSequence.incrementAndGet();
+                    property.addScore(points, day);
+                    property.setLedgerSequence(sequence);
+                    pendingRecords.add(new Record(StringHash.hash64(user.getId()), points, sequence, day));
+                }
+            }
+            dirtyUsers.put(user.getId(), user);
+        } finally {
+            foldLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last score change.
+     * @return the last sequence number
+     */
+    long getLastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * Appends the pending records to the ledger file and forces them to disk.
+     *
+     * @throws IOException thrown if the file could not be written
+     */
+    void write() throws IOException {
+        append(takePendingRecords());
+    }
+
+    /**
+     * Saves the users that have changed since the last fold and removes their changes from
+     * the ledger file. Scores can be added while the users are saved; the changes made after
+     * the fold has started are kept in the ledger for the next fold.
+     *
+     * @throws IOException thrown if the ledger could not be written
+     */
+    void fold() throws IOException {
+        synchronized (foldGuard) {
+            Map<String, User> users;
+            long foldedLength;
+            foldLock.writeLock().lock();
+            try {
+                append(takePendingRecords());
+                users = new HashMap<String, User>(dirtyUsers);
+                dirtyUsers.clear();
+                foldedLength = file.length();
+            } finally {
+                foldLock.writeLock().unlock();
+            }
+
+            boolean allSaved = true;
+            for (Map.Entry<String, User> entry : users.entrySet()) {
+                try {
+                    entry.getValue().save();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to save score of user " + entry.getKey(), e); //$NON-NLS-1$
+                    dirtyUsers.putIfAbsent(entry.getKey(), entry.getValue());
+                    allSaved = false;
+                }
+            }
+
+            if (allSaved) {
+                removeFirstRecords(foldedLength);
+            }
+        }
+    }
+
+    /**
+     * Resets the scores of the users, while no scores can be added. The changes recorded
+     * before the reset are discarded, as the reset saves the users.
+     *
+     * @param reset the reset of the scores, which saves the users
+     * @throws IOException thrown if a user could not be saved or the ledger could not be truncated
+     */
+    void resetScores(ScoreReset reset) throws IOException {
+        synchronized (foldGuard) {
+            foldLock.writeLock().lock();
+            try {
+                pendingRecords.clear();
+                dirtyUsers.clear();
+                reset.resetScores();
+                truncate();
+            } finally {
+                foldLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private byte[] takePendingRecords() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            for (Record record = pendingRecords.poll(); record != null; record = pendingRecords.poll()) {
+                record.write(out);
+            }
+        } catch (IOException e) {
+            // cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void append(byte[] records) throws IOException {
+        if (records.length == 0) {
+            return;
+        }
+        synchronized (fileLock) {
+            FileOutputStream out = new FileOutputStream(file, true);
+            try {
+                out.write(records);
+                out.getChannel().force(false);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Removes the given number of bytes from the start of the ledger file, keeping the
+     * records appended after them. The kept records are copied to the start of the file,
+     * a copy that is cut short only leaves records that are replayed before their originals.
+     */
+    private void removeFirstRecords(long length) throws IOException {
+        synchronized (fileLock) {
+            if (file.length() <= length) {
+                truncate();
+                return;
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+            try {
+                byte[] buffer = new byte[RECORD_SIZE * 256];
+                long from = length;
+                long to = 0;
+                int read;
+                while ((read = readAt(raf, from, buffer)) > 0) {
+                    raf.seek(to);
+                    raf.write(buffer, 0, read);
+                    from += read;
+                    to += read;
+                }
+                raf.setLength(to);
+                raf.getChannel().force(false);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private static int readAt(RandomAccessFile raf, long position, byte[] buffer) throws IOException {
+        raf.seek(position);
+        int read = raf.read(buffer);
+        return Math.max(read, 0);
+    }
+
+    private void truncate() throws IOException {
+        synchronized (fileLock) {
+            if (file.exists()) {
+                new FileOutputStream(file).close();
+            }
+        }
+    }
+
+    /**
+     * A change of the scores of all users that is made while no scores can be added.
+     */
+    interface ScoreReset {
+        void resetScores() throws IOException;
+    }
+
+    /**
+     * A score change, as stored in the ledger file.
+     */
+    private static class Record {
+        private final long userHash;
+        private final double points;
+        private final long sequence;
+        private final long day;
+
+        Record(long userHash, double points, long sequence, long day) {
+            this.userHash = userHash;
+            this.points = points;
+            this.sequence = sequence;
+            this.day = day;
+        }
+
+        static Record read(DataInputStream in) throws IOException {
+            return new Record(in.readLong(), in.readDouble(), in.readLong(), in.readLong());
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(userHash);
+            out.writeDouble(points);
+            out.writeLong(sequence);
+            out.writeLong(day);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package hudson.plugins.cigame;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time window of a leader board, which only counts the points given during the window.
+ * The windows end with the current day, in the time zone of the server.
+ */
+public enum ScoreWindow {
+
+    /** The current week, from the first day of the week of the server locale. */
+    WEEK {
+        @Override
+        long getFirstDay(long today) {
+            Calendar calendar = toCalendar(today);
+            int daysIntoWeek = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+            return today - daysIntoWeek;
+        }
+    },
+
+    /** The current month, from its first day. */
+    MONTH {
+        @Override
+        long getFirstDay(long today) {
+            return today - toCalendar(today).get(Calendar.DAY_OF_MONTH) + 1;
+        }
+    },
+
+    /** The last 30 days, including the current day. */
+    LAST_30_DAYS {
+        @Override
+        long getFirstDay(long today) {
+            return today - 29;
+        }
+    };
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Returns the first day of the window that ends with the given day.
+     *
+     * @param today the last day of the window
+     * @return the first day of the window, inclusive
+     */
+    abstract long getFirstDay(long today);
+
+    /**
+     * Returns the window with the name used in urls, e.g. <code>month</code> for
+     * <code>/cigame/?window=month</code>.
+     *
+     * @param name the name of the window, in any case
+     * @return the window; or null, if the name is null
+     * @throws IllegalArgumentException thrown if there is no window with the name
+     */
+    static ScoreWindow fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (ScoreWindow window : values()) {
+            if (window.getName().equalsIgnoreCase(name)) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("Unknown score window: " + name); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the name of the window used in urls, e.g. <code>last_30_days</code>.
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Returns the number of the day of the time, in the time zone of the server.
+     *
+     * @param time the time in milliseconds
+     * @return the number of days since 1970-01-01
+     */
+    static long getDay(long time) {
+        return (time + TimeZone.getDefault().getOffset(time)) / DAY_MILLIS;
+    }
+
+    /**
+     * Returns the number of the current day.
+     */
+    static long today() {
+        return getDay(System.currentTimeMillis());
+    }
+
+    private static Calendar toCalendar(long day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeZone(TimeZone.getTimeZone("UTC")); //$NON-NLS-1$
+        calendar.setTimeInMillis(day * DAY_MILLIS);
+        return calendar;
+    }
+}
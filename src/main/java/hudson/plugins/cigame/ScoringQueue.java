@@ -0,0 +1,234 @@
+package hudson.plugins.cigame;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import hudson.model.Api;
+import hudson.util.DaemonThreadFactory;
+
+/**
+ * Bounded pool of worker threads that score builds, so the build executor is not
+ * held while the rules are evaluated and the users are updated.
+ *
+ * The builds of a project are scored one after another, in the order they were queued,
+ * as the rules compare a build with the previous one. Builds of different projects are
+ * scored in parallel.
+ *
+ * When the queue is full, {@link #offer(String, Runnable)} refuses the job and the caller
+ * scores the build itself, between {@link #startInline(String)} and {@link #finishInline(String)},
+ * once the queued builds of the project have been scored. This pushes back on the builds
+ * instead of letting the queue grow without bounds.
+ */
+@ExportedBean(defaultVisibility = 999)
+public class ScoringQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(ScoringQueue.class.getName());
+
+    private final ThreadPoolExecutor executor;
+    private final int capacity;
+    private final AtomicLong refusedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    /** The projects with queued jobs or a job being run, guarded by this. */
+    private final Map<String, ProjectJobs> projects = new HashMap<String, ProjectJobs>();
+    /** The number of queued jobs of all projects, guarded by this. */
+    private int queueDepth;
+
+    ScoringQueue(int workers, int capacity) {
+        this.capacity = capacity;
+        // the executor queue holds at most one task per project, the jobs are bounded by the capacity
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+    }
+
+    /**
+     * Queues a scoring job, which is run after the jobs queued before for the same project.
+     *
+     * @param project the full name of the project of the build
+     * @param job the job to run
+     * @return true, if the job was queued; false, if the queue is full or shut down and the caller has to run the job
+     */
+    synchronized boolean offer(String project, Runnable job) {
+        if (executor.isShutdown()) {
+            return false;
+        }
+        if (queueDepth >= capacity) {
+            refusedCount.incrementAndGet();
+            return false;
+        }
+        ProjectJobs jobs = projects.get(project);
+        if (jobs == null) {
+            jobs = new ProjectJobs(project);
+            projects.put(project, jobs);
+        }
+        jobs.queue.add(job);
+        queueDepth++;
+        if (!jobs.isBusy) {
+            jobs.isBusy = true;
+            executor.execute(jobs);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the queued jobs of the project have been run, and keeps jobs that are
+     * queued for the project from being run until {@link #finishInline(String)} is called.
+     *
+     * @param project the full name of the project of the build that is scored by the caller
+     * @throws InterruptedException thrown if the caller is interrupted while waiting
+     */
+    synchronized void startInline(String project) throws InterruptedException {
+        ProjectJobs jobs = projects.get(project);
+        while (jobs != null) {
+            wait();
+            jobs = projects.get(project);
+        }
+        jobs = new ProjectJobs(project);
+        jobs.isBusy = true;
+        projects.put(project, jobs);
+    }
+
+    /**
+     * Lets the jobs that were queued for the project while the caller scored a build be run.
+     *
+     * @param project the full name of the project of the build that was scored by the caller
+     */
+    void finishInline(String project) {
+        ProjectJobs jobs;
+        synchronized (this) {
+            jobs = projects.get(project);
+            if (jobs == null) {
+                return;
+            }
+            if (!executor.isShutdown()) {
+                executor.execute(jobs);
+                return;
+            }
+        }
+        // the workers do not take any more tasks, the caller runs the jobs queued meanwhile
+        jobs.run();
+    }
+
+    /**
+     * Returns the remote API of the queue.
+     */
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * Returns the number of builds waiting to be scored.
+     * @return the number of queued jobs
+     */
+    @Exported
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the max number of builds that can wait to be scored.
+     * @return the capacity of the queue
+     */
+    @Exported
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of builds that are being scored right now.
+     * @return the number of busy workers
+     */
+    @Exported
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of builds that have been scored by the workers.
+     * @return the number of completed jobs
+     */
+    @Exported
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Returns the number of builds that were scored on the build executor, as the queue was full.
+     * @return the number of refused jobs
+     */
+    @Exported
+    public long getRefusedCount() {
+        return refusedCount.get();
+    }
+
+    /**
+     * Stops accepting jobs. The workers stop after the queued jobs have been run.
+     */
+    synchronized void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Stops accepting jobs and waits until the queued jobs have been run.
+     *
+     * @param timeout the max time to wait
+     * @param unit the unit of the timeout
+     * @return true, if all jobs have been run; false, if the timeout elapsed
+     * @throws InterruptedException thrown if the caller is interrupted while waiting
+     */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns whether the queue has been shut down and all queued jobs have been run.
+     */
+    boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    /**
+     * The jobs queued for a project, which a worker runs one after another.
+     */
+    private class ProjectJobs implements Runnable {
+        private final String project;
+        private final Queue<Runnable> queue = new LinkedList<Runnable>();
+        private boolean isBusy;
+
+        ProjectJobs(String project) {
+            this.project = project;
+        }
+
+        public void run() {
+            while (true) {
+                Runnable job;
+                synchronized (ScoringQueue.this) {
+                    job = queue.poll();
+                    if (job == null) {
+                        projects.remove(project);
+                        ScoringQueue.this.notifyAll();
+                        return;
+                    }
+                    queueDepth--;
+                }
+                try {
+                    job.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to score build", e); //$NON-NLS-1$
+                }
+                completedCount.incrementAndGet();
+            }
+        }
+    }
+}
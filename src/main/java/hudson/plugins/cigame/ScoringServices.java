@@ -0,0 +1,107 @@
+package hudson.plugins.cigame;
+
+import java.util.concurrent.ExecutorService;
+
+import hudson.plugins.cigame.model.BuildHistoryIndex;
+import hudson.plugins.cigame.rules.unittesting.FlakyTestHistory;
+
+/**
+ * The services that the {@link GamePublisher} uses when it scores a build. Every service
+ * is optional, a service that has not been set is not used.
+ *
+ * @see GameDescriptor#getScoringServices(hudson.model.AbstractProject)
+ */
+class ScoringServices {
+
+    private LeaderBoardIndex leaderBoardIndex;
+    private ScoreLedger scoreLedger;
+    private ExecutorService ruleExecutor;
+    private BuildHistoryIndex historyIndex;
+    private FlakyTestHistory flakyTestHistory;
+    private RuleMetrics ruleMetrics;
+    private ScoreEventBroadcaster scoreEvents;
+
+    /**
+     * Returns the index to update with the new user scores.
+     * @return the index, or null
+     */
+    LeaderBoardIndex getLeaderBoardIndex() {
+        return leaderBoardIndex;
+    }
+
+    void setLeaderBoardIndex(LeaderBoardIndex leaderBoardIndex) {
+        this.leaderBoardIndex = leaderBoardIndex;
+    }
+
+    /**
+     * Returns the ledger to record the score changes in.
+     * @return the ledger, or null to save the users immediately
+     */
+    ScoreLedger getScoreLedger() {
+        return scoreLedger;
+    }
+
+    void setScoreLedger(ScoreLedger scoreLedger) {
+        this.scoreLedger = scoreLedger;
+    }
+
+    /**
+     * Returns the executor to evaluate the rules in parallel with.
+     * @return the executor, or null to evaluate the rules one after another
+     */
+    ExecutorService getRuleExecutor() {
+        return ruleExecutor;
+    }
+
+    void setRuleExecutor(ExecutorService ruleExecutor) {
+        this.ruleExecutor = ruleExecutor;
+    }
+
+    /**
+     * Returns the index of the job's builds to read earlier builds from and to add the build to.
+     * @return the index, or null
+     */
+    BuildHistoryIndex getHistoryIndex() {
+        return historyIndex;
+    }
+
+    void setHistoryIndex(BuildHistoryIndex historyIndex) {
+        this.historyIndex = historyIndex;
+    }
+
+    /**
+     * Returns the history of the job's flaky tests to add the build's failed tests to.
+     * @return the history, or null
+     */
+    FlakyTestHistory getFlakyTestHistory() {
+        return flakyTestHistory;
+    }
+
+    void setFlakyTestHistory(FlakyTestHistory flakyTestHistory) {
+        this.flakyTestHistory = flakyTestHistory;
+    }
+
+    /**
+     * Returns the metrics to add the time it took to evaluate the rules to.
+     * @return the metrics, or null
+     */
+    RuleMetrics getRuleMetrics() {
+        return ruleMetrics;
+    }
+
+    void setRuleMetrics(RuleMetrics ruleMetrics) {
+        this.ruleMetrics = ruleMetrics;
+    }
+
+    /**
+     * Returns the broadcaster to send the added scores to the score event stream with.
+     * @return the broadcaster, or null
+     */
+    ScoreEventBroadcaster getScoreEvents() {
+        return scoreEvents;
+    }
+
+    void setScoreEvents(ScoreEventBroadcaster scoreEvents) {
+        this.scoreEvents = scoreEvents;
+    }
+}
@@ -4,6 +4,7 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
+import hudson.model.Hudson;
 import hudson.model.User;
 import hudson.model.UserProperty;
 
@@ -14,12 +15,18 @@ import hudson.model.UserProperty;
 @ExportedBean(defaultVisibility = 999)
 public class UserScoreProperty extends UserProperty {
 
-    private double score;
+    private volatile double score;
     
     /** Inversed name as default value is false when serializing from data that
      * has doesnt have the value. */
     private boolean isNotParticipatingInGame;
 
+    /** Sequence number of the last {@link ScoreLedger} record that is included in the score. */
+    private long ledgerSequence;
+
+    /** The points per day, for the time windowed leader boards. Null in data saved before they were kept. */
+    private DailyScores dailyScores;
+
     public UserScoreProperty() {
         score = 0;
         isNotParticipatingInGame = false;
@@ -41,10 +48,74 @@ public class UserScoreProperty extends UserProperty {
         return score;
     }
 
-    public void setScore(double score) {
+    public synchronized void setScore(double score) {
         this.score = score;
     }
 
+    /**
+     * Adds points to the score. The score is updated atomically, as several builds
+     * by the same user may be scored at the same time.
+     * 
+     * @param points the points to add
+     */
+    public synchronized void addScore(double points) {
+        addScore(points, ScoreWindow.today());
+    }
+
+    synchronized void addScore(double points, long day) {
+        this.score += points;
+        getDailyScores().add(day, points);
+    }
+
+    /**
+     * Returns the points given during the time window that ends today.
+     * 
+     * @param window the time window
+     * @return the score of the window
+     */
+    public double getScore(ScoreWindow window) {
+        return getScore(window, ScoreWindow.today());
+    }
+
+    synchronized double getScore(ScoreWindow window, long today) {
+        return getDailyScores().getScore(window.getFirstDay(today), today);
+    }
+
+    /**
+     * Sets the score of all time windows to 0.
+     */
+    public synchronized void clearDailyScores() {
+        getDailyScores().clear();
+    }
+
+    private DailyScores getDailyScores() {
+        if (dailyScores == null) {
+            dailyScores = new DailyScores();
+        }
+        return dailyScores;
+    }
+
+    synchronized long getLedgerSequence() {
+        return ledgerSequence;
+    }
+
+    synchronized void setLedgerSequence(long ledgerSequence) {
+        this.ledgerSequence = ledgerSequence;
+    }
+
+    /**
+     * Returns the rank of the user on the leader board.
+     * 
+     * @return the rank, starting at 1; or 0 if the user is not on the leader board.
+     */
+    @Exported
+    public int getRank() {
+        if (user == null) {
+            return 0;
+        }
+        return Hudson.getInstance().getDescriptorByType(GameDescriptor.class).getLeaderBoardSnapshot().getRank(user.getId());
+    }
+
     @Exported
     public boolean isParticipatingInGame() {
         return !isNotParticipatingInGame;
@@ -6,6 +6,7 @@ import org.kohsuke.stapler.StaplerRequest;
 
 import hudson.Extension;
 import hudson.Util;
+import hudson.model.Hudson;
 import hudson.model.User;
 import hudson.model.UserProperty;
 import hudson.model.UserPropertyDescriptor;
@@ -44,6 +45,16 @@ public class UserScorePropertyDescriptor extends UserPropertyDescriptor {
 
     @Override
     public UserScoreProperty newInstance(StaplerRequest req, JSONObject formData) throws hudson.model.Descriptor.FormException {
+        GameDescriptor gameDescriptor = Hudson.getInstance().getDescriptorByType(GameDescriptor.class);
+        UserScoreProperty property = newUserScoreProperty(req, formData);
+        // the score is set by the user, earlier changes in the ledger must not be replayed on top of it;
+        // the ledger is loaded when Hudson has been started, see GameDescriptor.ScoreLedgerLoader
+        property.setLedgerSequence(gameDescriptor.getLastScoreLedgerSequence());
+        // the leader board picks up the score and participation when the user is saved, see GameDescriptor.UserSaveListener
+        return property;
+    }
+
+    private UserScoreProperty newUserScoreProperty(StaplerRequest req, JSONObject formData) throws hudson.model.Descriptor.FormException {
         if (formData == null) {
             return newInstanceIfJSONIsNull(req);
         }
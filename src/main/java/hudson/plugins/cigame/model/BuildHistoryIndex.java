@@ -0,0 +1,215 @@
+package hudson.plugins.cigame.model;
+
+import hudson.model.AbstractProject;
+import hudson.tasks.LogRotator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Index of the {@link BuildSummary}s of the scored builds of a job, stored next to the
+ * builds of the job. A summary is appended to the index file when a build is scored,
+ * so the rules can compare against earlier builds without loading their actions and
+ * test results.
+ *
+ * The file starts with a header, followed by the summaries as fixed size records.
+ * If a build is scored again, the last record of the build is used. A file with an
+ * unknown header is discarded and the index starts over.
+ *
+ * The index keeps the summaries of as many builds as the job keeps, or of the last
+ * {@link #DEFAULT_MAX_BUILDS} builds if the job keeps all builds; older summaries are
+ * dropped. The file is compacted when it is loaded with records that are no longer
+ * used, and when twice as many records as the index keeps have been appended.
+ */
+public class BuildHistoryIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(BuildHistoryIndex.class.getName());
+
+    /** Name of the index file in the root directory of the job. */
+    public static final String FILENAME = "cigame-history.index"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0x63696768;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    /** Max number of summaries kept for a job that does not discard old builds by count. */
+    static final int DEFAULT_MAX_BUILDS = 1000;
+
+    private final AbstractProject<?, ?> project;
+    private final File file;
+    private SortedMap<Integer, BuildSummary> summaries;
+    /** Number of records in the index file. */
+    private long records;
+
+    public BuildHistoryIndex(AbstractProject<?, ?> project, File file) {
+        this.project = project;
+        this.file = file;
+    }
+
+    /**
+     * Returns the job of the indexed builds.
+     * @return the job
+     */
+    public AbstractProject<?, ?> getProject() {
+        return project;
+    }
+
+    /**
+     * Returns the summary of a build.
+     * @param number the number of the build
+     * @return the summary, or null if the build has not been indexed
+     * @throws IOException thrown if the index could not be read
+     */
+    public synchronized BuildSummary get(int number) throws IOException {
+        return getSummaries().get(number);
+    }
+
+    /**
+     * Returns the number of indexed builds.
+     * @return the number of builds
+     * @throws IOException thrown if the index could not be read
+     */
+    public synchronized int size() throws IOException {
+        return getSummaries().size();
+    }
+
+    /**
+     * Adds the summary of a build to the index, and appends it to the index file. The
+     * summary replaces an earlier summary of the same build.
+     * @param summary the summary of the build
+     * @throws IOException thrown if the index could not be read or written
+     */
+    public synchronized void add(BuildSummary summary) throws IOException {
+        SortedMap<Integer, BuildSummary> summaries = getSummaries();
+        summaries.put(summary.getNumber(), summary);
+        removeOldSummaries(summaries);
+        if (records >= 2 * getMaxBuilds()) {
+            compact(summaries);
+            return;
+        }
+
+        boolean writeHeader = !file.exists() || (file.length() < HEADER_SIZE);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + BuildSummary.SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(BuildSummary.SIZE);
+        }
+        summary.write(out);
+        out.close();
+
+        FileOutputStream fileOut = new FileOutputStream(file, !writeHeader);
+        try {
+            fileOut.write(bytes.toByteArray());
+            fileOut.getChannel().force(false);
+        } finally {
+            fileOut.close();
+        }
+        records = writeHeader ? 1 : records + 1;
+    }
+
+    /**
+     * Returns the number of summaries kept, which is the number of builds kept by the job.
+     */
+    private int getMaxBuilds() {
+        LogRotator logRotator = (project == null) ? null : project.getLogRotator();
+        if ((logRotator != null) && (logRotator.getNumToKeep() > 0)) {
+            return logRotator.getNumToKeep();
+        }
+        return DEFAULT_MAX_BUILDS;
+    }
+
+    private void removeOldSummaries(SortedMap<Integer, BuildSummary> summaries) {
+        int maxBuilds = getMaxBuilds();
+        while (summaries.size() > maxBuilds) {
+            summaries.remove(summaries.firstKey());
+        }
+    }
+
+    /**
+     * Rewrites the index file with only the summaries in the index.
+     */
+    private void compact(SortedMap<Integer, BuildSummary> summaries) throws IOException {
+        File compacted = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compacted)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(BuildSummary.SIZE);
+            for (BuildSummary summary : summaries.values()) {
+                summary.write(out);
+            }
+        } finally {
+            out.close();
+        }
+        if (!compacted.renameTo(file)) {
+            // the file cannot be replaced on all platforms
+            if (!file.delete() || !compacted.renameTo(file)) {
+                throw new IOException("Failed to replace " + file + " with " + compacted); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        records = summaries.size();
+    }
+
+    private SortedMap<Integer, BuildSummary> getSummaries() throws IOException {
+        if (summaries == null) {
+            summaries = load();
+            if (records > summaries.size()) {
+                // builds that were scored again or have been dropped
+                compact(summaries);
+            }
+        }
+        return summaries;
+    }
+
+    private SortedMap<Integer, BuildSummary> load() throws IOException {
+        SortedMap<Integer, BuildSummary> loaded = new TreeMap<Integer, BuildSummary>();
+        records = 0;
+        if (!file.exists()) {
+            return loaded;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || (in.readInt() != BuildSummary.SIZE)) {
+                LOGGER.info("Discarding build history index with unknown format " + file); //$NON-NLS-1$
+                in.close();
+                new FileOutputStream(file).close();
+                records = 0;
+                return loaded;
+            }
+            while (true) {
+                BuildSummary summary = BuildSummary.read(in);
+                loaded.put(summary.getNumber(), summary);
+                records++;
+            }
+        } catch (EOFException e) {
+            // end of index, a partly written last record is ignored
+        } finally {
+            in.close();
+        }
+        if (file.length() > HEADER_SIZE + records * BuildSummary.SIZE) {
+            // remove the partly written record, so that the next record is appended in place
+            RandomAccessFile out = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+            try {
+                out.setLength(HEADER_SIZE + records * BuildSummary.SIZE);
+            } finally {
+                out.close();
+            }
+        }
+        removeOldSummaries(loaded);
+        return loaded;
+    }
+}
@@ -0,0 +1,256 @@
+package hudson.plugins.cigame.model;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.model.Result;
+import hudson.plugins.analysis.core.AbstractResultAction;
+import hudson.plugins.analysis.core.BuildResult;
+import hudson.plugins.analysis.util.model.Priority;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The few numbers of a build that the rules compare against: the result, the test
+ * counts and the number of warnings per priority of the static analysis plugins.
+ *
+ * A summary can be computed from a build, or read from the {@link BuildHistoryIndex}
+ * of the job, in which case the build's actions and test results are not loaded.
+ * The summary is stored as a fixed size record of {@link #SIZE} bytes.
+ */
+public final class BuildSummary {
+
+    /**
+     * The static analysis plugins with a summary. The order is the order of the
+     * counts in the stored record, and can not be changed.
+     */
+    public enum Analysis {
+        CHECKSTYLE("hudson.plugins.checkstyle.CheckStyleResultAction"), //$NON-NLS-1$
+        FINDBUGS("hudson.plugins.findbugs.FindBugsResultAction"), //$NON-NLS-1$
+        PMD("hudson.plugins.pmd.PmdResultAction"), //$NON-NLS-1$
+        WARNINGS("hudson.plugins.warnings.WarningsResultAction"), //$NON-NLS-1$
+        OPEN_TASKS("hudson.plugins.tasks.TasksResultAction"); //$NON-NLS-1$
+
+        private final String actionClassName;
+        private Class<? extends Action> actionClass;
+        private boolean isLoaded;
+
+        private Analysis(String actionClassName) {
+            this.actionClassName = actionClassName;
+        }
+
+        /**
+         * Returns the result action class of the plugin.
+         * @return the action class, or null if the plugin is not installed
+         */
+        synchronized Class<? extends Action> getActionClass() {
+            if (!isLoaded) {
+                try {
+                    actionClass = Class.forName(actionClassName, false, BuildSummary.class.getClassLoader())
+                            .asSubclass(Action.class);
+                } catch (ClassNotFoundException e) {
+                    actionClass = null;
+                } catch (LinkageError e) {
+                    actionClass = null;
+                }
+                isLoaded = true;
+            }
+            return actionClass;
+        }
+    }
+
+    /** Size of the stored summary, in bytes. */
+    public static final int SIZE = 4 + 1 + 1 + 1 + 3 * 4 + Analysis.values().length * Priority.values().length * 4;
+
+    /** The results that can be stored, a result is stored as its index. */
+    private static final Result[] RESULTS = {
+        Result.SUCCESS, Result.UNSTABLE, Result.FAILURE, Result.NOT_BUILT, Result.ABORTED };
+
+    private final int number;
+    private final Result result;
+    private final int totalCount;
+    private final int failCount;
+    private final int skipCount;
+    private final int results;
+    private final int errors;
+    private final int[] numberOfAnnotations;
+
+    BuildSummary(int number, Result result, int totalCount, int failCount, int skipCount,
+            int results, int errors, int[] numberOfAnnotations) {
+        this.number = number;
+        this.result = result;
+        this.totalCount = totalCount;
+        this.failCount = failCount;
+        this.skipCount = skipCount;
+        this.results = results;
+        this.errors = errors;
+        this.numberOfAnnotations = numberOfAnnotations;
+    }
+
+    /**
+     * Computes the summary of the build. The warnings are only counted for builds that
+     * are unstable or better, as the rules ignore the warnings of failed builds.
+     *
+     * @param build the build
+     * @param context context to look up the test counts and actions with
+     * @return the summary
+     */
+    public static BuildSummary of(AbstractBuild<?, ?> build, EvaluationContext context) {
+        Result result = build.getResult();
+        TestCountDigest testCounts = context.getTestCountDigest(build);
+        int results = 0;
+        int errors = 0;
+        int[] numberOfAnnotations = new int[Analysis.values().length * Priority.values().length];
+        if ((result != null) && result.isBetterOrEqualTo(Result.UNSTABLE)) {
+            for (Analysis analysis : Analysis.values()) {
+                Class<? extends Action> actionClass = analysis.getActionClass();
+                if (actionClass == null) {
+                    continue;
+                }
+                List<? extends Action> actions = context.getActions(build, actionClass);
+                if ((actions == null) || actions.isEmpty()) {
+                    continue;
+                }
+                results |= 1 << analysis.ordinal();
+                if (hasError(actions)) {
+                    // the counts are not used when there are errors
+                    errors |= 1 << analysis.ordinal();
+                    continue;
+                }
+                for (Action action : actions) {
+                    BuildResult buildResult = ((AbstractResultAction<?>) action).getResult();
+                    for (Priority priority : Priority.values()) {
+                        numberOfAnnotations[index(analysis, priority)] += buildResult.getNumberOfAnnotations(priority);
+                    }
+                }
+            }
+        }
+        if (testCounts == null) {
+            return new BuildSummary(build.getNumber(), result, -1, 0, 0, results, errors, numberOfAnnotations);
+        }
+        return new BuildSummary(build.getNumber(), result, testCounts.getTotalCount(), testCounts.getFailCount(),
+                testCounts.getSkipCount(), results, errors, numberOfAnnotations);
+    }
+
+    private static boolean hasError(List<? extends Action> actions) {
+        for (Action action : actions) {
+            if (((AbstractResultAction<?>) action).getResult().hasError()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int index(Analysis analysis, Priority priority) {
+        return analysis.ordinal() * Priority.values().length + priority.ordinal();
+    }
+
+    /**
+     * Reads a summary written by {@link #write(DataOutput)}.
+     * @param in the input to read from
+     * @return the summary
+     * @throws IOException thrown if the summary could not be read
+     */
+    public static BuildSummary read(DataInput in) throws IOException {
+        int number = in.readInt();
+        byte resultIndex = in.readByte();
+        int results = in.readByte();
+        int errors = in.readByte();
+        int totalCount = in.readInt();
+        int failCount = in.readInt();
+        int skipCount = in.readInt();
+        int[] numberOfAnnotations = new int[Analysis.values().length * Priority.values().length];
+        for (int i = 0; i < numberOfAnnotations.length; i++) {
+            numberOfAnnotations[i] = in.readInt();
+        }
+        Result result = ((resultIndex >= 0) && (resultIndex < RESULTS.length)) ? RESULTS[resultIndex] : null;
+        return new BuildSummary(number, result, totalCount, failCount, skipCount, results, errors, numberOfAnnotations);
+    }
+
+    /**
+     * Writes the summary as {@link #SIZE} bytes.
+     * @param out the output to write to
+     * @throws IOException thrown if the summary could not be written
+     */
+    public void write(DataOutput out) throws IOException {
+        int resultIndex = -1;
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i] == result) {
+                resultIndex = i;
+            }
+        }
+        out.writeInt(number);
+        out.writeByte(resultIndex);
+        out.writeByte(results);
+        out.writeByte(errors);
+        out.writeInt(totalCount);
+        out.writeInt(failCount);
+        out.writeInt(skipCount);
+        for (int count : numberOfAnnotations) {
+            out.writeInt(count);
+        }
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the result of the build.
+     * @return the result, or null if the build had no result
+     */
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * Returns if the build has a test result.
+     * @return true, if the build has a test result; false, otherwise
+     */
+    public boolean hasTestResult() {
+        return totalCount >= 0;
+    }
+
+    public int getTotalCount() {
+        return Math.max(totalCount, 0);
+    }
+
+    public int getFailCount() {
+        return failCount;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    /**
+     * Returns if the analysis plugin has a result for the build.
+     * @param analysis the analysis plugin
+     * @return true, if the build has a result action of the plugin; false, otherwise
+     */
+    public boolean hasResult(Analysis analysis) {
+        return (results & (1 << analysis.ordinal())) != 0;
+    }
+
+    /**
+     * Returns if any of the results of the analysis plugin has errors, in which case
+     * the warnings are not counted.
+     * @param analysis the analysis plugin
+     * @return true, if a result has errors; false, otherwise
+     */
+    public boolean hasErrors(Analysis analysis) {
+        return (errors & (1 << analysis.ordinal())) != 0;
+    }
+
+    /**
+     * Returns the number of warnings of the analysis plugin with the priority.
+     * @param analysis the analysis plugin
+     * @param priority the priority of the warnings
+     * @return the number of warnings
+     */
+    public int getNumberOfAnnotations(Analysis analysis, Priority priority) {
+        return numberOfAnnotations[index(analysis, priority)];
+    }
+}
@@ -0,0 +1,21 @@
+package hudson.plugins.cigame.model;
+
+import hudson.model.AbstractBuild;
+
+/**
+ * An {@link AggregatableRule} that looks up the build history through an {@link EvaluationContext},
+ * so the lookups are shared with the other rules that score the same build.
+ */
+public interface ContextualRule<T> extends AggregatableRule<T> {
+
+    /**
+     * Evaluates the rule for the current build compared to a previous build.
+     *
+     * @param previousBuild the previous build with usable results (may be null!)
+     * @param build the current build (may be null!)
+     * @param context the context of the scoring, to look up builds and actions with
+     * @return the rule result or null, if no points should be awarded
+     * @see AggregatableRule#evaluate(AbstractBuild, AbstractBuild)
+     */
+    RuleResult<T> evaluate(AbstractBuild<?, ?> previousBuild, AbstractBuild<?, ?> build, EvaluationContext context);
+}
@@ -0,0 +1,270 @@
+package hudson.plugins.cigame.model;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.model.Result;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers what has been looked up in the build history while a build is scored, so
+ * that every historical build is loaded and inspected at most once, even though every
+ * rule walks the history by itself.
+ *
+ * A context is created for each scoring of a build and must not be kept afterwards, as
+ * the builds may change. The class is thread safe, so rules that are evaluated in
+ * parallel can share the context.
+ *
+ * When the context has the {@link BuildHistoryIndex} of the job, the summaries of the
+ * indexed builds are read from the index instead of from the builds. The summary of the
+ * scored build is always computed from the build, as it is scored again if it is indexed.
+ */
+public class EvaluationContext {
+
+    private static final Logger LOGGER = Logger.getLogger(EvaluationContext.class.getName());
+
+    private static final Lookup<BuildSummary> SUMMARY = new Lookup<BuildSummary>() {
+        public BuildSummary lookup(AbstractBuild<?, ?> build, EvaluationContext context) {
+            return BuildSummary.of(build, context);
+        }
+    };
+
+    private static final Lookup<TestCountDigest> TEST_COUNT_DIGEST = new Lookup<TestCountDigest>() {
+        public TestCountDigest lookup(AbstractBuild<?, ?> build, EvaluationContext context) {
+            List<TestCountDigest.Holder> holders = context.getActions(build, TestCountDigest.Holder.class);
+            if (holders != null) {
+                for (TestCountDigest.Holder holder : holders) {
+                    if (holder.getTestCountDigest() != null) {
+                        return holder.getTestCountDigest();
+                    }
+                }
+            }
+            return TestCountDigest.of(context.getTestResultAction(build));
+        }
+    };
+
+    /** Marks a looked up value that was null, as the maps can not hold null. */
+    private static final Object NONE = new Object();
+
+    private final ConcurrentMap<AbstractBuild<?, ?>, Object> previousBuilds = new ConcurrentHashMap<AbstractBuild<?, ?>, Object>();
+    private final ConcurrentMap<AbstractBuild<?, ?>, Object> previousBuiltBuilds = new ConcurrentHashMap<AbstractBuild<?, ?>, Object>();
+    private final ConcurrentMap<AbstractBuild<?, ?>, Object> testResultActions = new ConcurrentHashMap<AbstractBuild<?, ?>, Object>();
+    private final ConcurrentMap<Key, Object> actions = new ConcurrentHashMap<Key, Object>();
+    private final ConcurrentMap<Key, Object> values = new ConcurrentHashMap<Key, Object>();
+    private final ConcurrentMap<Class<?>, Object> attributes = new ConcurrentHashMap<Class<?>, Object>();
+    private final BuildHistoryIndex historyIndex;
+    private final AbstractBuild<?, ?> scoredBuild;
+
+    public EvaluationContext() {
+        this(null, null);
+    }
+
+    /**
+     * @param historyIndex index of the builds of the scored job, may be null
+     */
+    public EvaluationContext(BuildHistoryIndex historyIndex) {
+        this(historyIndex, null);
+    }
+
+    /**
+     * @param historyIndex index of the builds of the scored job, may be null
+     * @param scoredBuild the scored build, whose summary is not read from the index; may be null
+     */
+    public EvaluationContext(BuildHistoryIndex historyIndex, AbstractBuild<?, ?> scoredBuild) {
+        this.historyIndex = historyIndex;
+        this.scoredBuild = scoredBuild;
+    }
+
+    /**
+     * Returns the previous build.
+     * @param build the build
+     * @return the previous build, or null if it is the first build
+     * @see AbstractBuild#getPreviousBuild()
+     */
+    public AbstractBuild<?, ?> getPreviousBuild(AbstractBuild<?, ?> build) {
+        Object previousBuild = previousBuilds.get(build);
+        if (previousBuild == null) {
+            previousBuild = toValue(build.getPreviousBuild());
+            previousBuilds.put(build, previousBuild);
+        }
+        return (AbstractBuild<?, ?>) fromValue(previousBuild);
+    }
+
+    /**
+     * Returns the previous build which was actually built, skipping builds without
+     * result and builds that were not built.
+     * @param build the build, may be null
+     * @return the previous built build, or null if there is none
+     * @see hudson.plugins.cigame.util.BuildUtil#getPreviousBuiltBuild(AbstractBuild)
+     */
+    public AbstractBuild<?, ?> getPreviousBuiltBuild(AbstractBuild<?, ?> build) {
+        if (build == null) {
+            return null;
+        }
+        Object previousBuiltBuild = previousBuiltBuilds.get(build);
+        if (previousBuiltBuild == null) {
+            AbstractBuild<?, ?> r = getPreviousBuild(build);
+            while (r != null && (r.getResult() == null || r.getResult() == Result.NOT_BUILT)) {
+                r = getPreviousBuild(r);
+            }
+            previousBuiltBuild = toValue(r);
+            previousBuiltBuilds.put(build, previousBuiltBuild);
+        }
+        return (AbstractBuild<?, ?>) fromValue(previousBuiltBuild);
+    }
+
+    /**
+     * Returns the test result of the build.
+     * @param build the build
+     * @return the test result, or null if the build has no test result
+     * @see AbstractBuild#getTestResultAction()
+     */
+    public AbstractTestResultAction<?> getTestResultAction(AbstractBuild<?, ?> build) {
+        Object action = testResultActions.get(build);
+        if (action == null) {
+            action = toValue(build.getTestResultAction());
+            testResultActions.put(build, action);
+        }
+        return (AbstractTestResultAction<?>) fromValue(action);
+    }
+
+    /**
+     * Returns the actions of a type in the build.
+     * @param build the build
+     * @param actionClass type of the actions
+     * @return the actions
+     * @see AbstractBuild#getActions(Class)
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Action> List<T> getActions(AbstractBuild<?, ?> build, Class<T> actionClass) {
+        Key key = new Key(build, actionClass);
+        Object buildActions = actions.get(key);
+        if (buildActions == null) {
+            buildActions = toValue(build.getActions(actionClass));
+            actions.put(key, buildActions);
+        }
+        return (List<T>) fromValue(buildActions);
+    }
+
+    /**
+     * Returns a value computed from the build. The value is computed the first time it is
+     * asked for, and then remembered for the rest of the scoring.
+     * @param build the build, may be null
+     * @param lookup computes the value, the same instance must be used by all rules that share the value
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(AbstractBuild<?, ?> build, Lookup<V> lookup) {
+        Key key = new Key(build, lookup);
+        Object value = values.get(key);
+        if (value == null) {
+            value = toValue(lookup.lookup(build, this));
+            values.put(key, value);
+        }
+        return (V) fromValue(value);
+    }
+
+    /**
+     * Returns the test counts of the build, from the digest that was kept when the build
+     * was scored, so that the test result is only loaded for builds that were not scored.
+     * @param build the build
+     * @return the test counts, or null if the build has no test result
+     */
+    public TestCountDigest getTestCountDigest(AbstractBuild<?, ?> build) {
+        return get(build, TEST_COUNT_DIGEST);
+    }
+
+    /**
+     * Returns the summary of the build, from the history index if the build has been indexed
+     * and is not the scored build.
+     * @param build the build
+     * @return the summary
+     */
+    public BuildSummary getSummary(AbstractBuild<?, ?> build) {
+        if ((historyIndex != null) && (build != scoredBuild) && (build.getProject() == historyIndex.getProject())) {
+            try {
+                BuildSummary summary = historyIndex.get(build.getNumber());
+                if (summary != null) {
+                    return summary;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read the build history index of " + build.getProject(), e); //$NON-NLS-1$
+            }
+        }
+        return get(build, SUMMARY);
+    }
+
+    /**
+     * Makes a value available to the rules for the rest of the scoring, such as state
+     * of the job that is kept by a rule set.
+     * @param type the type of the value
+     * @param value the value
+     */
+    public <T> void setAttribute(Class<T> type, T value) {
+        attributes.put(type, value);
+    }
+
+    /**
+     * Returns a value set with {@link #setAttribute(Class, Object)}.
+     * @param type the type of the value
+     * @return the value, or null if it has not been set
+     */
+    public <T> T getAttribute(Class<T> type) {
+        return type.cast(attributes.get(type));
+    }
+
+    private static Object toValue(Object value) {
+        return (value == null) ? NONE : value;
+    }
+
+    private static Object fromValue(Object value) {
+        return (value == NONE) ? null : value;
+    }
+
+    /**
+     * Computes a value from a build, for {@link EvaluationContext#get(AbstractBuild, Lookup)}.
+     * @param <V> type of the value
+     */
+    public interface Lookup<V> {
+        /**
+         * Computes the value.
+         * @param build the build, may be null
+         * @param context the context, to look up other values with
+         * @return the value
+         */
+        V lookup(AbstractBuild<?, ?> build, EvaluationContext context);
+    }
+
+    /**
+     * Key of a value looked up for a build, builds and types are compared by identity.
+     */
+    private static class Key {
+        private final AbstractBuild<?, ?> build;
+        private final Object type;
+
+        Key(AbstractBuild<?, ?> build, Object type) {
+            this.build = build;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (build == other.build) && (type == other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(build) * 31 + System.identityHashCode(type);
+        }
+    }
+}
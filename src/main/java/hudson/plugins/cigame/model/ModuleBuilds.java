@@ -0,0 +1,128 @@
+package hudson.plugins.cigame.model;
+
+import hudson.maven.MavenBuild;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.AbstractBuild;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The module builds of a Maven multi module build, each paired with the previous
+ * build of the module that has usable results.
+ *
+ * The module map and the previous builds are looked up once, when the score card
+ * is recorded, and are then shared by all {@link AggregatableRule}s.
+ */
+class ModuleBuilds {
+
+    private final List<AbstractBuild<?, ?>> previousBuilds;
+    private final List<AbstractBuild<?, ?>> builds;
+
+    ModuleBuilds(List<AbstractBuild<?, ?>> previousBuilds, List<AbstractBuild<?, ?>> builds) {
+        this.previousBuilds = previousBuilds;
+        this.builds = builds;
+    }
+
+    /**
+     * Returns the module builds of the build.
+     *
+     * @param build the build
+     * @param context context to look up the previous builds with
+     * @return the module builds, or null if the build is not a Maven multi module build
+     */
+    static ModuleBuilds of(AbstractBuild<?, ?> build, EvaluationContext context) {
+        if (!(build instanceof MavenModuleSetBuild)) {
+            return null;
+        }
+        MavenModuleSetBuild mavenModuleSetBuild = (MavenModuleSetBuild) build;
+        List<AbstractBuild<?, ?>> previousBuilds = new ArrayList<AbstractBuild<?, ?>>();
+        List<AbstractBuild<?, ?>> builds = new ArrayList<AbstractBuild<?, ?>>();
+        Map<MavenModule, MavenBuild> previousModuleBuilds = null;
+
+        for (Map.Entry<MavenModule, MavenBuild> e : mavenModuleSetBuild.getModuleLastBuilds().entrySet()) {
+            MavenBuild moduleBuild = e.getValue();
+            if (moduleBuild != null) {
+                previousBuilds.add(context.getPreviousBuiltBuild(moduleBuild));
+                builds.add(moduleBuild);
+            } else {
+                // module was probably removed from multimodule
+                if (previousModuleBuilds == null) {
+                    MavenModuleSetBuild prevBuild = (MavenModuleSetBuild) context.getPreviousBuild(mavenModuleSetBuild);
+                    if (prevBuild == null) {
+                        return new ModuleBuilds(Collections.<AbstractBuild<?, ?>>emptyList(),
+                                Collections.<AbstractBuild<?, ?>>emptyList());
+                    }
+                    previousModuleBuilds = prevBuild.getModuleLastBuilds();
+                }
+                AbstractBuild<?, ?> prevModuleBuild = previousModuleBuilds.get(e.getKey());
+                if (prevModuleBuild != null) {
+                    if (prevModuleBuild.getResult() == null) {
+                        prevModuleBuild = context.getPreviousBuiltBuild(prevModuleBuild);
+                    }
+                    previousBuilds.add(prevModuleBuild);
+                    builds.add(null);
+                }
+            }
+        }
+        return new ModuleBuilds(previousBuilds, builds);
+    }
+
+    /**
+     * Returns the number of modules.
+     * @return the number of modules
+     */
+    int size() {
+        return builds.size();
+    }
+
+    /**
+     * Evaluates the rule for every module, one after another, and aggregates the results.
+     *
+     * @param rule the rule
+     * @param context context of the scoring
+     * @return the aggregated result
+     */
+    <T> RuleResult<?> evaluate(AggregatableRule<T> rule, EvaluationContext context) {
+        if (builds.isEmpty()) {
+            return RuleResult.EMPTY_RESULT;
+        }
+        List<RuleResult<T>> results = new ArrayList<RuleResult<T>>(builds.size());
+        for (int i = 0; i < builds.size(); i++) {
+            results.add(ScoreCard.evaluate(rule, previousBuilds.get(i), builds.get(i), context));
+        }
+        return rule.aggregate(results);
+    }
+
+    /**
+     * Submits the evaluation of the rule for every module to the executor. The results are
+     * to be aggregated with {@link AggregatableRule#aggregate(java.util.Collection)}, in the
+     * order of the returned futures.
+     *
+     * @param rule the rule
+     * @param context context of the scoring
+     * @param executor the executor that evaluates the modules
+     * @return a task for every module
+     */
+    <T> List<TimedTask<RuleResult<T>>> submit(final AggregatableRule<T> rule, final EvaluationContext context, 
+            ExecutorService executor) {
+        List<TimedTask<RuleResult<T>>> results = new ArrayList<TimedTask<RuleResult<T>>>(builds.size());
+        for (int i = 0; i < builds.size(); i++) {
+            final AbstractBuild<?, ?> previousBuild = previousBuilds.get(i);
+            final AbstractBuild<?, ?> build = builds.get(i);
+            TimedTask<RuleResult<T>> task = new TimedTask<RuleResult<T>>(new Callable<RuleResult<T>>() {
+                public RuleResult<T> call() {
+                    return ScoreCard.evaluate(rule, previousBuild, build, context);
+                }
+            });
+            executor.execute(task);
+            results.add(task);
+        }
+        return results;
+    }
+}
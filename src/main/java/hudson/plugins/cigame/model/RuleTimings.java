@@ -0,0 +1,115 @@
+package hudson.plugins.cigame.model;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The time and memory that the rules took to evaluate while a build was scored.
+ *
+ * The {@link ScoreCard} measures every evaluation of a rule, once for the build or
+ * once for every module of the build, when the timings are set as an attribute of the
+ * {@link EvaluationContext}. The time is wall-clock time; the memory is the number of
+ * bytes allocated by the evaluating thread, which is only known on JVMs that can tell.
+ * The class is thread safe, so rules that are evaluated in parallel can be measured.
+ */
+public class RuleTimings {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+
+    private final ConcurrentMap<Rule, Timing> timings = new ConcurrentHashMap<Rule, Timing>();
+
+    /**
+     * Starts measuring an evaluation on the current thread.
+     * @return the measurement, to stop on the same thread
+     */
+    public Measurement start() {
+        return new Measurement();
+    }
+
+    /**
+     * Returns the total time that the rule took to evaluate, in nanoseconds.
+     * @param rule the rule
+     * @return the time, or 0 if the rule was not evaluated
+     */
+    public long getTime(Rule rule) {
+        Timing timing = timings.get(rule);
+        return (timing == null) ? 0 : timing.time.get();
+    }
+
+    /**
+     * Returns the total number of bytes that were allocated when the rule was evaluated.
+     * @param rule the rule
+     * @return the number of bytes, or -1 if it is not known
+     */
+    public long getAllocatedBytes(Rule rule) {
+        Timing timing = timings.get(rule);
+        return ((timing == null) || (THREAD_MX_BEAN == null)) ? -1 : timing.allocatedBytes.get();
+    }
+
+    /**
+     * Returns the number of times the rule was evaluated.
+     * @param rule the rule
+     * @return the number of evaluations
+     */
+    public int getCount(Rule rule) {
+        Timing timing = timings.get(rule);
+        return (timing == null) ? 0 : (int) timing.count.get();
+    }
+
+    private Timing getTiming(Rule rule) {
+        Timing timing = timings.get(rule);
+        if (timing == null) {
+            timings.putIfAbsent(rule, new Timing());
+            timing = timings.get(rule);
+        }
+        return timing;
+    }
+
+    private static long getAllocatedBytes() {
+        return (THREAD_MX_BEAN == null) ? 0 : THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        try {
+            Object bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+                if (threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled()) {
+                    return threadBean;
+                }
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot JVM
+        } catch (UnsupportedOperationException e) {
+            // allocation can not be measured
+        }
+        return null;
+    }
+
+    private static class Timing {
+        private final AtomicLong time = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+    }
+
+    /**
+     * An evaluation that is being measured.
+     */
+    public class Measurement {
+        private final long startTime = System.nanoTime();
+        private final long startAllocatedBytes = getAllocatedBytes();
+
+        /**
+         * Stops the measurement and adds it to the timings of the rule.
+         * @param rule the rule that was evaluated
+         */
+        public void stop(Rule rule) {
+            Timing timing = getTiming(rule);
+            timing.time.addAndGet(System.nanoTime() - startTime);
+            timing.allocatedBytes.addAndGet(getAllocatedBytes() - startAllocatedBytes);
+            timing.count.incrementAndGet();
+        }
+    }
+}
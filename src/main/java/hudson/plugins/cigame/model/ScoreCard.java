@@ -1,18 +1,20 @@
 package hudson.plugins.cigame.model;
 
-import hudson.maven.MavenBuild;
-import hudson.maven.MavenModule;
-import hudson.maven.MavenModuleSetBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
-import hudson.plugins.cigame.util.BuildUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
 
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
@@ -25,6 +27,11 @@ import org.kohsuke.stapler.export.ExportedBean;
 @ExportedBean(defaultVisibility=999)
 public class ScoreCard {
 
+    private static final Logger LOGGER = Logger.getLogger(ScoreCard.class.getName());
+
+    /** Max time to wait for a rule before checking the other rules for timeouts. */
+    private static final long TIMEOUT_CHECK_PERIOD = TimeUnit.MILLISECONDS.toNanos(100);
+
     private List<Score> scores;
 
     /**
@@ -35,6 +42,12 @@ public class ScoreCard {
      * @param listener 
      */
     public void record(AbstractBuild<?, ?> build, RuleSet ruleset, BuildListener listener) {
+        EvaluationContext context = new EvaluationContext();
+        record(build, ruleset, context, ModuleBuilds.of(build, context), listener);
+    }
+
+    private void record(AbstractBuild<?, ?> build, RuleSet ruleset, EvaluationContext context, 
+            ModuleBuilds moduleBuilds, BuildListener listener) {
         if (scores == null) {
             scores = new LinkedList<Score>();
         }
@@ -43,57 +56,83 @@ public class ScoreCard {
         	if (listener != null) {
         		listener.getLogger().append("[ci-game] evaluating rule: " + rule.getName() + "\n");
         	}
-            RuleResult<?> result = evaluate(build, rule);
-            if ((result != null) && (result.getPoints() != 0)) {
-                Score score = new Score(ruleset.getName(), rule.getName(), result.getPoints(), result.getDescription());
-                scores.add(score);
-                
-                if (listener != null) {
-            		listener.getLogger().append("[ci-game] scored: " + score.getValue() + "\n");
-            	}
-            }
+            RuleResult<?> result = evaluate(build, rule, context, moduleBuilds);
+            addScore(ruleset, rule, result, listener);
         }
         Collections.sort(scores);
     }
+
+    private void addScore(RuleSet ruleset, Rule rule, RuleResult<?> result, BuildListener listener) {
+        if ((result != null) && (result.getPoints() != 0)) {
+            Score score = new Score(ruleset.getName(), rule.getName(), result.getPoints(), result.getDescription());
+            scores.add(score);
+            
+            if (listener != null) {
+                listener.getLogger().append("[ci-game] scored: " + score.getValue() + "\n");
+            }
+        }
+    }
     
-    @SuppressWarnings("unchecked")
     RuleResult<?> evaluate(AbstractBuild<?, ?> build, Rule rule) {
-        if (rule instanceof AggregatableRule<?> && build instanceof MavenModuleSetBuild) {
-            AggregatableRule aRule = (AggregatableRule<?>)rule;
-            MavenModuleSetBuild mavenModuleSetBuild = (MavenModuleSetBuild)build;
-                
-            List<RuleResult> results = new ArrayList<RuleResult>();
-            
-            for (Map.Entry<MavenModule, MavenBuild> e : mavenModuleSetBuild.getModuleLastBuilds().entrySet()) {
-            	MavenBuild moduleBuild = e.getValue();
-                if (moduleBuild != null) {
-                	AbstractBuild<?, ?> previousBuild = BuildUtil.getPreviousBuiltBuild(moduleBuild);
-                    results.add(aRule.evaluate(previousBuild, moduleBuild));
-                } else {
-                	// module was probably removed from multimodule
-                	if (mavenModuleSetBuild.getPreviousBuild() != null) {
-                		MavenModuleSetBuild prevBuild = mavenModuleSetBuild.getPreviousBuild();
-                		AbstractBuild<?, ?> prevModuleBuild = prevBuild.getModuleLastBuilds().get(e.getKey());
-                		if (prevModuleBuild.getResult() == null) {
-                			prevModuleBuild = BuildUtil.getPreviousBuiltBuild(prevModuleBuild);
-                		}
-                		results.add(aRule.evaluate(prevModuleBuild, null));
-                	} else {
-                		//results.add(aRule.evaluate(null, null));
-                		return RuleResult.EMPTY_RESULT;
-                	}
-                }
+        EvaluationContext context = new EvaluationContext();
+        return evaluate(build, rule, context, ModuleBuilds.of(build, context));
+    }
+
+    /**
+     * Evaluates the rule. The rule is evaluated for every module of a Maven multi module build.
+     * 
+     * @param build build to evaluate
+     * @param rule rule to evaluate
+     * @param context context of the scoring
+     * @param moduleBuilds module builds of the build, or null if it is not a multi module build
+     * @return the rule result
+     */
+    RuleResult<?> evaluate(AbstractBuild<?, ?> build, Rule rule, EvaluationContext context, ModuleBuilds moduleBuilds) {
+        if (rule instanceof AggregatableRule<?>) {
+            AggregatableRule<?> aRule = (AggregatableRule<?>) rule;
+            if (moduleBuilds != null) {
+                return moduleBuilds.evaluate(aRule, context);
             }
-            return aRule.aggregate(results);
-        } else {
-        	if (rule instanceof AggregatableRule<?>) {
-        		AggregatableRule<?> aRule = (AggregatableRule<?>) rule;
-        		return aRule.evaluate(build.getPreviousBuild(), build);
-        	} else {
-        		return rule.evaluate(build);
-        	}
+            return evaluate(aRule, context.getPreviousBuild(build), build, context);
+        }
+        RuleTimings timings = context.getAttribute(RuleTimings.class);
+        if (timings == null) {
+            return rule.evaluate(build);
+        }
+        RuleTimings.Measurement measurement = timings.start();
+        try {
+            return rule.evaluate(build);
+        } finally {
+            measurement.stop(rule);
         }
     }
+
+    /**
+     * Evaluates the rule for the build compared to the previous build, passing on the context
+     * if the rule can use it. The evaluation is measured if the context has {@link RuleTimings}.
+     */
+    static <T> RuleResult<T> evaluate(AggregatableRule<T> rule, AbstractBuild<?, ?> previousBuild, 
+            AbstractBuild<?, ?> build, EvaluationContext context) {
+        RuleTimings timings = context.getAttribute(RuleTimings.class);
+        if (timings == null) {
+            return evaluateWithContext(rule, previousBuild, build, context);
+        }
+        RuleTimings.Measurement measurement = timings.start();
+        try {
+            return evaluateWithContext(rule, previousBuild, build, context);
+        } finally {
+            measurement.stop(rule);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> RuleResult<T> evaluateWithContext(AggregatableRule<T> rule, AbstractBuild<?, ?> previousBuild, 
+            AbstractBuild<?, ?> build, EvaluationContext context) {
+        if (rule instanceof ContextualRule<?>) {
+            return ((ContextualRule<T>) rule).evaluate(previousBuild, build, context);
+        }
+        return rule.evaluate(previousBuild, build);
+    }
     
 
     /**
@@ -104,12 +143,109 @@ public class ScoreCard {
      * @param listener 
      */
     public void record(AbstractBuild<?, ?> build, RuleBook ruleBook, BuildListener listener) {
+        record(build, ruleBook, new EvaluationContext(), listener);
+    }
+
+    /**
+     * Record points for the rules in the rule book
+     * 
+     * @param build build to evaluate
+     * @param ruleBook rule book to use for evaluation
+     * @param context context of the scoring, shared by all rules
+     * @param listener 
+     */
+    public void record(AbstractBuild<?, ?> build, RuleBook ruleBook, EvaluationContext context, BuildListener listener) {
+        if (scores == null) {
+            scores = new LinkedList<Score>();
+        }
+        ModuleBuilds moduleBuilds = ModuleBuilds.of(build, context);
+        for (RuleSet set : ruleBook.getRuleSets()) {
+            record(build, set, context, moduleBuilds, listener);
+        }
+    }
+
+    /**
+     * Record points for the rules in the rule book, evaluating the rules in parallel.
+     * The rules of a Maven multi module build are evaluated for the modules in parallel.
+     * The scores are added in the same order as when the rules are evaluated one
+     * after another. The timeout applies to every rule, counted from when its evaluation
+     * starts running, so the time a rule waits for a thread of a busy executor does not
+     * count. A rule that has not been evaluated when its timeout has elapsed is cancelled
+     * and does not score.
+     * 
+     * @param build build to evaluate
+     * @param ruleBook rule book to use for evaluation
+     * @param context context of the scoring, shared by all rules
+     * @param executor executor to evaluate the rules with
+     * @param ruleTimeout max time a rule may run, counted from when it starts running
+     * @param unit unit of the timeout
+     * @param listener 
+     * @throws InterruptedException thrown if the thread was interrupted while waiting for a rule
+     */
+    public void record(AbstractBuild<?, ?> build, RuleBook ruleBook, EvaluationContext context, 
+            ExecutorService executor, long ruleTimeout, TimeUnit unit, BuildListener listener) throws InterruptedException {
         if (scores == null) {
             scores = new LinkedList<Score>();
         }
+        ModuleBuilds moduleBuilds = ModuleBuilds.of(build, context);
+        long timeout = unit.toNanos(ruleTimeout);
+        List<PendingResult> pendingResults = new ArrayList<PendingResult>();
         for (RuleSet set : ruleBook.getRuleSets()) {
-            record(build, set, listener);
+            for (Rule rule : set.getRules()) {
+                pendingResults.add(submit(build, set, rule, context, moduleBuilds, executor));
+            }
         }
+
+        try {
+            for (PendingResult pendingResult : pendingResults) {
+                if (listener != null) {
+                    listener.getLogger().append("[ci-game] evaluating rule: " + pendingResult.rule.getName() + "\n");
+                }
+                RuleResult<?> result;
+                try {
+                    result = pendingResult.get(timeout, pendingResults);
+                } catch (TimeoutException e) {
+                    pendingResult.cancel();
+                    LOGGER.warning("Rule " + pendingResult.rule.getName() + " timed out while scoring " + build); //$NON-NLS-1$ //$NON-NLS-2$
+                    if (listener != null) {
+                        listener.getLogger().append("[ci-game] rule timed out: " + pendingResult.rule.getName() + "\n");
+                    }
+                    continue;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException("Failed to evaluate rule " + pendingResult.rule.getName(), cause); //$NON-NLS-1$
+                }
+                addScore(pendingResult.ruleSet, pendingResult.rule, result, listener);
+            }
+        } finally {
+            // do not leave rules running when the build could not be scored
+            for (PendingResult pendingResult : pendingResults) {
+                pendingResult.cancel();
+            }
+        }
+        Collections.sort(scores);
+    }
+
+    @SuppressWarnings("unchecked")
+    private PendingResult submit(final AbstractBuild<?, ?> build, RuleSet set, final Rule rule, 
+            final EvaluationContext context, ModuleBuilds moduleBuilds, ExecutorService executor) {
+        if ((rule instanceof AggregatableRule<?>) && (moduleBuilds != null)) {
+            List tasks = moduleBuilds.submit((AggregatableRule<?>) rule, context, executor);
+            return new PendingResult(set, rule, tasks, true);
+        }
+        TimedTask<RuleResult<?>> task = new TimedTask<RuleResult<?>>(new Callable<RuleResult<?>>() {
+            public RuleResult<?> call() {
+                return evaluate(build, rule, context, null);
+            }
+        });
+        executor.execute(task);
+        return new PendingResult(set, rule, Collections.singletonList(task), false);
     }
 
     /**
@@ -144,4 +280,81 @@ public class ScoreCard {
         }
         return value;
     }
+
+    /**
+     * Result of a rule that is being evaluated, for the whole build or for every module of the build.
+     */
+    private static class PendingResult {
+        private final RuleSet ruleSet;
+        private final Rule rule;
+        private final List<TimedTask<RuleResult<?>>> tasks;
+        private final boolean isAggregated;
+
+        PendingResult(RuleSet ruleSet, Rule rule, List<TimedTask<RuleResult<?>>> tasks, boolean isAggregated) {
+            this.ruleSet = ruleSet;
+            this.rule = rule;
+            this.tasks = tasks;
+            this.isAggregated = isAggregated;
+        }
+
+        /**
+         * Waits for the result until the timeout of every task has elapsed, counted from
+         * when the task started running. While waiting, the tasks of the other rules that
+         * have run for longer than the timeout are cancelled, so that they free their threads
+         * for the tasks that have not started yet.
+         * 
+         * @param timeout the max time a task may run, in nanoseconds
+         * @param pendingResults all the rules that are being evaluated
+         * @throws TimeoutException thrown if a task of the rule has timed out
+         */
+        @SuppressWarnings("unchecked")
+        RuleResult<?> get(long timeout, List<PendingResult> pendingResults) 
+                throws InterruptedException, ExecutionException, TimeoutException {
+            List<RuleResult> results = new ArrayList<RuleResult>(tasks.size());
+            for (TimedTask<RuleResult<?>> task : tasks) {
+                results.add(get(task, timeout, pendingResults));
+            }
+            if (!isAggregated) {
+                return results.get(0);
+            }
+            if (results.isEmpty()) {
+                return RuleResult.EMPTY_RESULT;
+            }
+            return ((AggregatableRule) rule).aggregate(results);
+        }
+
+        private static RuleResult<?> get(TimedTask<RuleResult<?>> task, long timeout, List<PendingResult> pendingResults) 
+                throws InterruptedException, ExecutionException, TimeoutException {
+            while (true) {
+                long now = System.nanoTime();
+                task.cancelIfTimedOut(timeout, now);
+                if (task.isCancelled()) {
+                    throw new TimeoutException();
+                }
+                long wait = Math.max(0, Math.min(task.getTimeLeft(timeout, now), TIMEOUT_CHECK_PERIOD));
+                try {
+                    return task.get(wait, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    cancelTimedOut(pendingResults, timeout);
+                } catch (CancellationException e) {
+                    throw new TimeoutException();
+                }
+            }
+        }
+
+        private static void cancelTimedOut(List<PendingResult> pendingResults, long timeout) {
+            long now = System.nanoTime();
+            for (PendingResult pendingResult : pendingResults) {
+                for (TimedTask<RuleResult<?>> task : pendingResult.tasks) {
+                    task.cancelIfTimedOut(timeout, now);
+                }
+            }
+        }
+
+        void cancel() {
+            for (TimedTask<RuleResult<?>> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package hudson.plugins.cigame.model;
+
+import hudson.model.Action;
+import hudson.plugins.cigame.util.HashedNames;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The test counts of a build, kept with the score of the build so that later builds
+ * can compare against them without loading the test result again. The failed tests
+ * are kept as {@link HashedNames} of the full names of the test cases.
+ */
+public final class TestCountDigest {
+
+    private final int totalCount;
+    private final int failCount;
+    private final int skipCount;
+    private final long[] failedTests;
+
+    public TestCountDigest(int totalCount, int failCount, int skipCount) {
+        this(totalCount, failCount, skipCount, null);
+    }
+
+    public TestCountDigest(int totalCount, int failCount, int skipCount, long[] failedTests) {
+        this.totalCount = totalCount;
+        this.failCount = failCount;
+        this.skipCount = skipCount;
+        this.failedTests = failedTests;
+    }
+
+    /**
+     * Returns the digest of the test result.
+     * @param action the test result, may be null
+     * @return the digest, or null if there is no test result
+     */
+    public static TestCountDigest of(AbstractTestResultAction<?> action) {
+        if (action == null) {
+            return null;
+        }
+        List<String> failedTestNames = new ArrayList<String>();
+        List<CaseResult> failedTestCases = action.getFailedTests();
+        if (failedTestCases != null) {
+            for (CaseResult failedTest : failedTestCases) {
+                failedTestNames.add(failedTest.getFullName());
+            }
+        }
+        return new TestCountDigest(action.getTotalCount(), action.getFailCount(), action.getSkipCount(),
+                HashedNames.of(failedTestNames));
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public int getFailCount() {
+        return failCount;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    /**
+     * Returns the failed tests.
+     * @return the sorted hashes of the full names of the failed tests, or null if they are not known
+     */
+    public long[] getFailedTests() {
+        return failedTests;
+    }
+
+    /**
+     * Action of a build that holds the test count digest of the build.
+     */
+    public interface Holder extends Action {
+        /**
+         * Returns the test count digest.
+         * @return the digest, or null if it is not known
+         */
+        TestCountDigest getTestCountDigest();
+    }
+}
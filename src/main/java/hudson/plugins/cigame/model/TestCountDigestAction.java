@@ -0,0 +1,64 @@
+package hudson.plugins.cigame.model;
+
+import hudson.maven.MavenBuild;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.AbstractBuild;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Invisible action that keeps the {@link TestCountDigest} of a module build of a Maven
+ * multi module build. The module builds have no score card of their own, so without it
+ * the rules would load the test result of every module of the previous build.
+ */
+public class TestCountDigestAction implements TestCountDigest.Holder {
+
+    private final TestCountDigest testCountDigest;
+
+    public TestCountDigestAction(TestCountDigest testCountDigest) {
+        this.testCountDigest = testCountDigest;
+    }
+
+    public TestCountDigest getTestCountDigest() {
+        return testCountDigest;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+    /**
+     * Keeps the test count digests of the module builds of a Maven multi module build,
+     * and saves the module builds that have been given a digest.
+     *
+     * @param build the scored build
+     * @param context context of the scoring, which has looked up the test counts of the modules
+     * @throws IOException thrown if a module build could not be saved
+     */
+    public static void addToModuleBuilds(AbstractBuild<?, ?> build, EvaluationContext context) throws IOException {
+        if (!(build instanceof MavenModuleSetBuild)) {
+            return;
+        }
+        for (List<MavenBuild> moduleBuilds : ((MavenModuleSetBuild) build).getModuleBuilds().values()) {
+            for (MavenBuild moduleBuild : moduleBuilds) {
+                if (!moduleBuild.getActions(TestCountDigest.Holder.class).isEmpty()) {
+                    continue;
+                }
+                TestCountDigest testCounts = context.getTestCountDigest(moduleBuild);
+                if (testCounts != null) {
+                    moduleBuild.getActions().add(new TestCountDigestAction(testCounts));
+                    moduleBuild.save();
+                }
+            }
+        }
+    }
+}
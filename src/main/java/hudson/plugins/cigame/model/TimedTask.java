@@ -0,0 +1,53 @@
+package hudson.plugins.cigame.model;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Task that remembers when it started running, so that its timeout can be counted from
+ * then instead of from when it was submitted. The time a task waits for a thread of a
+ * busy executor does not count towards its timeout.
+ */
+class TimedTask<V> extends FutureTask<V> {
+
+    /** Start of the run in {@link System#nanoTime()}, only valid when {@link #isStarted} is set. */
+    private volatile long startTime;
+    private volatile boolean isStarted;
+
+    TimedTask(Callable<V> callable) {
+        super(callable);
+    }
+
+    @Override
+    public void run() {
+        startTime = System.nanoTime();
+        isStarted = true;
+        super.run();
+    }
+
+    /**
+     * Returns the time left until the task times out.
+     *
+     * @param timeout the max time the task may run, in nanoseconds
+     * @param now the current {@link System#nanoTime()}
+     * @return the time left in nanoseconds, the whole timeout if the task has not started yet
+     */
+    long getTimeLeft(long timeout, long now) {
+        if (!isStarted) {
+            return timeout;
+        }
+        return startTime + timeout - now;
+    }
+
+    /**
+     * Cancels the task if it has run for longer than the timeout.
+     *
+     * @param timeout the max time the task may run, in nanoseconds
+     * @param now the current {@link System#nanoTime()}
+     */
+    void cancelIfTimedOut(long timeout, long now) {
+        if (!isDone() && (getTimeLeft(timeout, now) <= 0)) {
+            cancel(true);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package hudson.plugins.cigame.rules.plugins;
+
+import java.util.Collection;
+
+import hudson.maven.MavenBuild;
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.cigame.model.BuildSummary;
+import hudson.plugins.cigame.model.BuildSummary.Analysis;
+import hudson.plugins.cigame.model.ContextualRule;
+import hudson.plugins.cigame.model.EvaluationContext;
+import hudson.plugins.cigame.model.RuleResult;
+
+/**
+ * Base class for the rules that score the change in the number of warnings that an
+ * analysis-core based plugin found, between the previous build and the current build.
+ *
+ * The warnings are counted from the {@link BuildSummary} of the builds, which reads the
+ * result actions of all the plugins and the counts of all priorities in one scan per
+ * build. All the rules that score a build share the scan through the
+ * {@link EvaluationContext}, whichever plugin and priority they look at.
+ */
+public abstract class AnalysisDeltaRule implements ContextualRule<Integer> {
+
+    private final Analysis analysis;
+    private final Priority[] priorities;
+
+    /**
+     * @param analysis the plugin with the result actions to count the warnings of
+     * @param priority the priority of the warnings to count, or null to count all warnings
+     */
+    protected AnalysisDeltaRule(Analysis analysis, Priority priority) {
+        this.analysis = analysis;
+        this.priorities = (priority == null) ? Priority.values() : new Priority[] { priority };
+    }
+
+    public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> build) {
+        throw new UnsupportedOperationException();
+    }
+
+    public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild,
+            AbstractBuild<?, ?> build) {
+        return evaluate(previousBuild, build, new EvaluationContext());
+    }
+
+    public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild,
+            AbstractBuild<?, ?> build, EvaluationContext context) {
+        if (build != null && build.getResult() != null && build.getResult().isWorseOrEqualTo(Result.FAILURE)) {
+            return RuleResult.EMPTY_INT_RESULT;
+        }
+
+        if (previousBuild == null) {
+            if ( !(build instanceof MavenBuild)) {
+                // backward compatibility
+                return RuleResult.EMPTY_INT_RESULT;
+            }
+        } else if (previousBuild.getResult().isWorseOrEqualTo(Result.FAILURE)) {
+            return RuleResult.EMPTY_INT_RESULT;
+        }
+
+        if (requiresResults() && (!hasResult(build, context) || !hasResult(previousBuild, context))) {
+            return RuleResult.EMPTY_INT_RESULT;
+        }
+
+        int currentAnnotations = getNumberOfAnnotations(build, context);
+        if (currentAnnotations < 0) {
+            return RuleResult.EMPTY_INT_RESULT;
+        }
+        int previousAnnotations = getNumberOfAnnotations(previousBuild, context);
+        if (previousAnnotations < 0) {
+            return RuleResult.EMPTY_INT_RESULT;
+        }
+
+        return evaluate(previousAnnotations, currentAnnotations);
+    }
+
+    /**
+     * Returns if the rule only scores builds when both the build and the previous
+     * build have a result of the plugin, instead of counting a missing result as no warnings.
+     */
+    protected boolean requiresResults() {
+        return false;
+    }
+
+    private boolean hasResult(AbstractBuild<?, ?> build, EvaluationContext context) {
+        return (build == null) || context.getSummary(build).hasResult(analysis);
+    }
+
+    /**
+     * Returns the number of warnings of the build with the priorities of the rule.
+     * @return the number of warnings, or -1 if the plugin reported errors for the build
+     */
+    private int getNumberOfAnnotations(AbstractBuild<?, ?> build, EvaluationContext context) {
+        if (build == null) {
+            return 0;
+        }
+        BuildSummary summary = context.getSummary(build);
+        if (summary.hasErrors(analysis)) {
+            return -1;
+        }
+        int numberOfAnnotations = 0;
+        for (Priority priority : priorities) {
+            numberOfAnnotations += summary.getNumberOfAnnotations(analysis, priority);
+        }
+        return numberOfAnnotations;
+    }
+
+    public final RuleResult<?> aggregate(Collection<RuleResult<Integer>> results) {
+        double score = 0.0;
+        int numberOfAnnotations = 0;
+        for (RuleResult<Integer> result : results) {
+            if (result != null) {
+                score += result.getPoints();
+                numberOfAnnotations += result.getAdditionalData();
+            }
+        }
+        return aggregate(score, numberOfAnnotations);
+    }
+
+    /**
+     * Scores the change in the number of warnings.
+     *
+     * @param previousAnnotations the number of warnings of the previous build
+     * @param currentAnnotations the number of warnings of the current build
+     * @return the rule result, with the number of warnings the points were given for
+     */
+    protected abstract RuleResult<Integer> evaluate(int previousAnnotations, int currentAnnotations);
+
+    /**
+     * Returns the result of the rule for all the modules of a build.
+     *
+     * @param score the sum of the points of the modules
+     * @param numberOfAnnotations the sum of the numbers of warnings of the modules
+     * @return the aggregated result
+     */
+    protected abstract RuleResult<?> aggregate(double score, int numberOfAnnotations);
+}
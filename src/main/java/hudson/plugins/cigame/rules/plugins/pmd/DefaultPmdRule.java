@@ -1,64 +1,55 @@
 package hudson.plugins.cigame.rules.plugins.pmd;
 
-import hudson.model.AbstractBuild;
-import hudson.model.Result;
 import hudson.plugins.analysis.util.model.Priority;
-import hudson.plugins.cigame.model.Rule;
 import hudson.plugins.cigame.model.RuleResult;
-import hudson.plugins.cigame.util.ActionSequenceRetriever;
-import hudson.plugins.cigame.util.ResultSequenceValidator;
-import hudson.plugins.pmd.PmdResultAction;
+import hudson.plugins.cigame.model.BuildSummary.Analysis;
+import hudson.plugins.cigame.rules.plugins.AnalysisDeltaRule;
 
-import java.util.List;
-
-public class DefaultPmdRule implements Rule {
+public class DefaultPmdRule extends AnalysisDeltaRule {
     private int pointsForAddingAnAnnotation;
     private int pointsForRemovingAnAnnotation;
 
     private Priority tasksPriority;
 
     public DefaultPmdRule(Priority tasksPriority, int pointsForAddingAnAnnotation, int pointsForRemovingAnAnnotation) {
+        super(Analysis.PMD, tasksPriority);
         this.tasksPriority = tasksPriority;
         this.pointsForAddingAnAnnotation = pointsForAddingAnAnnotation;
         this.pointsForRemovingAnAnnotation = pointsForRemovingAnAnnotation;
     }
 
-    public RuleResult evaluate(AbstractBuild<?, ?> build) {
-        
-        if (new ResultSequenceValidator(Result.UNSTABLE, 2).isValid(build)) {
-            List<List<PmdResultAction>> sequence = new ActionSequenceRetriever<PmdResultAction>(PmdResultAction.class, 2).getSequence(build);
-            if ((sequence != null)
-                    && hasNoErrors(sequence.get(0)) && hasNoErrors(sequence.get(1))){
-                int delta = getNumberOfAnnotations(sequence.get(0)) - getNumberOfAnnotations(sequence.get(1));
-
-                if (delta < 0) {
-                    return new RuleResult(Math.abs(delta) * pointsForRemovingAnAnnotation, 
-                            Messages.PmdRuleSet_DefaultRule_FixedWarningsCount(Math.abs(delta), tasksPriority.name())); //$NON-NLS-1$
-                }
-                if (delta > 0) {
-                    return new RuleResult(Math.abs(delta) * pointsForAddingAnAnnotation, 
-                            Messages.PmdRuleSet_DefaultRule_NewWarningsCount(Math.abs(delta), tasksPriority.name())); //$NON-NLS-1$
-                }
-            }
-        }
-        return RuleResult.EMPTY_RESULT;
+    @Override
+    protected boolean requiresResults() {
+        return true;
     }
-    
-    private boolean hasNoErrors(List<PmdResultAction> actions) {
-        for (PmdResultAction action : actions) {
-            if (action.getResult().hasError()) {
-                return false;
-            }
+
+    @Override
+    protected RuleResult<?> aggregate(double score, int delta) {
+        if (delta > 0) {
+            return new RuleResult<Void>(score,
+                    Messages.PmdRuleSet_DefaultRule_NewWarningsCount(delta, tasksPriority.name()));
+        } else if (delta < 0) {
+            return new RuleResult<Void>(score,
+                    Messages.PmdRuleSet_DefaultRule_FixedWarningsCount(Math.abs(delta), tasksPriority.name()));
         }
-        return true;
+        return RuleResult.EMPTY_INT_RESULT;
     }
 
-    private int getNumberOfAnnotations(List<PmdResultAction> actions) {
-        int numberOfAnnotations = 0;
-        for (PmdResultAction action : actions) {
-            numberOfAnnotations += action.getResult().getNumberOfAnnotations(tasksPriority);
+    @Override
+    protected RuleResult<Integer> evaluate(int previousAnnotations, int currentAnnotations) {
+        int delta = currentAnnotations - previousAnnotations;
+
+        if (delta < 0) {
+            return new RuleResult<Integer>(Math.abs(delta) * pointsForRemovingAnAnnotation,
+                    Messages.PmdRuleSet_DefaultRule_FixedWarningsCount(Math.abs(delta), tasksPriority.name()),
+                    delta);
+        }
+        if (delta > 0) {
+            return new RuleResult<Integer>(Math.abs(delta) * pointsForAddingAnAnnotation,
+                    Messages.PmdRuleSet_DefaultRule_NewWarningsCount(Math.abs(delta), tasksPriority.name()),
+                    delta);
         }
-        return numberOfAnnotations;
+        return RuleResult.EMPTY_INT_RESULT;
     }
 
     public String getName() {
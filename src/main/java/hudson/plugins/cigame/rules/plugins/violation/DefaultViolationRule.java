@@ -1,16 +1,15 @@
 package hudson.plugins.cigame.rules.plugins.violation;
 
-import java.util.List;
+import java.util.Collection;
 
+import hudson.maven.MavenBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
-import hudson.plugins.cigame.model.Rule;
+import hudson.plugins.cigame.model.ContextualRule;
+import hudson.plugins.cigame.model.EvaluationContext;
 import hudson.plugins.cigame.model.RuleResult;
-import hudson.plugins.cigame.util.ActionSequenceRetriever;
-import hudson.plugins.cigame.util.ResultSequenceValidator;
-import hudson.plugins.violations.ViolationsBuildAction;
 
-public class DefaultViolationRule implements Rule {
+public class DefaultViolationRule implements ContextualRule<Integer> {
 
     private int pointsForAddingViolation;
     private int pointsForRemovingViolation;
@@ -25,44 +24,84 @@ public class DefaultViolationRule implements Rule {
         this.pointsForRemovingViolation = pointsForRemovingViolation;
     }
 
-    public RuleResult evaluate(AbstractBuild<?, ?> build) {
-        if (new ResultSequenceValidator(Result.UNSTABLE, 2).isValid(build)) {
-            List<List<ViolationsBuildAction>> actionList = new ActionSequenceRetriever<ViolationsBuildAction>(ViolationsBuildAction.class, 2).getSequence(build);
-            if ((actionList != null)
-                    && containsTypeReport(actionList.get(0))
-                    && containsTypeReport(actionList.get(1)) ){
-                int diff = getTypeReportCount(actionList.get(0)) - getTypeReportCount(actionList.get(1));
-                if (diff > 0) {
-                    return new RuleResult(diff * pointsForAddingViolation, 
-                            Messages.ViolationRuleSet_DefaultRule_NewViolationsCount(diff, violationName)); //$NON-NLS-1$
-                }
-                if (diff < 0) {
-                    return new RuleResult((diff * -1) * pointsForRemovingViolation, 
-                            Messages.ViolationRuleSet_DefaultRule_FixedViolationsCount(diff * -1, violationName)); //$NON-NLS-1$
-                }
+    @Override
+    public RuleResult<?> aggregate(Collection<RuleResult<Integer>> results) {
+        double score = 0.0;
+        int diff = 0;
+        for (RuleResult<Integer> result : results) {
+            if (result != null) {
+                score += result.getPoints();
+                diff += result.getAdditionalData();
             }
         }
-        return RuleResult.EMPTY_RESULT;
+
+        if (diff > 0) {
+            return new RuleResult<Void>(score,
+                    Messages.ViolationRuleSet_DefaultRule_NewViolationsCount(diff, violationName));
+        } else if (diff < 0) {
+            return new RuleResult<Void>(score,
+                    Messages.ViolationRuleSet_DefaultRule_FixedViolationsCount(diff * -1, violationName));
+        }
+        return RuleResult.EMPTY_INT_RESULT;
     }
-    
-    private boolean containsTypeReport(List<ViolationsBuildAction> actions) {
-        for (ViolationsBuildAction action : actions) {
-            if ((action.getReport().getTypeReports().get(typeName) != null)
-                    && (action.getReport().getTypeSummary(typeName).getErrorMessage() == null)){
-                return true;
+
+    public RuleResult<Integer> evaluate(AbstractBuild<?, ?> build) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild, AbstractBuild<?, ?> build) {
+        return evaluate(previousBuild, build, new EvaluationContext());
+    }
+
+    @Override
+    public RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild,
+            AbstractBuild<?, ?> build, EvaluationContext context) {
+        if (build != null && build.getResult() != null && build.getResult().isWorseOrEqualTo(Result.FAILURE)) {
+            return RuleResult.EMPTY_INT_RESULT;
+        }
+
+        if (previousBuild == null) {
+            if ( !(build instanceof MavenBuild)) {
+                // backward compatibility
+                return RuleResult.EMPTY_INT_RESULT;
             }
+        } else if (previousBuild.getResult().isWorseOrEqualTo(Result.FAILURE)) {
+            return RuleResult.EMPTY_INT_RESULT;
         }
-        return false;
-    }
 
-    private int getTypeReportCount(List<ViolationsBuildAction> actions) {
-        int numberOfReports = 0;
-        for (ViolationsBuildAction action : actions) {
-            numberOfReports += action.getReport().typeCount(typeName);
+        int currentCount = 0;
+        if (build != null) {
+            ViolationCounts currentCounts = context.get(build, ViolationCounts.LOOKUP);
+            if (!currentCounts.hasReport(typeName)) {
+                return RuleResult.EMPTY_INT_RESULT;
+            }
+            currentCount = currentCounts.getCount(typeName);
+        }
+
+        int previousCount = 0;
+        if (previousBuild != null) {
+            ViolationCounts previousCounts = context.get(previousBuild, ViolationCounts.LOOKUP);
+            if (!previousCounts.hasReport(typeName)) {
+                return RuleResult.EMPTY_INT_RESULT;
+            }
+            previousCount = previousCounts.getCount(typeName);
         }
-        return numberOfReports;
+
+        int diff = currentCount - previousCount;
+        if (diff > 0) {
+            return new RuleResult<Integer>(diff * pointsForAddingViolation,
+                    Messages.ViolationRuleSet_DefaultRule_NewViolationsCount(diff, violationName),
+                    diff);
+        }
+        if (diff < 0) {
+            return new RuleResult<Integer>((diff * -1) * pointsForRemovingViolation,
+                    Messages.ViolationRuleSet_DefaultRule_FixedViolationsCount(diff * -1, violationName),
+                    diff);
+        }
+        return RuleResult.EMPTY_INT_RESULT;
     }
-    
+
     public String getName() {
         return violationName;
     }
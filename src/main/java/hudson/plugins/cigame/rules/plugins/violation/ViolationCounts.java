@@ -0,0 +1,60 @@
+package hudson.plugins.cigame.rules.plugins.violation;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.cigame.model.EvaluationContext;
+import hudson.plugins.cigame.util.ActionRetriever;
+import hudson.plugins.violations.ViolationsBuildAction;
+import hudson.plugins.violations.ViolationsReport;
+
+/**
+ * The number of violations of every type in the violations reports of a build. The
+ * reports are read once in {@link #LOOKUP}, and the counts are shared by the rules of
+ * all the violation types through the {@link EvaluationContext}.
+ */
+final class ViolationCounts {
+
+    static final EvaluationContext.Lookup<ViolationCounts> LOOKUP = new EvaluationContext.Lookup<ViolationCounts>() {
+        public ViolationCounts lookup(AbstractBuild<?, ?> build, EvaluationContext context) {
+            return of(ActionRetriever.getResult(build, Result.UNSTABLE, ViolationsBuildAction.class, context));
+        }
+    };
+
+    private final Set<String> reportedTypes = new HashSet<String>();
+    private final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+    private ViolationCounts() {
+    }
+
+    static ViolationCounts of(List<ViolationsBuildAction> actions) {
+        ViolationCounts violationCounts = new ViolationCounts();
+        for (ViolationsBuildAction action : actions) {
+            ViolationsReport report = action.getReport();
+            for (String type : report.getTypeReports().keySet()) {
+                if (report.getTypeSummary(type).getErrorMessage() == null) {
+                    violationCounts.reportedTypes.add(type);
+                }
+                violationCounts.counts.put(type, violationCounts.getCount(type) + report.typeCount(type));
+            }
+        }
+        return violationCounts;
+    }
+
+    /**
+     * Returns if a report of the type without errors was found.
+     */
+    boolean hasReport(String type) {
+        return reportedTypes.contains(type);
+    }
+
+    int getCount(String type) {
+        Integer count = counts.get(type);
+        return (count == null) ? 0 : count.intValue();
+    }
+}
@@ -0,0 +1,98 @@
+package hudson.plugins.cigame.rules.unittesting;
+
+import java.util.Collection;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.cigame.model.ContextualRule;
+import hudson.plugins.cigame.model.EvaluationContext;
+import hudson.plugins.cigame.model.RuleResult;
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.util.HashedNames;
+
+/**
+ * Base class for rules that compare the failed test cases of a build with the failed
+ * test cases of the previous build with test results. The failed test cases are
+ * compared by the hashes in the {@link TestCountDigest}s of the builds. The test cases that
+ * are flaky in the {@link FlakyTestHistory} of the context are left out of the failed test cases.
+ */
+public abstract class AbstractTestCaseRule implements ContextualRule<Integer> {
+
+    private static final TestCountDigest NO_TESTS = new TestCountDigest(0, 0, 0, HashedNames.EMPTY);
+
+    private final double pointsPerTestCase;
+
+    protected AbstractTestCaseRule(double pointsPerTestCase) {
+        this.pointsPerTestCase = pointsPerTestCase;
+    }
+
+    public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild, AbstractBuild<?, ?> build) {
+        return evaluate(previousBuild, build, new EvaluationContext());
+    }
+
+    public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild, AbstractBuild<?, ?> build,
+            EvaluationContext context) {
+        if ((build == null) || (build.getResult() == null) || !build.getResult().isBetterThan(Result.FAILURE)) {
+            return null;
+        }
+        TestCountDigest testCounts = context.getTestCountDigest(build);
+        if ((testCounts == null) || (testCounts.getFailedTests() == null)) {
+            return null;
+        }
+
+        TestCountDigest previousTestCounts = NO_TESTS;
+        previousBuild = AbstractUnitTestsRule.getPreviousBuildWithResults(previousBuild, context);
+        if (previousBuild != null) {
+            Result previousResult = context.getSummary(previousBuild).getResult();
+            if (!previousResult.isBetterThan(Result.FAILURE)) {
+                return null;
+            }
+            previousTestCounts = context.getTestCountDigest(previousBuild);
+            if ((previousTestCounts == null) || (previousTestCounts.getFailedTests() == null)) {
+                // scored before the failed tests were kept
+                return null;
+            }
+        }
+
+        long[] flakyTests = AbstractUnitTestsRule.getFlakyTests(context);
+        int testCases = countTestCases(testCounts, previousTestCounts, 
+                HashedNames.notIn(testCounts.getFailedTests(), flakyTests),
+                HashedNames.notIn(previousTestCounts.getFailedTests(), flakyTests));
+        if (testCases > 0) {
+            return new RuleResult<Integer>(testCases * pointsPerTestCase, getResultDescription(testCases), testCases);
+        }
+        return null;
+    }
+
+    public final RuleResult<?> aggregate(Collection<RuleResult<Integer>> results) {
+        double score = 0.0;
+        int testCases = 0;
+        for (RuleResult<Integer> result : results) {
+            if (result != null) {
+                score += result.getPoints();
+                testCases += result.getAdditionalData();
+            }
+        }
+        if (score != 0.0) {
+            return new RuleResult<Void>(score, getResultDescription(testCases));
+        }
+        return null;
+    }
+
+    public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> build) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the number of test cases that the rule gives points for.
+     * @param testCounts the test counts of the build
+     * @param previousTestCounts the test counts of the previous build
+     * @param failedTests the failed test cases of the build, without the flaky test cases
+     * @param previousFailedTests the failed test cases of the previous build, without the flaky test cases
+     * @return the number of test cases
+     */
+    protected abstract int countTestCases(TestCountDigest testCounts, TestCountDigest previousTestCounts,
+            long[] failedTests, long[] previousFailedTests);
+
+    protected abstract String getResultDescription(int testCases);
+}
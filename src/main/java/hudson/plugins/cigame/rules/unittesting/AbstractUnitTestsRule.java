@@ -1,14 +1,23 @@
 package hudson.plugins.cigame.rules.unittesting;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
-import hudson.plugins.cigame.model.AggregatableRule;
+import hudson.plugins.cigame.model.BuildSummary;
+import hudson.plugins.cigame.model.ContextualRule;
+import hudson.plugins.cigame.model.EvaluationContext;
 import hudson.plugins.cigame.model.RuleResult;
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.util.HashedNames;
 import hudson.tasks.test.AbstractTestResultAction;
 
-public abstract class AbstractUnitTestsRule implements AggregatableRule<Integer> {
+public abstract class AbstractUnitTestsRule implements ContextualRule<Integer> {
+
+    private static final Logger LOGGER = Logger.getLogger(AbstractUnitTestsRule.class.getName());
 	
 	@SuppressWarnings("unchecked")
 	static final AbstractTestResultAction ZERO_RESULT = new AbstractTestResultAction(null) {
@@ -37,37 +46,42 @@ public abstract class AbstractUnitTestsRule implements AggregatableRule<Integer>
     /**
      * Returns the youngest build which is usable to compare the current test result against.
      * I.e. returns the youngest build which is better than NOT_BUILD and has test results.
-     * FAILURE builds are returned immediately!
+     * FAILURE builds are returned immediately! The builds are inspected through their
+     * summaries, so the test results of older builds are not loaded.
      *
      * @return the previous build or null if no such build was found
      */
-    private AbstractBuild<?, ?> getPreviousBuildWithResults(AbstractBuild<?, ?> previousBuild) {
+    static AbstractBuild<?, ?> getPreviousBuildWithResults(AbstractBuild<?, ?> previousBuild, EvaluationContext context) {
         while(previousBuild != null) {
-        	if (previousBuild.getResult() != null) {
-	            if (previousBuild.getResult().isBetterThan(Result.FAILURE)) {
-	                @SuppressWarnings("unchecked")
-	                AbstractTestResultAction action = previousBuild.getTestResultAction();
-	                if (action != null) {
+        	BuildSummary summary = context.getSummary(previousBuild);
+        	if (summary.getResult() != null) {
+	            if (summary.getResult().isBetterThan(Result.FAILURE)) {
+	                if (summary.hasTestResult()) {
 	                    return previousBuild;
 	                }
 	                // fall through
-	            } else if (previousBuild.getResult().isWorseOrEqualTo(Result.NOT_BUILT)) { 
+	            } else if (summary.getResult().isWorseOrEqualTo(Result.NOT_BUILT)) { 
 	                // fall through
 	            } else {
 	                return previousBuild;
 	            }
         	}
-            previousBuild = previousBuild.getPreviousBuild();
+            previousBuild = context.getPreviousBuild(previousBuild);
         }
         
         return null;
     }
     
-    @SuppressWarnings("unchecked")
 	public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild,
 			AbstractBuild<?, ?> build) {
+		return evaluate(previousBuild, build, new EvaluationContext());
+	}
+    
+    @SuppressWarnings("unchecked")
+	public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild,
+			AbstractBuild<?, ?> build, EvaluationContext context) {
 
-        previousBuild = getPreviousBuildWithResults(previousBuild);
+        previousBuild = getPreviousBuildWithResults(previousBuild, context);
 
         AbstractTestResultAction action; 
         AbstractTestResultAction prevAction;
@@ -82,7 +96,7 @@ public abstract class AbstractUnitTestsRule implements AggregatableRule<Integer>
         	action = null;
         	result = Result.SUCCESS;
         } else {
-        	action = build.getTestResultAction();
+        	action = context.getTestResultAction(build);
         	result = build.getResult();
         }
         
@@ -90,8 +104,18 @@ public abstract class AbstractUnitTestsRule implements AggregatableRule<Integer>
         	prevAction = ZERO_RESULT;
         	prevResult = Result.SUCCESS;
         } else {
-        	prevAction = previousBuild.getTestResultAction();
-        	prevResult = previousBuild.getResult();
+        	BuildSummary summary = context.getSummary(previousBuild);
+        	prevAction = summary.hasTestResult() 
+        		? new TestCounts(summary.getTotalCount(), summary.getFailCount(), summary.getSkipCount()) : null;
+        	prevResult = summary.getResult();
+        }
+        
+        if (excludesFlakyTests()) {
+        	long[] flakyTests = getFlakyTests(context);
+        	if (flakyTests.length > 0) {
+        		action = withoutFlakyTests(action, build, flakyTests, context);
+        		prevAction = withoutFlakyTests(prevAction, previousBuild, flakyTests, context);
+        	}
         }
         
         prevAction = prevAction != null ? prevAction : ZERO_RESULT;
@@ -130,8 +154,87 @@ public abstract class AbstractUnitTestsRule implements AggregatableRule<Integer>
 		throw new UnsupportedOperationException();
 	}
 	
+	/**
+	 * Returns if the failed tests that are flaky should not count as failed, when a
+	 * {@link FlakyTestHistory} is available in the context.
+	 */
+	protected boolean excludesFlakyTests() {
+		return false;
+	}
+
+	static long[] getFlakyTests(EvaluationContext context) {
+		FlakyTestHistory history = context.getAttribute(FlakyTestHistory.class);
+		if (history != null) {
+			try {
+				return history.getFlakyTests();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to read the flaky test history", e); //$NON-NLS-1$
+			}
+		}
+		return HashedNames.EMPTY;
+	}
+
+	/**
+	 * Returns the test counts of the build, with the flaky tests not counted as failed.
+	 */
+	@SuppressWarnings("unchecked")
+	private static AbstractTestResultAction withoutFlakyTests(AbstractTestResultAction action, 
+			AbstractBuild<?, ?> build, long[] flakyTests, EvaluationContext context) {
+		if ((action == null) || (build == null)) {
+			return action;
+		}
+		TestCountDigest testCounts = context.getTestCountDigest(build);
+		if ((testCounts == null) || (testCounts.getFailedTests() == null)) {
+			return action;
+		}
+		long[] failedTests = testCounts.getFailedTests();
+		int failedFlakyTests = failedTests.length - HashedNames.countNotIn(failedTests, flakyTests);
+		if (failedFlakyTests == 0) {
+			return action;
+		}
+		return new TestCounts(action.getTotalCount(), Math.max(0, action.getFailCount() - failedFlakyTests), 
+				action.getSkipCount());
+	}
+
 	protected abstract String getResultDescription(Integer testDiff);
     
     protected abstract RuleResult<Integer> evaluate(
     		AbstractTestResultAction<?> testResult, AbstractTestResultAction<?> previousTestResult);
+
+    /**
+     * Test counts without the test result, for comparing against a previous build.
+     */
+    @SuppressWarnings("unchecked")
+    static class TestCounts extends AbstractTestResultAction {
+    	private final int totalCount;
+    	private final int failCount;
+    	private final int skipCount;
+
+    	TestCounts(int totalCount, int failCount, int skipCount) {
+    		super(null);
+    		this.totalCount = totalCount;
+    		this.failCount = failCount;
+    		this.skipCount = skipCount;
+    	}
+
+		@Override
+		public int getFailCount() {
+			return failCount;
+		}
+
+		@Override
+		public Object getResult() {
+			return null;
+		}
+
+		@Override
+		public int getTotalCount() {
+			return totalCount;
+		}
+
+		@Override
+		public int getSkipCount() {
+			return skipCount;
+		}
+    }
 }
@@ -0,0 +1,38 @@
+package hudson.plugins.cigame.rules.unittesting;
+
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.util.HashedNames;
+
+/**
+ * Rule for giving points for every test case that fails, but did not fail in the
+ * previous build. The test cases that increased the number of failed tests are
+ * scored by the {@link IncreasingFailedTestsRule} instead.
+ */
+public class BrokenTestCasesRule extends AbstractTestCaseRule {
+
+    public BrokenTestCasesRule() {
+        this(-1);
+    }
+
+    public BrokenTestCasesRule(double pointsPerTestCase) {
+        super(pointsPerTestCase);
+    }
+
+    public String getName() {
+        return Messages.TestCaseRuleSet_BrokenRule_Name();
+    }
+
+    @Override
+    protected int countTestCases(TestCountDigest testCounts, TestCountDigest previousTestCounts,
+            long[] failedTests, long[] previousFailedTests) {
+        int broken = HashedNames.countNotIn(failedTests, previousFailedTests);
+        // the failed tests rule does not count the flaky tests either
+        int failedTestDiff = failedTests.length - previousFailedTests.length;
+        return Math.max(0, broken - Math.max(0, failedTestDiff));
+    }
+
+    @Override
+    protected String getResultDescription(int testCases) {
+        return Messages.TestCaseRuleSet_BrokenRule_Count(testCases);
+    }
+}
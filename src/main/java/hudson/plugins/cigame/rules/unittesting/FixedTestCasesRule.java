@@ -0,0 +1,46 @@
+package hudson.plugins.cigame.rules.unittesting;
+
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.util.HashedNames;
+
+/**
+ * Rule for giving points for every test case that failed in the previous build, and
+ * does not fail anymore.
+ *
+ * Only the failed test cases are known, so a failed test case that is removed can not
+ * be told from one that is fixed. As many test cases as the total number of tests
+ * decreased with are therefore taken to be removed, not fixed. The fixed test cases
+ * that increased the number of passed tests are scored by the {@link IncreasingPassedTestsRule}
+ * instead.
+ */
+public class FixedTestCasesRule extends AbstractTestCaseRule {
+
+    public FixedTestCasesRule() {
+        this(1);
+    }
+
+    public FixedTestCasesRule(double pointsPerTestCase) {
+        super(pointsPerTestCase);
+    }
+
+    public String getName() {
+        return Messages.TestCaseRuleSet_FixedRule_Name();
+    }
+
+    @Override
+    protected int countTestCases(TestCountDigest testCounts, TestCountDigest previousTestCounts,
+            long[] failedTests, long[] previousFailedTests) {
+        int noLongerFailing = HashedNames.countNotIn(previousFailedTests, failedTests);
+        int removed = Math.max(0, previousTestCounts.getTotalCount() - testCounts.getTotalCount());
+        int fixed = Math.max(0, noLongerFailing - removed);
+        int passedTestDiff = IncreasingPassedTestsRule.getPassedTestDiff(
+                testCounts.getTotalCount(), testCounts.getFailCount(), testCounts.getSkipCount(),
+                previousTestCounts.getTotalCount(), previousTestCounts.getFailCount(), previousTestCounts.getSkipCount());
+        return Math.max(0, fixed - Math.max(0, passedTestDiff));
+    }
+
+    @Override
+    protected String getResultDescription(int testCases) {
+        return Messages.TestCaseRuleSet_FixedRule_Count(testCases);
+    }
+}
@@ -0,0 +1,195 @@
+package hudson.plugins.cigame.rules.unittesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import hudson.plugins.cigame.util.HashedNames;
+
+/**
+ * Pass/fail history of the test cases of a job over the last {@link #WINDOW} scored
+ * builds, to tell flaky tests from tests that are really broken or fixed.
+ *
+ * Only test cases that failed in any of the builds are kept, as the sorted hashes of
+ * their full names (see {@link HashedNames}) and a bit set of the builds in which they
+ * failed, packed into a long with the latest build in the lowest bit. The history is
+ * updated with the failed tests of every scored build, so old test reports are never
+ * read again. A test case that flipped between passing and failing more than
+ * {@link #FLIP_THRESHOLD} times within the window is flaky.
+ *
+ * The history is stored in a file in the job directory, which is rewritten when the
+ * history is updated. The class is thread safe.
+ */
+public class FlakyTestHistory {
+
+    private static final Logger LOGGER = Logger.getLogger(FlakyTestHistory.class.getName());
+
+    /** Name of the history file in the root directory of the job. */
+    public static final String FILENAME = "cigame-flaky-tests.history"; //$NON-NLS-1$
+
+    /** Number of builds in the history, at most 64 to fit in a long. */
+    static final int WINDOW = 30;
+    /** A test case that flips more times than this within the window is flaky. */
+    static final int FLIP_THRESHOLD = 3;
+
+    private static final long WINDOW_MASK = (1L << WINDOW) - 1;
+    private static final int MAGIC = 0x63696674;
+    private static final int VERSION = 1;
+
+    private final File file;
+    private int lastBuildNumber;
+    private long[] tests = HashedNames.EMPTY;
+    private long[] failures = new long[0];
+    private long[] flakyTests = HashedNames.EMPTY;
+    private boolean isLoaded;
+
+    public FlakyTestHistory(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Adds the failed tests of a build to the history, and saves the history. Builds that
+     * are older than the latest build in the history are ignored, as the history can only
+     * move forward.
+     *
+     * @param buildNumber the number of the build
+     * @param failedTests the sorted hashes of the failed tests of the build
+     * @throws IOException thrown if the history could not be read or saved
+     */
+    public synchronized void update(int buildNumber, long[] failedTests) throws IOException {
+        load();
+        if (buildNumber <= lastBuildNumber) {
+            return;
+        }
+        long[] newTests = new long[tests.length + failedTests.length];
+        long[] newFailures = new long[newTests.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while ((i < tests.length) || (j < failedTests.length)) {
+            long test;
+            long failed = 0;
+            if ((j == failedTests.length) || ((i < tests.length) && (tests[i] < failedTests[j]))) {
+                test = tests[i];
+                failed = failures[i++] << 1;
+            } else if ((i == tests.length) || (failedTests[j] < tests[i])) {
+                test = failedTests[j++];
+                failed = 1;
+            } else {
+                test = tests[i];
+                failed = (failures[i++] << 1) | 1;
+                j++;
+            }
+            failed &= WINDOW_MASK;
+            if (failed != 0) {
+                // tests that have passed in all the builds of the window are dropped
+                newTests[size] = test;
+                newFailures[size++] = failed;
+            }
+        }
+        tests = Arrays.copyOf(newTests, size);
+        failures = Arrays.copyOf(newFailures, size);
+        lastBuildNumber = buildNumber;
+        flakyTests = findFlakyTests();
+        save();
+    }
+
+    /**
+     * Returns the flaky tests.
+     * @return the sorted hashes of the flaky tests
+     * @throws IOException thrown if the history could not be read
+     */
+    public synchronized long[] getFlakyTests() throws IOException {
+        load();
+        return flakyTests;
+    }
+
+    /**
+     * Returns the number of times the test flipped between passing and failing.
+     * @param failed bit set of the builds the test failed in
+     */
+    static int countFlips(long failed) {
+        return Long.bitCount((failed ^ (failed >>> 1)) & (WINDOW_MASK >>> 1));
+    }
+
+    private long[] findFlakyTests() {
+        long[] flaky = new long[tests.length];
+        int size = 0;
+        for (int i = 0; i < tests.length; i++) {
+            if (countFlips(failures[i]) > FLIP_THRESHOLD) {
+                flaky[size++] = tests[i];
+            }
+        }
+        return Arrays.copyOf(flaky, size);
+    }
+
+    private void load() throws IOException {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION) || (in.readInt() != WINDOW)) {
+                LOGGER.info("Discarding flaky test history with unknown format " + file); //$NON-NLS-1$
+                return;
+            }
+            int buildNumber = in.readInt();
+            int size = in.readInt();
+            long[] loadedTests = new long[size];
+            long[] loadedFailures = new long[size];
+            for (int i = 0; i < size; i++) {
+                loadedTests[i] = in.readLong();
+                loadedFailures[i] = in.readLong();
+            }
+            lastBuildNumber = buildNumber;
+            tests = loadedTests;
+            failures = loadedFailures;
+            flakyTests = findFlakyTests();
+        } catch (EOFException e) {
+            LOGGER.info("Discarding truncated flaky test history " + file); //$NON-NLS-1$
+        } finally {
+            in.close();
+        }
+    }
+
+    private void save() throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(WINDOW);
+            out.writeInt(lastBuildNumber);
+            out.writeInt(tests.length);
+            for (int i = 0; i < tests.length; i++) {
+                out.writeLong(tests[i]);
+                out.writeLong(failures[i]);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            // renaming onto an existing file fails on some platforms
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to save flaky test history " + file); //$NON-NLS-1$
+            }
+        }
+    }
+}
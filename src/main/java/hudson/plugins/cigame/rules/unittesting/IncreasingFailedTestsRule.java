@@ -46,6 +46,11 @@ public class IncreasingFailedTestsRule extends AbstractUnitTestsRule {
 				testResult.getFailCount(), previousTestResult.getFailCount());
 	}
 
+	@Override
+	protected boolean excludesFlakyTests() {
+		return true;
+	}
+
 	@Override
 	protected String getResultDescription(Integer testDiff) {
 		return Messages.UnitTestingRuleSet_IncreasingFailedRule_Count(testDiff);
@@ -22,6 +22,23 @@ public class IncreasingPassedTestsRule extends AbstractUnitTestsRule {
         int currentTotalCount, int currentFailCount, int currentSkipCount,
         int previousTotalCount, int previousFailCount, int previousSkipCount) {
         
+        int passedTestDiff = getPassedTestDiff(currentTotalCount, currentFailCount, currentSkipCount,
+                previousTotalCount, previousFailCount, previousSkipCount);
+        if (passedTestDiff > 0) {
+            return new RuleResult<Integer>(passedTestDiff * pointsForEachFixedFailure, 
+                    Messages.UnitTestingRuleSet_IncreasingPassedRule_Count(passedTestDiff),
+                    passedTestDiff); 
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of tests the rule gives points for, which includes the fixed tests.
+     */
+    static int getPassedTestDiff(
+        int currentTotalCount, int currentFailCount, int currentSkipCount,
+        int previousTotalCount, int previousFailCount, int previousSkipCount) {
+        
         int passedTestDiff = (currentTotalCount - currentFailCount - currentSkipCount)
         	- (previousTotalCount - previousFailCount - previousSkipCount);
         
@@ -32,14 +49,7 @@ public class IncreasingPassedTestsRule extends AbstractUnitTestsRule {
         
         // passedTestDiff may now be 0 or even negative. Count at least all
         // those tests which were fixed
-        passedTestDiff = Math.max(passedTestDiff, previousFailCount - currentFailCount);
-        
-        if (passedTestDiff > 0) {
-            return new RuleResult<Integer>(passedTestDiff * pointsForEachFixedFailure, 
-                    Messages.UnitTestingRuleSet_IncreasingPassedRule_Count(passedTestDiff),
-                    passedTestDiff); 
-        }
-        return null;
+        return Math.max(passedTestDiff, previousFailCount - currentFailCount);
     }
 
     public String getName() {
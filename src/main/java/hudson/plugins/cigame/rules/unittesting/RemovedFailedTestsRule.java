@@ -31,6 +31,11 @@ public class RemovedFailedTestsRule extends AbstractUnitTestsRule {
 		return Messages.UnitTestingRuleSet_RemovedFailedRule_Name();
 	}
 
+	@Override
+	protected boolean excludesFlakyTests() {
+		return true;
+	}
+
 	@Override
 	protected String getResultDescription(Integer testDiff) {
 		return Messages.UnitTestingRuleSet_RemovedFailedRule_Count(testDiff);
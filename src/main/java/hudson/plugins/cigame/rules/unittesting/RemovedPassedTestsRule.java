@@ -4,11 +4,13 @@ import java.util.Collection;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
-import hudson.plugins.cigame.model.AggregatableRule;
+import hudson.plugins.cigame.model.BuildSummary;
+import hudson.plugins.cigame.model.ContextualRule;
+import hudson.plugins.cigame.model.EvaluationContext;
 import hudson.plugins.cigame.model.RuleResult;
 import hudson.tasks.test.AbstractTestResultAction;
 
-public class RemovedPassedTestsRule implements AggregatableRule<Integer> {
+public class RemovedPassedTestsRule implements ContextualRule<Integer> {
 
 	private static final double pointsPerRemovedTest = -1.0;
 	
@@ -16,28 +18,34 @@ public class RemovedPassedTestsRule implements AggregatableRule<Integer> {
 		return Messages.UnitTestingRuleSet_RemovedPassedRule_Name();
 	}
 	
-    private AbstractBuild<?, ?> getPreviousBuild(AbstractBuild<?, ?> previousBuild) {
+    private AbstractBuild<?, ?> getPreviousBuild(AbstractBuild<?, ?> previousBuild, EvaluationContext context) {
         while(previousBuild != null) {
-            if (previousBuild.getResult() != null) {
-                if (previousBuild.getResult().isBetterThan(Result.FAILURE)) {
+            Result previousResult = context.getSummary(previousBuild).getResult();
+            if (previousResult != null) {
+                if (previousResult.isBetterThan(Result.FAILURE)) {
                     return previousBuild;
-                } else if (previousBuild.getResult().isWorseOrEqualTo(Result.NOT_BUILT)) { 
+                } else if (previousResult.isWorseOrEqualTo(Result.NOT_BUILT)) { 
                     // fall through
                 } else {
                     return previousBuild;
                 }
             }
-            previousBuild = previousBuild.getPreviousBuild();
+            previousBuild = context.getPreviousBuild(previousBuild);
         }
         
         return null;
     }
 	
-   @SuppressWarnings("unchecked")
     public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild,
             AbstractBuild<?, ?> build) {
+        return evaluate(previousBuild, build, new EvaluationContext());
+    }
+
+   @SuppressWarnings("unchecked")
+    public final RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild,
+            AbstractBuild<?, ?> build, EvaluationContext context) {
 
-        previousBuild = getPreviousBuild(previousBuild);
+        previousBuild = getPreviousBuild(previousBuild, context);
 
         AbstractTestResultAction action; 
         AbstractTestResultAction prevAction;
@@ -52,7 +60,7 @@ public class RemovedPassedTestsRule implements AggregatableRule<Integer> {
             action = null;
             result = Result.SUCCESS;
         } else {
-            action = build.getTestResultAction();
+            action = context.getTestResultAction(build);
             result = build.getResult();
         }
         
@@ -60,8 +68,10 @@ public class RemovedPassedTestsRule implements AggregatableRule<Integer> {
             prevAction = AbstractUnitTestsRule.ZERO_RESULT;
             prevResult = Result.SUCCESS;
         } else {
-            prevAction = previousBuild.getTestResultAction();
-            prevResult = previousBuild.getResult();
+            BuildSummary summary = context.getSummary(previousBuild);
+            prevAction = summary.hasTestResult() ? new AbstractUnitTestsRule.TestCounts(
+                    summary.getTotalCount(), summary.getFailCount(), summary.getSkipCount()) : null;
+            prevResult = summary.getResult();
         }
         
         prevAction = prevAction != null ? prevAction : AbstractUnitTestsRule.ZERO_RESULT;
@@ -0,0 +1,17 @@
+package hudson.plugins.cigame.rules.unittesting;
+
+import hudson.plugins.cigame.model.RuleSet;
+
+/**
+ * Rule set for rules on the individual test cases, which give points for fixing and
+ * breaking tests even when the number of failed tests stays the same. The rules only
+ * score the test cases that the {@link UnitTestingRuleSet} does not already score
+ * through the changed number of failed and passed tests, so the rule sets are used together.
+ */
+public class TestCaseRuleSet extends RuleSet {
+    public TestCaseRuleSet() {
+        super(Messages.TestCaseRuleSet_Title()); //$NON-NLS-1$
+        add(new FixedTestCasesRule());
+        add(new BrokenTestCasesRule());
+    }
+}
@@ -6,14 +6,25 @@ import java.util.List;
 import hudson.model.AbstractBuild;
 import hudson.model.Action;
 import hudson.model.Result;
+import hudson.plugins.cigame.model.EvaluationContext;
 
 public class ActionRetriever {
 	
 	public static <T extends Action> List<T> getResult(AbstractBuild<?, ?> build,
 			Result resultThreshold, Class<T> actionClass) {
+		return getResult(build, resultThreshold, actionClass, new EvaluationContext());
+	}
+
+	/**
+	 * Returns the actions of the build, if the build is better or equal to the threshold.
+	 * The actions are looked up through the context, so they are only looked up once
+	 * when several rules need them.
+	 */
+	public static <T extends Action> List<T> getResult(AbstractBuild<?, ?> build,
+			Result resultThreshold, Class<T> actionClass, EvaluationContext context) {
 		if (build != null && build.getResult() != null
 		    && build.getResult().isBetterOrEqualTo(resultThreshold)) {
-			return build.getActions(actionClass);
+			return context.getActions(build, actionClass);
 		}
 		return Collections.emptyList();
 	}
@@ -5,6 +5,7 @@ import java.util.List;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Action;
+import hudson.plugins.cigame.model.EvaluationContext;
 
 /**
  * Utility class to retrieve a list of actions from a build seequence.
@@ -30,14 +31,24 @@ public class ActionSequenceRetriever<T extends Action>  {
      * @return a list of actions, or null if there was not enough builds or a build does not contain the action
      */
     public List<List<T>> getSequence(AbstractBuild<?,?> build) {
+        return getSequence(build, new EvaluationContext());
+    }
+
+    /**
+     * Returns a list of actions that meets the requirements in the constructor.
+     * @param build latest build
+     * @param context context to look up the previous builds and actions with
+     * @return a list of actions, or null if there was not enough builds or a build does not contain the action
+     */
+    public List<List<T>> getSequence(AbstractBuild<?,?> build, EvaluationContext context) {
         List<List<T>> actionSequence = new ArrayList<List<T>>();
         int buildCount = 0;
         while ((build != null)
                 && (buildCount < sequenceLength))  {
-            List<T> actionsInBuild = build.getActions(actionClass);
+            List<T> actionsInBuild = context.getActions(build, actionClass);
             if ((actionsInBuild != null) && (! actionsInBuild.isEmpty())) {
                 actionSequence.add(actionsInBuild);
-                build = build.getPreviousBuild();
+                build = context.getPreviousBuild(build);
             } else {
                 break;
             }
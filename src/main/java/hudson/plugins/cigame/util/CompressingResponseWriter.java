@@ -0,0 +1,99 @@
+package hudson.plugins.cigame.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Writer of a response body that is gzip compressed, if it is larger than a threshold
+ * and the client accepts compressed responses.
+ *
+ * The start of the body is buffered until it is larger than the threshold, and only then
+ * the compressed writer of the response is opened. Small bodies are written as they are,
+ * as compressing them costs more than it saves.
+ */
+public class CompressingResponseWriter extends Writer {
+
+    private final StaplerRequest req;
+    private final StaplerResponse rsp;
+    private final int threshold;
+    private StringBuilder buffer;
+    private Writer out;
+    private boolean compressing;
+
+    /**
+     * @param req the request, to read the accepted encodings from
+     * @param rsp the response to write the body of
+     * @param threshold the number of characters up to which the body is not compressed
+     */
+    public CompressingResponseWriter(StaplerRequest req, StaplerResponse rsp, int threshold) {
+        this.req = req;
+        this.rsp = rsp;
+        this.threshold = threshold;
+        buffer = new StringBuilder(Math.min(threshold, 1024));
+        // caches must not serve the compressed body to clients that do not accept it
+        rsp.setHeader("Vary", "Accept-Encoding"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (out == null) {
+            if (buffer.length() + len <= threshold) {
+                buffer.append(cbuf, off, len);
+                return;
+            }
+            startCompressing();
+        }
+        out.write(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if (out == null) {
+            if (buffer.length() + len <= threshold) {
+                buffer.append(str, off, off + len);
+                return;
+            }
+            startCompressing();
+        }
+        out.write(str, off, len);
+    }
+
+    /**
+     * Returns true, if the body is larger than the threshold and the compressed writer
+     * of the response is used.
+     */
+    public boolean isCompressing() {
+        return compressing;
+    }
+
+    private void startCompressing() throws IOException {
+        compressing = true;
+        out = rsp.getCompressedWriter(req);
+        out.append(buffer);
+        buffer = null;
+    }
+
+    /**
+     * Does not flush the buffered start of the body, as it is not known yet if the body
+     * will be compressed.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null) {
+            out = rsp.getWriter();
+            out.append(buffer);
+            buffer = null;
+        }
+        out.close();
+    }
+}
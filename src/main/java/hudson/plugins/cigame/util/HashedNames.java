@@ -0,0 +1,78 @@
+package hudson.plugins.cigame.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Sets of names stored as sorted arrays of their 64 bit hashes, so that large sets take
+ * little space and can be compared with a linear merge, without allocating any strings.
+ *
+ * @see StringHash
+ */
+public class HashedNames {
+
+    /** The empty set. */
+    public static final long[] EMPTY = new long[0];
+
+    /**
+     * Returns the set of the names.
+     * @param names the names, may contain duplicates
+     * @return the sorted hashes of the names, without duplicates
+     */
+    public static long[] of(Collection<String> names) {
+        long[] hashes = new long[names.size()];
+        int i = 0;
+        for (String name : names) {
+            hashes[i++] = StringHash.hash64(name);
+        }
+        Arrays.sort(hashes);
+        int size = 0;
+        for (i = 0; i < hashes.length; i++) {
+            if ((size == 0) || (hashes[size - 1] != hashes[i])) {
+                hashes[size++] = hashes[i];
+            }
+        }
+        return (size == hashes.length) ? hashes : Arrays.copyOf(hashes, size);
+    }
+
+    /**
+     * Returns the number of names in the set that are not in the other set.
+     * @param set the sorted hashes of the names to count
+     * @param other the sorted hashes of the names to leave out
+     * @return the number of names in set but not in other
+     */
+    public static int countNotIn(long[] set, long[] other) {
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < set.length; i++) {
+            while ((j < other.length) && (other[j] < set[i])) {
+                j++;
+            }
+            if ((j == other.length) || (other[j] != set[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the names in the set that are not in the other set.
+     * @param set the sorted hashes of the names to keep
+     * @param other the sorted hashes of the names to leave out
+     * @return the sorted hashes of the names in set but not in other
+     */
+    public static long[] notIn(long[] set, long[] other) {
+        long[] hashes = new long[set.length];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < set.length; i++) {
+            while ((j < other.length) && (other[j] < set[i])) {
+                j++;
+            }
+            if ((j == other.length) || (other[j] != set[i])) {
+                hashes[size++] = set[i];
+            }
+        }
+        return (size == hashes.length) ? set : Arrays.copyOf(hashes, size);
+    }
+}
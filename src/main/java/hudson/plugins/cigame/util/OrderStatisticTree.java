@@ -0,0 +1,276 @@
+package hudson.plugins.cigame.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted set that also knows the position of its elements.
+ * Use the class when both the ordering of the elements and the rank of a single
+ * element is needed, as adding, removing and ranking an element are all done in
+ * O(log n).
+ *
+ * The tree is a balanced (AVL) binary search tree where every node keeps the size
+ * of its sub tree. The class is not thread safe.
+ *
+ * @param <E> type of elements, elements that compare as equal are considered to be the same
+ */
+public class OrderStatisticTree<E extends Comparable<? super E>> implements Iterable<E> {
+
+    private Node<E> root;
+
+    /**
+     * Returns the number of elements in the tree.
+     * @return the number of elements in the tree
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns if the tree contains the element.
+     * @param element element to look for
+     * @return true, if an equal element is in the tree; false, otherwise
+     */
+    public boolean contains(E element) {
+        Node<E> node = root;
+        while (node != null) {
+            int cmp = element.compareTo(node.element);
+            if (cmp == 0) {
+                return true;
+            }
+            node = (cmp < 0) ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the element to the tree.
+     * @param element element to add
+     * @return true, if the element was added; false, if an equal element already was in the tree
+     */
+    public boolean add(E element) {
+        int size = size();
+        root = add(root, element);
+        return size() != size;
+    }
+
+    /**
+     * Removes the element from the tree.
+     * @param element element to remove
+     * @return true, if the element was removed; false, if it was not in the tree
+     */
+    public boolean remove(E element) {
+        int size = size();
+        root = remove(root, element);
+        return size() != size;
+    }
+
+    /**
+     * Removes all elements from the tree.
+     */
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Returns the number of elements that are less than the element. The element
+     * does not have to be in the tree.
+     * @param element element to compare against
+     * @return the number of elements less than the element
+     */
+    public int headCount(E element) {
+        int count = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (element.compareTo(node.element) <= 0) {
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the element at the position.
+     * @param index position of the element, starting at 0
+     * @return the element
+     * @throws IndexOutOfBoundsException thrown if the index is negative or not less than the size
+     */
+    public E get(int index) {
+        if ((index < 0) || (index >= size())) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.element;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over all elements in ascending order.
+     */
+    public Iterator<E> iterator() {
+        return new TreeIterator<E>(root, null);
+    }
+
+    /**
+     * Returns an iterator over the elements that are greater than or equal to the element,
+     * in ascending order. Finding the first element is done in O(log n).
+     * @param from the lowest element to return, does not have to be in the tree
+     * @return an iterator
+     */
+    public Iterator<E> iterator(E from) {
+        return new TreeIterator<E>(root, from);
+    }
+
+    private static int size(Node<?> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private Node<E> add(Node<E> node, E element) {
+        if (node == null) {
+            return new Node<E>(element);
+        }
+        int cmp = element.compareTo(node.element);
+        if (cmp < 0) {
+            node.left = add(node.left, element);
+        } else if (cmp > 0) {
+            node.right = add(node.right, element);
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    private Node<E> remove(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = element.compareTo(node.element);
+        if (cmp < 0) {
+            node.left = remove(node.left, element);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, element);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node<E> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.element = successor.element;
+            node.right = remove(node.right, successor.element);
+        }
+        return balance(node);
+    }
+
+    private Node<E> balance(Node<E> node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node<E> rotateRight(Node<E> node) {
+        Node<E> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+
+    private Node<E> rotateLeft(Node<E> node) {
+        Node<E> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+
+    private static class Node<E> {
+        private E element;
+        private Node<E> left;
+        private Node<E> right;
+        private int height = 1;
+        private int size = 1;
+
+        Node(E element) {
+            this.element = element;
+        }
+
+        void update() {
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * In order iterator, keeping the path of nodes still to visit on a stack.
+     */
+    private static class TreeIterator<E extends Comparable<? super E>> implements Iterator<E> {
+        private final List<Node<E>> stack = new ArrayList<Node<E>>();
+
+        TreeIterator(Node<E> node, E from) {
+            while (node != null) {
+                if ((from == null) || (from.compareTo(node.element) <= 0)) {
+                    stack.add(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        public E next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> node = stack.remove(stack.size() - 1);
+            for (Node<E> child = node.right; child != null; child = child.left) {
+                stack.add(child);
+            }
+            return node.element;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package hudson.plugins.cigame.util;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
+import hudson.plugins.cigame.model.EvaluationContext;
 
 /**
  * Class that simplifies checking if a build sequence is above a certain result threshold.
@@ -24,12 +25,22 @@ public class ResultSequenceValidator {
      * @return true, if the build sequence conforms to the requirements set in constructor; false, otherwise.
      */
     public boolean isValid(AbstractBuild<?,?> build) {
+        return isValid(build, new EvaluationContext());
+    }
+
+    /**
+     * Returns true if the build sequence meets the requirements
+     * @param build latest build in sequence
+     * @param context context to look up the previous builds with
+     * @return true, if the build sequence conforms to the requirements set in constructor; false, otherwise.
+     */
+    public boolean isValid(AbstractBuild<?,?> build, EvaluationContext context) {
         int buildCount = 0;
         while (buildCount < sequenceLength) {
             if ((build == null) || build.getResult().isWorseThan(resultThreshold)) {
                 return false;
             }
-            build = build.getPreviousBuild();
+            build = context.getPreviousBuild(build);
             buildCount++;
         }
         return true;
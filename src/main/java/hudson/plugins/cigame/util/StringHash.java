@@ -0,0 +1,29 @@
+package hudson.plugins.cigame.util;
+
+/**
+ * 64 bit hash for strings, to be used where a string has to be stored in a fixed amount of space.
+ * With 64 bits the risk for collisions is negligible for the number of user ids or test names
+ * that is used in a Hudson instance.
+ */
+public class StringHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Returns the 64 bit FNV-1a hash of the characters in the string.
+     * @param value string to hash
+     * @return the hash
+     */
+    public static long hash64(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash ^= (c & 0xff);
+            hash *= FNV_PRIME;
+            hash ^= (c >>> 8);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
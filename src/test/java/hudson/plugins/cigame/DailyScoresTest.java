@@ -0,0 +1,60 @@
+package hudson.plugins.cigame;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DailyScoresTest {
+
+    @Test
+    public void assertScoreIsSumOfTheDaysInTheRange() {
+        DailyScores scores = new DailyScores();
+        scores.add(100, 1);
+        scores.add(100, 2);
+        scores.add(102, 4);
+        scores.add(105, 8);
+
+        assertThat(scores.getScore(100, 105), is(15d));
+        assertThat(scores.getScore(101, 104), is(4d));
+        assertThat(scores.getScore(103, 110), is(8d));
+        assertThat(scores.getScore(106, 110), is(0d));
+    }
+
+    @Test
+    public void assertOldDaysAreDroppedWhenTheBufferWrapsAround() {
+        DailyScores scores = new DailyScores();
+        scores.add(100, 1);
+        scores.add(101, 2);
+        scores.add(100 + DailyScores.CAPACITY, 4);
+
+        assertThat(scores.getScore(0, 1000), is(6d));
+        assertThat(scores.getScore(100, 100), is(0d));
+
+        scores.add(100, 16);
+        assertThat("Points for dropped days are ignored", scores.getScore(0, 1000), is(6d));
+
+        scores.add(1000, 8);
+        assertThat(scores.getScore(0, 1000), is(8d));
+    }
+
+    @Test
+    public void assertPointsCanBeAddedToEarlierKeptDays() {
+        DailyScores scores = new DailyScores();
+        scores.add(110, 1);
+        scores.add(105, 2);
+
+        assertThat(scores.getScore(105, 105), is(2d));
+        assertThat(scores.getScore(106, 110), is(1d));
+    }
+
+    @Test
+    public void assertClearSetsAllDaysToZero() {
+        DailyScores scores = new DailyScores();
+        scores.add(100, 1);
+        scores.add(101, 2);
+        scores.clear();
+
+        assertThat(scores.getScore(0, 1000), is(0d));
+    }
+}
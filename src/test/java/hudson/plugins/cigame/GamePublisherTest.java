@@ -4,9 +4,14 @@ import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Action;
@@ -15,15 +20,57 @@ import hudson.plugins.cigame.model.Rule;
 import hudson.plugins.cigame.model.RuleBook;
 import hudson.plugins.cigame.model.RuleResult;
 import hudson.plugins.cigame.model.RuleSet;
+import hudson.plugins.cigame.model.TestCountDigest;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.Entry;
+import hudson.tasks.test.AbstractTestResultAction;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.junit.rules.TemporaryFolder;
 import org.jvnet.hudson.test.Bug;
 
 @SuppressWarnings("unchecked")
 public class GamePublisherTest {
 
+    private static final int THREADS = 8;
+    private static final int BUILDS_PER_THREAD = 250;
+
+    @org.junit.Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void assertNoScoreIsLostWhenBuildsArePerformedInParallel() throws Exception {
+        UserScoreProperty propertyOne = new UserScoreProperty(0, true);
+        UserScoreProperty propertyTwo = new UserScoreProperty(0, true);
+        User userOne = createUser(propertyOne, "one");
+        User userTwo = createUser(propertyTwo, "two");
+
+        performInParallel(createRuleBook(1d), null, userOne, userTwo);
+
+        assertThat(propertyOne.getScore(), is((double) THREADS * BUILDS_PER_THREAD));
+        assertThat(propertyTwo.getScore(), is((double) THREADS * BUILDS_PER_THREAD));
+    }
+
+    @Test
+    public void assertNoScoreIsLostWhenBuildsAreRecordedInLedgerInParallel() throws Exception {
+        UserScoreProperty propertyOne = new UserScoreProperty(0, true);
+        UserScoreProperty propertyTwo = new UserScoreProperty(0, true);
+        User userOne = createUser(propertyOne, "one");
+        User userTwo = createUser(propertyTwo, "two");
+        File file = new File(folder.getRoot(), "ledger");
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(userOne, userTwo));
+
+        performInParallel(createRuleBook(1d), ledger, userOne, userTwo);
+        ledger.write();
+
+        assertThat(propertyOne.getScore(), is((double) THREADS * BUILDS_PER_THREAD));
+        assertThat(propertyTwo.getScore(), is((double) THREADS * BUILDS_PER_THREAD));
+        assertThat(ledger.getLastSequence(), is(2L * THREADS * BUILDS_PER_THREAD));
+        assertThat(file.length(), is(2L * THREADS * BUILDS_PER_THREAD * ScoreLedger.RECORD_SIZE));
+    }
+
     @Test
     public void assertScoreCardActionIsAddedToBuild() throws Exception {
         AbstractBuild build = mock(AbstractBuild.class);
@@ -36,9 +83,30 @@ public class GamePublisherTest {
         verify(actions).add(isA(ScoreCardAction.class));
         verify(build).getChangeSet();
         verify(build).getPreviousBuild();
+        verify(build).getActions(TestCountDigest.Holder.class);
+        verify(build).getTestResultAction();
         verifyNoMoreInteractions(build);
     }
 
+    @Test
+    public void assertTestCountsAreKeptInScoreCardAction() throws Exception {
+        AbstractBuild build = mock(AbstractBuild.class);
+        List<Action> actions = new ArrayList<Action>();
+        when(build.getActions()).thenReturn(actions);
+        AbstractTestResultAction testResult = mock(AbstractTestResultAction.class);
+        when(testResult.getTotalCount()).thenReturn(12);
+        when(testResult.getFailCount()).thenReturn(2);
+        when(testResult.getSkipCount()).thenReturn(1);
+        when(build.getTestResultAction()).thenReturn(testResult);
+
+        new GamePublisher().perform(build, new RuleBook(), true, null);
+
+        TestCountDigest digest = ((ScoreCardAction) actions.get(0)).getTestCountDigest();
+        assertThat(digest.getTotalCount(), is(12));
+        assertThat(digest.getFailCount(), is(2));
+        assertThat(digest.getSkipCount(), is(1));
+    }
+
     @Test
     public void assertPointsAreToExistingUserScoreProperty() throws Exception {
         AbstractBuild build = mock(AbstractBuild.class);
@@ -49,6 +117,32 @@ public class GamePublisherTest {
         assertThat(userScoreProperty.getScore(), is(15d));
     }
 
+    @Test
+    public void assertAddedScoreIsSentAsScoreEvent() throws Exception {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getFullDisplayName()).thenReturn("job #3");
+        when(build.getUrl()).thenReturn("job/job/3/");
+        User user = createUser(new UserScoreProperty(10, true), "john");
+        mockChangeSetInBuild(build, user);
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(user, createUser(new UserScoreProperty(12, true), "andy")));
+        ScoreEventBroadcaster scoreEvents = mock(ScoreEventBroadcaster.class);
+
+        ScoringServices services = new ScoringServices();
+        services.setLeaderBoardIndex(index);
+        services.setScoreEvents(scoreEvents);
+        new GamePublisher().perform(build, createRuleBook(5d), true, services, null);
+
+        ArgumentCaptor<ScoreEvent> event = ArgumentCaptor.forClass(ScoreEvent.class);
+        verify(scoreEvents).add(event.capture());
+        assertThat(event.getValue().getUserId(), is("john"));
+        assertThat(event.getValue().getDelta(), is(5d));
+        assertThat(event.getValue().getTotal(), is(15d));
+        assertThat(event.getValue().getRank(), is(1));
+        assertThat(event.getValue().getBuild(), is("job #3"));
+        assertThat(event.getValue().getBuildUrl(), is("job/job/3/"));
+    }
+
     @Test
     public void assertUserScorePropertyIsAddedToUserThatDoesNotHaveIt() throws Exception {
         AbstractBuild build = mock(AbstractBuild.class);
@@ -94,6 +188,41 @@ public class GamePublisherTest {
 //        assertThat(propertyOne.getScore(), is(25d));
 //    }
 
+    private void performInParallel(final RuleBook ruleBook, final ScoreLedger ledger, User... users) throws Exception {
+        final GamePublisher publisher = new GamePublisher();
+        final LeaderBoardIndex index = new LeaderBoardIndex(false);
+        index.addAll(Arrays.asList(users));
+        final ScoringServices services = new ScoringServices();
+        services.setLeaderBoardIndex(index);
+        services.setScoreLedger(ledger);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < THREADS; i++) {
+            // the mocks are created up front, as stubbing is not thread safe
+            final List<AbstractBuild> builds = new ArrayList<AbstractBuild>();
+            for (int j = 0; j < BUILDS_PER_THREAD; j++) {
+                AbstractBuild build = mock(AbstractBuild.class);
+                mockChangeSetInBuild(build, users);
+                builds.add(build);
+            }
+            tasks.add(new Callable<Void>() {
+                public Void call() throws Exception {
+                    for (AbstractBuild build : builds) {
+                        publisher.perform(build, ruleBook, false, services, null);
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private RuleBook createRuleBook(double points) {
         return new RuleBook(new RuleSet("test", new ArrayList<Rule>(Arrays.asList(new RuleImpl(new RuleResult(points, "desc"))))));
     }
@@ -7,10 +7,14 @@ import static org.junit.Assert.*;
 import java.util.Arrays;
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
+
 import hudson.model.User;
 import hudson.plugins.cigame.LeaderBoardAction.UserScore;
 
 import org.junit.Test;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 public class LeaderBoardActionTest {
 
@@ -46,6 +50,15 @@ public class LeaderBoardActionTest {
         assertThat(scores.get(0).getScore(), is(2d));
     }
     
+    @Test
+    public void assertUsernamesWithDifferentCasingAreShownAsOneRegardlessOfOrder() throws Exception {
+        List<UserScore> scores = new LeaderBoardAction().getUserScores(
+                Arrays.asList(createUser("b", 1.0), createUser("A", 2.0), createUser("a", 3.0)), false);
+        assertThat(scores.size(), is(2));
+        assertThat(scores.get(0).getUser().getId(), is("A"));
+        assertThat(scores.get(1).getUser().getId(), is("b"));
+    }
+    
     @Test
     public void assertUsernameWithDifferentCasingIsShownAsTwo() throws Exception {
         User userOne = mock(User.class);
@@ -77,4 +90,61 @@ public class LeaderBoardActionTest {
         assertThat(scores.get(1).getScore(), is(1d));
         assertThat(scores.get(1).getUser().getId(), is("Andy"));
     }
+    
+    @Test
+    public void assertTopReturnsTheUsersWithHighestScores() throws Exception {
+        LeaderBoardSnapshot snapshot = createSnapshot();
+        
+        List<UserScore> scores = new LeaderBoardAction().getUserScores(snapshot, "2", null);
+        assertThat(scores.size(), is(2));
+        assertThat(scores.get(0).getUser().getId(), is("John"));
+        assertThat(scores.get(1).getUser().getId(), is("Andy"));
+    }
+    
+    @Test
+    public void assertAfterReturnsTheUsersAfterTheCursor() throws Exception {
+        LeaderBoardSnapshot snapshot = createSnapshot();
+        
+        List<UserScore> scores = new LeaderBoardAction().getUserScores(snapshot, "2", "2.0,Andy");
+        assertThat(scores.size(), is(2));
+        assertThat(scores.get(0).getUser().getId(), is("Bob"));
+        assertThat(scores.get(1).getUser().getId(), is("Zed"));
+        
+        scores = new LeaderBoardAction().getUserScores(snapshot, null, "1.0,Zed");
+        assertThat(scores.size(), is(0));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void assertAfterWithoutUserIdIsRejected() throws Exception {
+        new LeaderBoardAction().getUserScores(createSnapshot(), null, "2.0");
+    }
+    
+    @Test
+    public void assertMalformedPageParametersAreAnsweredWithBadRequest() throws Exception {
+        for (String[] parameters : new String[][] { { "ten", null }, { "-1", null }, { null, "many,Andy" }, { null, "2.0" } }) {
+            StaplerRequest req = mock(StaplerRequest.class);
+            StaplerResponse rsp = mock(StaplerResponse.class);
+            when(req.getParameter("top")).thenReturn(parameters[0]);
+            when(req.getParameter("after")).thenReturn(parameters[1]);
+
+            ((ScoreApi) new LeaderBoardAction().getApi()).doJson(req, rsp);
+
+            verify(rsp).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+            verify(rsp, never()).getWriter();
+        }
+    }
+    
+    private LeaderBoardSnapshot createSnapshot() {
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(createUser("Andy", 2.0), createUser("Bob", 2.0),
+                createUser("John", 3.0), createUser("Zed", 1.0)));
+        return index.createSnapshot();
+    }
+    
+    private User createUser(String id, double score) {
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getProperty(UserScoreProperty.class)).thenReturn(new UserScoreProperty(score, true));
+        return user;
+    }
 }
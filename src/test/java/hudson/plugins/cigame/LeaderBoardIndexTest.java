@@ -0,0 +1,142 @@
+package hudson.plugins.cigame;
+
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import hudson.model.User;
+import hudson.plugins.cigame.LeaderBoardAction.UserScore;
+
+import org.junit.Test;
+
+public class LeaderBoardIndexTest {
+
+    @Test
+    public void assertUpdatedScoreMovesUserInIndex() throws Exception {
+        UserScoreProperty property = new UserScoreProperty(1.0, true);
+        User andy = createUser("Andy", property);
+        User john = createUser("John", new UserScoreProperty(2.0, true));
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(andy, john));
+
+        property.setScore(3.0);
+        index.update(andy);
+
+        List<UserScore> scores = index.getUserScores();
+        assertThat(scores.size(), is(2));
+        assertThat(scores.get(0).getUser().getId(), is("Andy"));
+        assertThat(scores.get(0).getScore(), is(3d));
+        assertThat(scores.get(1).getUser().getId(), is("John"));
+    }
+
+    @Test
+    public void assertUserNotParticipatingIsRemovedFromIndex() throws Exception {
+        User andy = createUser("Andy", new UserScoreProperty(1.0, true));
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(andy));
+
+        when(andy.getProperty(UserScoreProperty.class)).thenReturn(new UserScoreProperty(1.0, false));
+        index.update(andy);
+
+        assertThat(index.getUserScores().size(), is(0));
+    }
+
+    @Test
+    public void assertUserWithSameNameDoesNotReplaceShownUser() throws Exception {
+        User userOne = createUser("ID", new UserScoreProperty(2.0, true));
+        User userTwo = createUser("id", new UserScoreProperty(5.0, true));
+        LeaderBoardIndex index = new LeaderBoardIndex(false);
+        index.addAll(Arrays.asList(userOne, userTwo));
+        index.update(userTwo);
+
+        List<UserScore> scores = index.getUserScores();
+        assertThat(scores.size(), is(1));
+        assertThat(scores.get(0).getUser(), is(userOne));
+    }
+
+    @Test
+    public void assertResetScoresSetsAllScoresToZero() throws Exception {
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(createUser("Andy", new UserScoreProperty(1.0, true)),
+                createUser("John", new UserScoreProperty(2.0, true))));
+
+        index.resetScores();
+
+        List<UserScore> scores = index.getUserScores();
+        assertThat(scores.size(), is(2));
+        assertThat(scores.get(0).getScore(), is(0d));
+        assertThat(scores.get(1).getScore(), is(0d));
+    }
+
+    @Test
+    public void assertUsersWithSameScoreShareRank() throws Exception {
+        LeaderBoardIndex index = new LeaderBoardIndex(false);
+        index.addAll(Arrays.asList(createUser("Andy", new UserScoreProperty(2.0, true)),
+                createUser("Bob", new UserScoreProperty(2.0, true)),
+                createUser("John", new UserScoreProperty(3.0, true)),
+                createUser("Zed", new UserScoreProperty(1.0, true))));
+
+        assertThat(index.getRank("John"), is(1));
+        assertThat(index.getRank("Andy"), is(2));
+        assertThat(index.getRank("BOB"), is(2));
+        assertThat(index.getRank("Zed"), is(4));
+        assertThat(index.getRank("Unknown"), is(0));
+    }
+
+    @Test
+    public void assertVersionIsIncreasedByEveryChange() throws Exception {
+        User andy = createUser("Andy", new UserScoreProperty(1.0, true));
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        long version = index.getVersion();
+
+        index.addAll(Arrays.asList(andy));
+        assertTrue(index.getVersion() > version);
+        version = index.getVersion();
+        assertThat(index.createSnapshot().getVersion(), is(version));
+
+        index.resetScores();
+        assertTrue(index.getVersion() > version);
+        assertTrue(new LeaderBoardIndex(true).getVersion() > index.getVersion());
+    }
+
+    @Test
+    public void assertWindowIndexSortsUsersByScoreOfTheWindow() throws Exception {
+        long today = 14685;
+        UserScoreProperty andyProperty = new UserScoreProperty(100.0, true);
+        UserScoreProperty johnProperty = new UserScoreProperty(0.0, true);
+        andyProperty.addScore(10, today - 40);
+        johnProperty.addScore(5, today - 2);
+        User andy = createUser("Andy", andyProperty);
+        User john = createUser("John", johnProperty);
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(andy, john));
+
+        LeaderBoardIndex windowIndex = index.getWindowIndex(ScoreWindow.LAST_30_DAYS, today);
+        List<UserScore> scores = windowIndex.createSnapshot().getUserScores();
+        assertThat(scores.get(0).getUser().getId(), is("John"));
+        assertThat(scores.get(0).getScore(), is(5d));
+        assertThat(scores.get(1).getScore(), is(0d));
+        assertThat(index.getUserScores().get(0).getUser().getId(), is("Andy"));
+
+        andyProperty.addScore(7, today);
+        index.update(andy);
+        assertThat(index.getWindowIndex(ScoreWindow.LAST_30_DAYS, today), is(sameInstance(windowIndex)));
+        assertThat(windowIndex.createSnapshot().getUserScores().get(0).getUser().getId(), is("Andy"));
+        assertThat(windowIndex.createSnapshot().getScore("Andy"), is(7d));
+
+        LeaderBoardIndex nextDayIndex = index.getWindowIndex(ScoreWindow.LAST_30_DAYS, today + 28);
+        assertThat(nextDayIndex, is(not(sameInstance(windowIndex))));
+        assertThat(nextDayIndex.createSnapshot().getScore("John"), is(0d));
+        assertThat(nextDayIndex.createSnapshot().getScore("Andy"), is(7d));
+    }
+
+    private User createUser(String id, UserScoreProperty property) {
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getProperty(UserScoreProperty.class)).thenReturn(property);
+        return user;
+    }
+}
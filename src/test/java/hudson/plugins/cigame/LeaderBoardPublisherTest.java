@@ -0,0 +1,123 @@
+package hudson.plugins.cigame;
+
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import hudson.model.User;
+
+import org.junit.Test;
+
+public class LeaderBoardPublisherTest {
+
+    @Test
+    public void assertChangesArePublishedInOneSnapshotAfterTheDelay() throws Exception {
+        UserScoreProperty andyProperty = new UserScoreProperty(1.0, true);
+        UserScoreProperty johnProperty = new UserScoreProperty(2.0, true);
+        User andy = createUser("Andy", andyProperty);
+        User john = createUser("John", johnProperty);
+        LeaderBoardIndex index = spy(new LeaderBoardIndex(true));
+        index.addAll(Arrays.asList(andy, john));
+        LeaderBoardPublisher publisher = new LeaderBoardPublisher(index, 200, TimeUnit.MILLISECONDS);
+        try {
+            LeaderBoardSnapshot firstSnapshot = publisher.getSnapshot();
+
+            andyProperty.setScore(5.0);
+            index.update(andy);
+            johnProperty.setScore(4.0);
+            index.update(john);
+            assertThat(publisher.getSnapshot(), is(sameInstance(firstSnapshot)));
+
+            Thread.sleep(1000);
+            assertThat(publisher.getSnapshot(), is(not(sameInstance(firstSnapshot))));
+            assertThat(publisher.getSnapshot().getScore("Andy"), is(5d));
+            assertThat(publisher.getSnapshot().getScore("John"), is(4d));
+            verify(index, times(2)).createSnapshot();
+        } finally {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    public void assertWindowSnapshotsArePublishedAndRolledByThePublisher() throws Exception {
+        long today = ScoreWindow.today();
+        UserScoreProperty andyProperty = new UserScoreProperty(100.0, true);
+        UserScoreProperty johnProperty = new UserScoreProperty(0.0, true);
+        johnProperty.addScore(5, today - 2);
+        User andy = createUser("Andy", andyProperty);
+        User john = createUser("John", johnProperty);
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(andy, john));
+        LeaderBoardPublisher publisher = new LeaderBoardPublisher(index, 1, TimeUnit.HOURS);
+        try {
+            LeaderBoardSnapshot windowSnapshot = publisher.getSnapshot(ScoreWindow.LAST_30_DAYS);
+            assertThat(windowSnapshot.getScore("John"), is(5d));
+            assertThat(windowSnapshot.getScore("Andy"), is(0d));
+            assertThat(publisher.getSnapshot(null), is(sameInstance(publisher.getSnapshot())));
+
+            andyProperty.addScore(7, today);
+            index.update(andy);
+            assertThat(publisher.getSnapshot(ScoreWindow.LAST_30_DAYS), is(sameInstance(windowSnapshot)));
+
+            publisher.publish(today);
+            assertThat(publisher.getSnapshot(ScoreWindow.LAST_30_DAYS).getScore("Andy"), is(7d));
+
+            publisher.publish(today + 28);
+            assertThat(publisher.getSnapshot(ScoreWindow.LAST_30_DAYS).getScore("John"), is(0d));
+            assertThat(publisher.getSnapshot(ScoreWindow.LAST_30_DAYS).getScore("Andy"), is(7d));
+        } finally {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    public void assertSnapshotIsOnlyCreatedAgainAfterChange() throws Exception {
+        UserScoreProperty property = new UserScoreProperty(1.0, true);
+        User andy = createUser("Andy", property);
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(andy));
+        LeaderBoardPublisher publisher = new LeaderBoardPublisher(index, 1, TimeUnit.HOURS);
+        try {
+            long today = ScoreWindow.today();
+            LeaderBoardSnapshot snapshot = publisher.getSnapshot();
+            LeaderBoardSnapshot windowSnapshot = publisher.getSnapshot(ScoreWindow.WEEK);
+
+            publisher.publish(today);
+            assertThat(publisher.getSnapshot(), is(sameInstance(snapshot)));
+            assertThat(publisher.getSnapshot(ScoreWindow.WEEK), is(sameInstance(windowSnapshot)));
+
+            index.update(andy);
+            publisher.publish(today);
+            assertThat(publisher.getSnapshot(), is(not(sameInstance(snapshot))));
+            assertThat(publisher.getSnapshot(ScoreWindow.WEEK), is(not(sameInstance(windowSnapshot))));
+        } finally {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    public void assertIndexIsNotPublishedAfterShutdown() throws Exception {
+        UserScoreProperty property = new UserScoreProperty(1.0, true);
+        User andy = createUser("Andy", property);
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(andy));
+        LeaderBoardPublisher publisher = new LeaderBoardPublisher(index, 0, TimeUnit.MILLISECONDS);
+        publisher.shutdown();
+
+        property.setScore(3.0);
+        index.update(andy);
+
+        Thread.sleep(100);
+        assertThat(publisher.getSnapshot().getScore("Andy"), is(1d));
+    }
+
+    private User createUser(String id, UserScoreProperty property) {
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getProperty(UserScoreProperty.class)).thenReturn(property);
+        return user;
+    }
+}
@@ -0,0 +1,82 @@
+package hudson.plugins.cigame;
+
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import hudson.model.User;
+import hudson.plugins.cigame.LeaderBoardAction.UserScore;
+
+import org.junit.Test;
+
+public class LeaderBoardSnapshotTest {
+
+    @Test
+    public void assertSnapshotIsNotChangedByLaterUpdates() throws Exception {
+        UserScoreProperty property = new UserScoreProperty(1.0, true);
+        User andy = createUser("Andy", property);
+        LeaderBoardIndex index = new LeaderBoardIndex(true);
+        index.addAll(Arrays.asList(andy, createUser("John", new UserScoreProperty(2.0, true))));
+        LeaderBoardSnapshot snapshot = index.createSnapshot();
+
+        property.setScore(3.0);
+        index.update(andy);
+
+        List<UserScore> scores = snapshot.getUserScores();
+        assertThat(scores.size(), is(2));
+        assertThat(scores.get(0).getUser().getId(), is("John"));
+        assertThat(snapshot.getScore("Andy"), is(1d));
+        assertThat(index.createSnapshot().getUserScores().get(0).getUser().getId(), is("Andy"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void assertUserScoresCanNotBeModified() throws Exception {
+        LeaderBoardSnapshot snapshot = createIndex(true).createSnapshot();
+        snapshot.getUserScores().set(0, null);
+    }
+
+    @Test
+    public void assertPageStartsAfterTheCursor() throws Exception {
+        LeaderBoardSnapshot snapshot = createIndex(true).createSnapshot();
+
+        List<UserScore> scores = snapshot.getUserScores(2.0, "Andy", 2);
+        assertThat(scores.size(), is(2));
+        assertThat(scores.get(0).getUser().getId(), is("Bob"));
+        assertThat(scores.get(1).getUser().getId(), is("Zed"));
+
+        assertThat(snapshot.getUserScores(0, null, 1).get(0).getUser().getId(), is("John"));
+        assertThat(snapshot.getUserScores(2.5, "Nobody", -1).size(), is(3));
+        assertThat(snapshot.getUserScores(1.0, "Zed", -1).size(), is(0));
+    }
+
+    @Test
+    public void assertUsersWithSameScoreShareRank() throws Exception {
+        LeaderBoardSnapshot snapshot = createIndex(false).createSnapshot();
+
+        assertThat(snapshot.getRank("John"), is(1));
+        assertThat(snapshot.getRank("Andy"), is(2));
+        assertThat(snapshot.getRank("BOB"), is(2));
+        assertThat(snapshot.getRank("Zed"), is(4));
+        assertThat(snapshot.getRank("Unknown"), is(0));
+        assertThat(snapshot.getScore("Unknown"), is(nullValue()));
+    }
+
+    private LeaderBoardIndex createIndex(boolean usernameIsCasesensitive) {
+        LeaderBoardIndex index = new LeaderBoardIndex(usernameIsCasesensitive);
+        index.addAll(Arrays.asList(createUser("Andy", new UserScoreProperty(2.0, true)),
+                createUser("Bob", new UserScoreProperty(2.0, true)),
+                createUser("John", new UserScoreProperty(3.0, true)),
+                createUser("Zed", new UserScoreProperty(1.0, true))));
+        return index;
+    }
+
+    private User createUser(String id, UserScoreProperty property) {
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getProperty(UserScoreProperty.class)).thenReturn(property);
+        return user;
+    }
+}
@@ -0,0 +1,68 @@
+package hudson.plugins.cigame;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+
+import net.sf.json.JSONObject;
+
+import hudson.plugins.cigame.model.Rule;
+import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.RuleSet;
+import hudson.plugins.cigame.model.RuleTimings;
+
+import org.junit.Test;
+
+public class RuleMetricsTest {
+
+    @Test
+    public void assertPercentilesOfLatestSamplesAreReturned() {
+        RuleMetrics.Histogram histogram = new RuleMetrics.Histogram();
+        assertThat(histogram.getTimePercentile(0.5), is(0L));
+        for (int i = 1; i <= 100; i++) {
+            histogram.add(i, i * 10);
+        }
+
+        assertThat(histogram.getTimePercentile(0.50), is(50L));
+        assertThat(histogram.getTimePercentile(0.95), is(95L));
+        assertThat(histogram.getTimePercentile(0.99), is(99L));
+        assertThat(histogram.getAllocatedBytesPercentile(0.50), is(500L));
+    }
+
+    @Test
+    public void assertOldSamplesAreDropped() {
+        RuleMetrics.Histogram histogram = new RuleMetrics.Histogram();
+        for (int i = 0; i < RuleMetrics.WINDOW; i++) {
+            histogram.add(1000, 0);
+        }
+        for (int i = 0; i < RuleMetrics.WINDOW; i++) {
+            histogram.add(1, 0);
+        }
+
+        assertThat(histogram.getTimePercentile(0.99), is(1L));
+        assertThat(histogram.toJSON().getLong("count"), is(2L * RuleMetrics.WINDOW));
+    }
+
+    @Test
+    public void assertRulesAndRuleSetsAreRecorded() {
+        Rule rule = mock(Rule.class);
+        when(rule.getName()).thenReturn("rule");
+        Rule notEvaluatedRule = mock(Rule.class);
+        when(notEvaluatedRule.getName()).thenReturn("other rule");
+        RuleBook ruleBook = new RuleBook(new RuleSet("set", Arrays.asList(rule, notEvaluatedRule)));
+        RuleTimings timings = new RuleTimings();
+        timings.start().stop(rule);
+
+        RuleMetrics metrics = new RuleMetrics();
+        metrics.record(ruleBook, timings, 5000000);
+        JSONObject json = metrics.toJSON();
+
+        assertThat(json.getJSONObject("perform").getLong("count"), is(1L));
+        assertThat(json.getJSONObject("perform").getDouble("p50Millis"), is(5d));
+        assertThat(json.getJSONObject("ruleSets").getJSONObject("set").getLong("count"), is(1L));
+        assertThat(json.getJSONObject("rules").getJSONObject("set/rule").getLong("count"), is(1L));
+        assertFalse(json.getJSONObject("rules").has("set/other rule"));
+    }
+}
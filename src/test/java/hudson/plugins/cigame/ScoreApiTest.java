@@ -0,0 +1,110 @@
+package hudson.plugins.cigame;
+
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+public class ScoreApiTest {
+
+    @Test
+    public void assertETagChangesWithScoreVersion() throws Exception {
+        String etag = ScoreApi.getETag(41);
+        assertThat(ScoreApi.getETag(41), is(etag));
+        assertThat(ScoreApi.getETag(42), is(not(etag)));
+        assertTrue(etag.startsWith("W/\""));
+        assertTrue(etag.endsWith("\""));
+    }
+
+    @Test
+    public void assertCurrentVersionIsAnsweredWithNotModified() throws Exception {
+        Board board = spy(new Board());
+        ScoreApi api = new ScoreApi(board, 42);
+        StaplerRequest req = mock(StaplerRequest.class);
+        StaplerResponse rsp = mock(StaplerResponse.class);
+        when(req.getHeader("If-None-Match")).thenReturn(ScoreApi.getETag(42));
+
+        api.doJson(req, rsp);
+
+        verify(rsp).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(rsp).setHeader("ETag", ScoreApi.getETag(42));
+        verify(rsp).setHeader("Vary", "Accept-Encoding");
+        verify(rsp, never()).getWriter();
+        verify(board, never()).getScores();
+    }
+
+    @Test
+    public void assertStrongFormOfETagIsNotModified() throws Exception {
+        ScoreApi api = new ScoreApi(new Board(), 42);
+        StaplerRequest req = mock(StaplerRequest.class);
+        StaplerResponse rsp = mock(StaplerResponse.class);
+        when(req.getHeader("If-None-Match")).thenReturn(ScoreApi.getETag(42).substring(2));
+
+        api.doJson(req, rsp);
+
+        verify(rsp).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    public void assertOldVersionIsExported() throws Exception {
+        ScoreApi api = new ScoreApi(new Board(), 42);
+        StaplerRequest req = mock(StaplerRequest.class);
+        StaplerResponse rsp = mock(StaplerResponse.class);
+        StringWriter body = new StringWriter();
+        PrintWriter writer = new PrintWriter(body);
+        when(req.getHeader("If-None-Match")).thenReturn(ScoreApi.getETag(41));
+        when(rsp.getWriter()).thenReturn(writer);
+
+        api.doJson(req, rsp);
+
+        verify(rsp, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(rsp).setHeader("ETag", ScoreApi.getETag(42));
+        assertThat(body.toString(), is("{\"scores\":[3.0,1.0]}"));
+    }
+
+    @Test
+    public void assertMalformedRequestIsAnsweredWithBadRequest() throws Exception {
+        Board board = spy(new Board());
+        ScoreApi api = new ScoreApi(board) {
+            @Override
+            protected long getScoreVersion(StaplerRequest req) {
+                throw new IllegalArgumentException("top must be a number: x");
+            }
+        };
+        StaplerRequest req = mock(StaplerRequest.class);
+        StaplerResponse rsp = mock(StaplerResponse.class);
+
+        api.doJson(req, rsp);
+
+        verify(rsp).sendError(HttpServletResponse.SC_BAD_REQUEST, "top must be a number: x");
+        verify(rsp, never()).getWriter();
+        verify(board, never()).getScores();
+    }
+
+    @Test
+    public void assertIfNoneMatchListIsParsed() {
+        assertTrue(ScoreApi.matches("\"a\", W/\"b\"", "\"b\""));
+        assertTrue(ScoreApi.matches("\"a\", \"b\"", "W/\"b\""));
+        assertTrue(ScoreApi.matches("*", "\"b\""));
+        assertFalse(ScoreApi.matches("\"a\", \"c\"", "\"b\""));
+        assertFalse(ScoreApi.matches(null, "\"b\""));
+    }
+
+    @ExportedBean(defaultVisibility = 999)
+    public static class Board {
+        @Exported
+        public double[] getScores() {
+            return new double[] { 3, 1 };
+        }
+    }
+}
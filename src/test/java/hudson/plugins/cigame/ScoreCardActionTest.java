@@ -40,6 +40,16 @@ public class ScoreCardActionTest {
         assertThat(new ScoreCardAction(new ScoreCard(), build).getParticipants(true).size(), is(2));
     }
     
+    @Test 
+    public void assertCaseDifferentUsersAreReportedAsOneUserRegardlessOfOrder() {
+        AbstractBuild<?, ?> build = mock(AbstractBuild.class);        
+        ChangeLogSet changeset = mock(ChangeLogSet.class);
+        when(build.getChangeSet()).thenReturn(changeset);
+        Iterator<Entry> iterator = Arrays.asList(new Entry[]{mockEntry("b", "Barney"), mockEntry("A", "Andy"), mockEntry("a", "Andrew")}).iterator();
+        when(changeset.iterator()).thenReturn(iterator);
+        assertThat(new ScoreCardAction(new ScoreCard(), build).getParticipants(false).size(), is(2));
+    }
+    
     @Test 
     public void assertParticipantListIsSorted() {
         AbstractBuild<?, ?> build = mock(AbstractBuild.class);        
@@ -0,0 +1,125 @@
+package hudson.plugins.cigame;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import hudson.plugins.cigame.ScoreEventBroadcaster.Subscription;
+
+import net.sf.json.JSONArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScoreEventBroadcasterTest {
+
+    private ScoreEventBroadcaster broadcaster;
+
+    @Before
+    public void setUp() {
+        // the batches are flushed by the tests
+        broadcaster = new ScoreEventBroadcaster(1, TimeUnit.HOURS, 2, 2);
+    }
+
+    @After
+    public void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void assertBatchIsWrittenAsOneMessage() throws Exception {
+        String message = ScoreEventBroadcaster.toMessage(7, Arrays.asList(
+                new ScoreEvent("john", 5, 15, 1, "job #3", "job/job/3/"),
+                new ScoreEvent("andy", 5, 12, 2, "job #3", "job/job/3/")));
+
+        assertTrue(message.startsWith("id: 7\nevent: scores\ndata: "));
+        assertTrue(message.endsWith("\n\n"));
+        String data = message.substring(message.indexOf("data: ") + 6, message.length() - 2);
+        JSONArray events = JSONArray.fromObject(data);
+        assertThat(events.size(), is(2));
+        assertThat(events.getJSONObject(0).getString("user"), is("john"));
+        assertThat(events.getJSONObject(0).getDouble("delta"), is(5d));
+        assertThat(events.getJSONObject(0).getDouble("total"), is(15d));
+        assertThat(events.getJSONObject(0).getInt("rank"), is(1));
+        assertThat(events.getJSONObject(0).getString("build"), is("job #3"));
+        assertThat(events.getJSONObject(1).getString("user"), is("andy"));
+    }
+
+    @Test
+    public void assertEventsAreStreamedUntilUnsubscribed() throws Exception {
+        final Subscription subscription = broadcaster.subscribe();
+        StringWriter body = new StringWriter();
+        final PrintWriter writer = new PrintWriter(body);
+        Thread stream = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    subscription.streamTo(writer, 1, TimeUnit.HOURS);
+                } catch (InterruptedException e) {
+                    // ends the stream
+                }
+            }
+        };
+        stream.start();
+
+        broadcaster.add(new ScoreEvent("john", 5, 15, 1, "job #3", "job/job/3/"));
+        broadcaster.add(new ScoreEvent("andy", 5, 12, 2, "job #3", "job/job/3/"));
+        broadcaster.flush();
+        broadcaster.flush();
+        broadcaster.add(new ScoreEvent("john", -1, 14, 1, "job #4", "job/job/4/"));
+        broadcaster.flush();
+        Thread.sleep(200);
+        broadcaster.unsubscribe(subscription);
+        stream.join(5000);
+
+        assertFalse(stream.isAlive());
+        String[] messages = body.toString().split("\n\n");
+        assertThat(messages.length, is(3));
+        assertThat(messages[0] + "\n\n", is(ScoreEventBroadcaster.HEARTBEAT));
+        assertTrue(messages[1].startsWith("id: 1\n"));
+        assertTrue(messages[2].startsWith("id: 2\n"));
+        assertThat(broadcaster.getSubscriberCount(), is(0));
+    }
+
+    @Test
+    public void assertClientThatDoesNotKeepUpIsDropped() throws Exception {
+        Subscription slowSubscription = broadcaster.subscribe();
+        for (int i = 0; i < 3; i++) {
+            broadcaster.add(new ScoreEvent("john", 1, i, 1, "job #" + i, "job/job/" + i + "/"));
+            broadcaster.flush();
+        }
+
+        assertTrue(slowSubscription.isClosed());
+        assertThat(broadcaster.getSubscriberCount(), is(0));
+    }
+
+    @Test
+    public void assertClientIsNotSubscribedWhenMaxNumberOfClientsAreConnected() throws Exception {
+        Subscription subscription = broadcaster.subscribe();
+        assertNotNull(broadcaster.subscribe());
+
+        assertNull(broadcaster.subscribe());
+        assertThat(broadcaster.getSubscriberCount(), is(2));
+
+        broadcaster.unsubscribe(subscription);
+        assertNotNull(broadcaster.subscribe());
+    }
+
+    @Test
+    public void assertStreamEndsWhenClientHasGoneAway() throws Exception {
+        Subscription subscription = broadcaster.subscribe();
+        PrintWriter writer = new PrintWriter(new StringWriter()) {
+            @Override
+            public boolean checkError() {
+                return true;
+            }
+        };
+
+        subscription.streamTo(writer, 1, TimeUnit.HOURS);
+    }
+}
@@ -0,0 +1,231 @@
+package hudson.plugins.cigame;
+
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import hudson.model.User;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ScoreLedgerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void assertScoreIsChangedWithoutSavingUser() throws Exception {
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        ScoreLedger ledger = new ScoreLedger(new File(folder.getRoot(), "ledger"));
+        ledger.load(Arrays.asList(user));
+
+        ledger.addScore(user, property, 5);
+        ledger.write();
+
+        assertThat(property.getScore(), is(15d));
+        verify(user, never()).save();
+    }
+
+    @Test
+    public void assertWrittenRecordsAreFixedSize() throws Exception {
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        File file = new File(folder.getRoot(), "ledger");
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user));
+
+        ledger.addScore(user, property, 5);
+        ledger.addScore(user, property, -1);
+        ledger.write();
+
+        assertThat(file.length(), is((long) (2 * ScoreLedger.RECORD_SIZE)));
+    }
+
+    @Test
+    public void assertUnsavedScoreChangesAreReplayed() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user));
+        ledger.addScore(user, property, 5);
+        ledger.addScore(user, property, 3);
+        ledger.write();
+
+        // the user was never saved, so it is loaded with the old score
+        UserScoreProperty loadedProperty = new UserScoreProperty(10, true);
+        User loadedUser = createUser("andy", loadedProperty);
+        new ScoreLedger(file).load(Arrays.asList(loadedUser));
+
+        assertThat(loadedProperty.getScore(), is(18d));
+        verify(loadedUser).save();
+        assertThat(file.length(), is(0L));
+    }
+
+    @Test
+    public void assertReplayedScoreChangesAreAddedToTheDayTheyWereMade() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user));
+        long today = ScoreWindow.today();
+        ledger.addScore(user, property, 5, today - 40);
+        ledger.addScore(user, property, 3, today);
+        ledger.write();
+
+        UserScoreProperty loadedProperty = new UserScoreProperty(10, true);
+        new ScoreLedger(file).load(Arrays.asList(createUser("andy", loadedProperty)));
+
+        assertThat(loadedProperty.getScore(), is(18d));
+        assertThat(loadedProperty.getScore(ScoreWindow.LAST_30_DAYS, today), is(3d));
+    }
+
+    @Test
+    public void assertSavedScoreChangesAreNotReplayed() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user));
+        ledger.addScore(user, property, 5);
+        ledger.write();
+
+        // the user was saved with the change, but the ledger was not truncated
+        UserScoreProperty loadedProperty = new UserScoreProperty(15, true);
+        loadedProperty.setLedgerSequence(property.getLedgerSequence());
+        User loadedUser = createUser("andy", loadedProperty);
+        new ScoreLedger(file).load(Arrays.asList(loadedUser));
+
+        assertThat(loadedProperty.getScore(), is(15d));
+    }
+
+    @Test
+    public void assertConcurrentScoreChangesOfUserAreReplayedInOrder() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        final UserScoreProperty property = new UserScoreProperty(0, true);
+        final User user = createUser("andy", property);
+        final ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user));
+        Runnable addScores = new Runnable() {
+            public void run() {
+                for (int i = 0; i < 2000; i++) {
+                    ledger.addScore(user, property, 1);
+                }
+            }
+        };
+        Thread thread = new Thread(addScores);
+        thread.start();
+        addScores.run();
+        thread.join();
+        ledger.write();
+
+        UserScoreProperty loadedProperty = new UserScoreProperty(0, true);
+        new ScoreLedger(file).load(Arrays.asList(createUser("andy", loadedProperty)));
+
+        assertThat(loadedProperty.getScore(), is(4000d));
+    }
+
+    @Test
+    public void assertFoldSavesChangedUsersAndTruncatesLedger() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        User otherUser = createUser("john", new UserScoreProperty(1, true));
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user, otherUser));
+        ledger.addScore(user, property, 5);
+        ledger.addScore(user, property, 5);
+
+        ledger.fold();
+
+        verify(user, times(1)).save();
+        verify(otherUser, never()).save();
+        assertThat(file.length(), is(0L));
+    }
+
+    @Test
+    public void assertScoreChangesDuringFoldAreKeptForNextFold() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        final UserScoreProperty otherProperty = new UserScoreProperty(1, true);
+        final User otherUser = createUser("john", otherProperty);
+        final ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user, otherUser));
+        ledger.addScore(user, property, 5);
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                // the user is saved without blocking the scoring of other users
+                ledger.addScore(otherUser, otherProperty, 2);
+                ledger.write();
+                return null;
+            }
+        }).when(user).save();
+
+        ledger.fold();
+
+        assertThat(file.length(), is((long) ScoreLedger.RECORD_SIZE));
+        verify(otherUser, never()).save();
+
+        ledger.fold();
+
+        verify(otherUser).save();
+        assertThat(file.length(), is(0L));
+    }
+
+    @Test
+    public void assertResetDiscardsRecordedScoreChanges() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        final UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user));
+        ledger.addScore(user, property, 5);
+        ledger.write();
+
+        ledger.resetScores(new ScoreLedger.ScoreReset() {
+            public void resetScores() {
+                property.setScore(0);
+            }
+        });
+        ledger.write();
+
+        assertThat(file.length(), is(0L));
+        UserScoreProperty loadedProperty = new UserScoreProperty(0, true);
+        new ScoreLedger(file).load(Arrays.asList(createUser("andy", loadedProperty)));
+        assertThat(loadedProperty.getScore(), is(0d));
+    }
+
+    @Test
+    public void assertStopFoldsLedger() throws Exception {
+        File file = new File(folder.getRoot(), "ledger");
+        UserScoreProperty property = new UserScoreProperty(10, true);
+        User user = createUser("andy", property);
+        ScoreLedger ledger = new ScoreLedger(file);
+        ledger.load(Arrays.asList(user));
+        ledger.start(1, 1, TimeUnit.HOURS);
+        ledger.addScore(user, property, 5);
+
+        ledger.stop();
+
+        verify(user).save();
+        assertThat(file.length(), is(0L));
+    }
+
+    private User createUser(String id, UserScoreProperty property) {
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getProperty(UserScoreProperty.class)).thenReturn(property);
+        return user;
+    }
+}
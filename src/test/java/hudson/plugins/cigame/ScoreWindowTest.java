@@ -0,0 +1,61 @@
+package hudson.plugins.cigame;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ScoreWindowTest {
+
+    /** 2010-03-17, a Wednesday. */
+    private static final long WEDNESDAY = 14685;
+
+    @Test
+    public void assertMonthStartsOnTheFirstDayOfTheMonth() {
+        assertThat(ScoreWindow.MONTH.getFirstDay(WEDNESDAY), is(WEDNESDAY - 16));
+        assertThat(ScoreWindow.MONTH.getFirstDay(WEDNESDAY - 16), is(WEDNESDAY - 16));
+    }
+
+    @Test
+    public void assertWeekStartsOnTheFirstDayOfTheWeek() {
+        long firstDay = ScoreWindow.WEEK.getFirstDay(WEDNESDAY);
+        if (Calendar.getInstance().getFirstDayOfWeek() == Calendar.SUNDAY) {
+            assertThat(firstDay, is(WEDNESDAY - 3));
+        } else {
+            assertThat(firstDay, is(WEDNESDAY - 2));
+        }
+        assertThat(ScoreWindow.WEEK.getFirstDay(firstDay), is(firstDay));
+        assertThat(ScoreWindow.WEEK.getFirstDay(firstDay + 6), is(firstDay));
+    }
+
+    @Test
+    public void assertLast30DaysIncludeToday() {
+        assertThat(ScoreWindow.LAST_30_DAYS.getFirstDay(WEDNESDAY), is(WEDNESDAY - 29));
+    }
+
+    @Test
+    public void assertWindowIsFoundByName() {
+        assertThat(ScoreWindow.fromName("month"), is(ScoreWindow.MONTH));
+        assertThat(ScoreWindow.fromName("LAST_30_DAYS"), is(ScoreWindow.LAST_30_DAYS));
+        assertThat(ScoreWindow.fromName(null), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void assertUnknownWindowIsRejected() {
+        ScoreWindow.fromName("year");
+    }
+
+    @Test
+    public void assertDaysChangeAtLocalMidnight() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2010, Calendar.MARCH, 17, 0, 0, 1);
+        assertThat(ScoreWindow.getDay(calendar.getTimeInMillis()), is(WEDNESDAY));
+        calendar.set(2010, Calendar.MARCH, 17, 23, 59, 59);
+        assertThat(ScoreWindow.getDay(calendar.getTimeInMillis()), is(WEDNESDAY));
+        assertThat(ScoreWindow.getDay(calendar.getTimeInMillis() + TimeUnit.SECONDS.toMillis(1)), is(WEDNESDAY + 1));
+    }
+}
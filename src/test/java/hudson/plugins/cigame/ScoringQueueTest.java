@@ -0,0 +1,162 @@
+package hudson.plugins.cigame;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ScoringQueueTest {
+
+    @Test
+    public void assertQueuedJobIsRun() throws Exception {
+        ScoringQueue queue = new ScoringQueue(1, 1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        assertThat(queue.offer("project", new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        }), is(true));
+
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        queue.shutdown();
+    }
+
+    @Test
+    public void assertJobIsRefusedWhenQueueIsFull() throws Exception {
+        ScoringQueue queue = new ScoringQueue(1, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blockingJob = new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        assertThat(queue.offer("project", blockingJob), is(true));
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(queue.offer("project", blockingJob), is(true));
+        assertThat(queue.offer("project", blockingJob), is(false));
+
+        assertThat(queue.getActiveCount(), is(1));
+        assertThat(queue.getQueueDepth(), is(1));
+        assertThat(queue.getRefusedCount(), is(1L));
+        release.countDown();
+        queue.shutdown();
+    }
+
+    @Test
+    public void assertFailingJobDoesNotStopWorker() throws Exception {
+        ScoringQueue queue = new ScoringQueue(1, 2);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        queue.offer("project", new Runnable() {
+            public void run() {
+                throw new IllegalStateException("expected");
+            }
+        });
+        queue.offer("project", new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        queue.shutdown();
+    }
+
+    @Test
+    public void assertJobsOfProjectAreRunInOrder() throws Exception {
+        ScoringQueue queue = new ScoringQueue(2, 10);
+        final List<Integer> runJobs = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 5; i++) {
+            final Integer job = Integer.valueOf(i);
+            queue.offer("project", new Runnable() {
+                public void run() {
+                    // the second worker must not pick up the next job of the project meanwhile
+                    sleep(10);
+                    runJobs.add(job);
+                }
+            });
+        }
+
+        assertThat(queue.shutdown(10, TimeUnit.SECONDS), is(true));
+        assertThat(runJobs, is(Arrays.asList(0, 1, 2, 3, 4)));
+        assertThat(queue.getCompletedCount(), is(5L));
+    }
+
+    @Test
+    public void assertInlineJobWaitsForQueuedJobsOfProject() throws Exception {
+        ScoringQueue queue = new ScoringQueue(1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> runJobs = Collections.synchronizedList(new ArrayList<String>());
+        queue.offer("project", new Runnable() {
+            public void run() {
+                await(release);
+                runJobs.add("queued");
+            }
+        });
+        release.countDown();
+
+        queue.startInline("project");
+        runJobs.add("inline");
+        queue.offer("project", new Runnable() {
+            public void run() {
+                runJobs.add("queued after inline");
+            }
+        });
+        sleep(50);
+        assertThat(runJobs, is(Arrays.asList("queued", "inline")));
+        queue.finishInline("project");
+
+        assertThat(queue.shutdown(10, TimeUnit.SECONDS), is(true));
+        assertThat(runJobs, is(Arrays.asList("queued", "inline", "queued after inline")));
+    }
+
+    @Test
+    public void assertShutdownRunsQueuedJobsAndRefusesNewJobs() throws Exception {
+        ScoringQueue queue = new ScoringQueue(1, 2);
+        final CountDownLatch done = new CountDownLatch(2);
+        Runnable job = new Runnable() {
+            public void run() {
+                sleep(10);
+                done.countDown();
+            }
+        };
+        queue.offer("project", job);
+        queue.offer("project", job);
+
+        assertThat(queue.shutdown(10, TimeUnit.SECONDS), is(true));
+        assertThat(done.getCount(), is(0L));
+        assertThat(queue.offer("project", job), is(false));
+        assertThat(queue.isTerminated(), is(true));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -12,4 +12,14 @@ public class UserScorePropertyDescriptorIntegrationTest extends HudsonTestCase {
         HtmlForm userConfigurationForm = new WebClient().goTo(User.get("test").getUrl() + "/configure").getFormByName("config");
         submit(userConfigurationForm);
     }
+
+    public void testConfiguredScoreIsUpdatedOnTheLeaderBoard() throws Exception {
+        LeaderBoardIndex index = hudson.getDescriptorByType(GameDescriptor.class).getLeaderBoardIndex();
+        HtmlForm userConfigurationForm = new WebClient().goTo(User.get("test").getUrl() + "/configure").getFormByName("config");
+        userConfigurationForm.getInputByName("game.score").setValueAttribute("42");
+        submit(userConfigurationForm);
+
+        assertSame(index, hudson.getDescriptorByType(GameDescriptor.class).getLeaderBoardIndex());
+        assertEquals(Double.valueOf(42), index.getScore("test"));
+    }
 }
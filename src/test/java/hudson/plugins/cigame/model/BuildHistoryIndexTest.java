@@ -0,0 +1,145 @@
+package hudson.plugins.cigame.model;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Result;
+import hudson.plugins.cigame.rules.unittesting.UnitTestingRuleSet;
+import hudson.tasks.LogRotator;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("unchecked")
+public class BuildHistoryIndexTest {
+
+    @org.junit.Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void assertSummariesAreReadBackFromFile() throws Exception {
+        File file = new File(folder.getRoot(), BuildHistoryIndex.FILENAME);
+        BuildHistoryIndex index = new BuildHistoryIndex(null, file);
+        index.add(summary(1, Result.SUCCESS, 10, 0));
+        index.add(summary(2, Result.UNSTABLE, 12, 1));
+        index.add(summary(1, Result.FAILURE, 10, 0));
+
+        BuildHistoryIndex reloaded = new BuildHistoryIndex(null, file);
+
+        assertThat(reloaded.size(), is(2));
+        assertThat(reloaded.get(1).getResult(), is(Result.FAILURE));
+        assertThat(reloaded.get(2).getFailCount(), is(1));
+        assertThat(reloaded.get(3), is(nullValue()));
+    }
+
+    @Test
+    public void assertPartlyWrittenRecordIsRemoved() throws Exception {
+        File file = new File(folder.getRoot(), BuildHistoryIndex.FILENAME);
+        new BuildHistoryIndex(null, file).add(summary(1, Result.SUCCESS, 10, 0));
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.setLength(out.length() + BuildSummary.SIZE / 2);
+        out.close();
+
+        BuildHistoryIndex index = new BuildHistoryIndex(null, file);
+        index.add(summary(2, Result.SUCCESS, 11, 0));
+
+        BuildHistoryIndex reloaded = new BuildHistoryIndex(null, file);
+        assertThat(reloaded.size(), is(2));
+        assertThat(reloaded.get(2).getTotalCount(), is(11));
+    }
+
+    @Test
+    public void assertFileWithUnknownFormatIsDiscarded() throws Exception {
+        File file = new File(folder.getRoot(), BuildHistoryIndex.FILENAME);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+
+        BuildHistoryIndex index = new BuildHistoryIndex(null, file);
+        assertThat(index.size(), is(0));
+        index.add(summary(7, Result.SUCCESS, 1, 0));
+
+        assertThat(new BuildHistoryIndex(null, file).get(7).getTotalCount(), is(1));
+    }
+
+    @Test
+    public void assertIndexedBuildsAreNotInspected() throws Exception {
+        AbstractProject project = mock(AbstractProject.class);
+        BuildHistoryIndex index = new BuildHistoryIndex(project, new File(folder.getRoot(), BuildHistoryIndex.FILENAME));
+        index.add(summary(1, Result.SUCCESS, 8, 2));
+        AbstractBuild previousBuild = mock(AbstractBuild.class);
+        when(previousBuild.getProject()).thenReturn(project);
+        when(previousBuild.getNumber()).thenReturn(1);
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getProject()).thenReturn(project);
+        when(build.getNumber()).thenReturn(2);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(build.getPreviousBuild()).thenReturn(previousBuild);
+        AbstractTestResultAction action = mock(AbstractTestResultAction.class);
+        when(action.getTotalCount()).thenReturn(10);
+        when(action.getFailCount()).thenReturn(1);
+        when(build.getTestResultAction()).thenReturn(action);
+
+        ScoreCard card = new ScoreCard();
+        card.record(build, new RuleBook(new UnitTestingRuleSet()), new EvaluationContext(index), null);
+
+        // three more passing tests
+        assertThat(card.getTotalPoints(), is(3d));
+        verify(previousBuild, never()).getResult();
+        verify(previousBuild, never()).getTestResultAction();
+    }
+
+    @Test
+    public void assertSummariesOfDiscardedBuildsAreDroppedAndFileIsCompacted() throws Exception {
+        File file = new File(folder.getRoot(), BuildHistoryIndex.FILENAME);
+        AbstractProject project = mock(AbstractProject.class);
+        when(project.getLogRotator()).thenReturn(new LogRotator(-1, 3));
+        BuildHistoryIndex index = new BuildHistoryIndex(project, file);
+        for (int number = 1; number <= 5; number++) {
+            index.add(summary(number, Result.SUCCESS, number, 0));
+        }
+        index.add(summary(5, Result.FAILURE, 5, 1));
+
+        assertThat(index.size(), is(3));
+        assertThat(index.get(2), is(nullValue()));
+
+        BuildHistoryIndex reloaded = new BuildHistoryIndex(project, file);
+        assertThat(reloaded.size(), is(3));
+        assertThat(reloaded.get(3).getTotalCount(), is(3));
+        assertThat(reloaded.get(5).getResult(), is(Result.FAILURE));
+        assertThat(file.length(), is((long) (12 + 3 * BuildSummary.SIZE)));
+    }
+
+    @Test
+    public void assertScoredBuildIsNotReadFromIndex() throws Exception {
+        AbstractProject project = mock(AbstractProject.class);
+        BuildHistoryIndex index = new BuildHistoryIndex(project, new File(folder.getRoot(), BuildHistoryIndex.FILENAME));
+        index.add(summary(1, Result.FAILURE, 8, 2));
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getProject()).thenReturn(project);
+        when(build.getNumber()).thenReturn(1);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        assertThat(new EvaluationContext(index).getSummary(build).getResult(), is(Result.FAILURE));
+        assertThat(new EvaluationContext(index, build).getSummary(build).getResult(), is(Result.SUCCESS));
+    }
+
+    private static BuildSummary summary(int number, Result result, int totalCount, int failCount) {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getNumber()).thenReturn(number);
+        when(build.getResult()).thenReturn(result);
+        AbstractTestResultAction action = mock(AbstractTestResultAction.class);
+        when(action.getTotalCount()).thenReturn(totalCount);
+        when(action.getFailCount()).thenReturn(failCount);
+        when(build.getTestResultAction()).thenReturn(action);
+        return BuildSummary.of(build, new EvaluationContext());
+    }
+}
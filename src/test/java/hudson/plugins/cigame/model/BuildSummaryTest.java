@@ -0,0 +1,124 @@
+package hudson.plugins.cigame.model;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.analysis.core.HealthDescriptor;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.cigame.model.BuildSummary.Analysis;
+import hudson.plugins.findbugs.FindBugsResult;
+import hudson.plugins.findbugs.FindBugsResultAction;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class BuildSummaryTest {
+
+    @Test
+    public void assertCountsAreSummedPerPriority() {
+        AbstractBuild build = mockBuild(Result.SUCCESS, mockResult(1, 2, 3), mockResult(10, 20, 30));
+
+        BuildSummary summary = BuildSummary.of(build, new EvaluationContext());
+
+        assertThat(summary.hasErrors(Analysis.FINDBUGS), is(false));
+        assertThat(summary.hasResult(Analysis.FINDBUGS), is(true));
+        assertThat(summary.hasResult(Analysis.CHECKSTYLE), is(false));
+        assertThat(summary.getNumberOfAnnotations(Analysis.FINDBUGS, Priority.HIGH), is(11));
+        assertThat(summary.getNumberOfAnnotations(Analysis.FINDBUGS, Priority.NORMAL), is(22));
+        assertThat(summary.getNumberOfAnnotations(Analysis.FINDBUGS, Priority.LOW), is(33));
+        assertThat(summary.getNumberOfAnnotations(Analysis.CHECKSTYLE, Priority.HIGH), is(0));
+    }
+
+    @Test
+    public void assertCountsAreNotReadWhenResultHasErrors() {
+        FindBugsResult result = mockResult(1, 1, 1);
+        when(result.hasError()).thenReturn(true);
+        AbstractBuild build = mockBuild(Result.SUCCESS, result);
+
+        BuildSummary summary = BuildSummary.of(build, new EvaluationContext());
+
+        assertThat(summary.hasErrors(Analysis.FINDBUGS), is(true));
+        assertThat(summary.hasErrors(Analysis.PMD), is(false));
+        verify(result, never()).getNumberOfAnnotations(Priority.HIGH);
+    }
+
+    @Test
+    public void assertWarningsOfFailedBuildsAreNotCounted() {
+        FindBugsResult result = mockResult(1, 1, 1);
+        AbstractBuild build = mockBuild(Result.FAILURE, result);
+
+        BuildSummary summary = BuildSummary.of(build, new EvaluationContext());
+
+        assertThat(summary.getResult(), is(Result.FAILURE));
+        assertThat(summary.getNumberOfAnnotations(Analysis.FINDBUGS, Priority.HIGH), is(0));
+        verifyZeroInteractions(result);
+    }
+
+    @Test
+    public void assertSummaryIsWrittenAsFixedSizeRecord() throws Exception {
+        AbstractBuild build = mockBuild(Result.UNSTABLE, mockResult(4, 5, 6));
+        when(build.getNumber()).thenReturn(42);
+        AbstractTestResultAction testResult = mock(AbstractTestResultAction.class);
+        when(testResult.getTotalCount()).thenReturn(100);
+        when(testResult.getFailCount()).thenReturn(3);
+        when(testResult.getSkipCount()).thenReturn(2);
+        when(build.getTestResultAction()).thenReturn(testResult);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BuildSummary.of(build, new EvaluationContext()).write(new DataOutputStream(bytes));
+        assertThat(bytes.size(), is(BuildSummary.SIZE));
+        BuildSummary summary = BuildSummary.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(summary.getNumber(), is(42));
+        assertThat(summary.getResult(), is(Result.UNSTABLE));
+        assertThat(summary.hasTestResult(), is(true));
+        assertThat(summary.getTotalCount(), is(100));
+        assertThat(summary.getFailCount(), is(3));
+        assertThat(summary.getSkipCount(), is(2));
+        assertThat(summary.getNumberOfAnnotations(Analysis.FINDBUGS, Priority.NORMAL), is(5));
+        assertThat(summary.hasResult(Analysis.FINDBUGS), is(true));
+        assertThat(summary.hasResult(Analysis.PMD), is(false));
+    }
+
+    @Test
+    public void assertBuildWithoutResultsIsWrittenAsEmpty() throws Exception {
+        AbstractBuild build = mock(AbstractBuild.class);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BuildSummary.of(build, new EvaluationContext()).write(new DataOutputStream(bytes));
+        BuildSummary summary = BuildSummary.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(summary.getResult(), is(nullValue()));
+        assertThat(summary.hasTestResult(), is(false));
+        assertThat(summary.getTotalCount(), is(0));
+    }
+
+    private static AbstractBuild mockBuild(Result result, FindBugsResult... findBugsResults) {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getResult()).thenReturn(result);
+        FindBugsResultAction[] actions = new FindBugsResultAction[findBugsResults.length];
+        for (int i = 0; i < findBugsResults.length; i++) {
+            actions[i] = new FindBugsResultAction(build, mock(HealthDescriptor.class), findBugsResults[i]);
+        }
+        when(build.getActions(FindBugsResultAction.class)).thenReturn(Arrays.asList(actions));
+        return build;
+    }
+
+    private static FindBugsResult mockResult(int high, int normal, int low) {
+        FindBugsResult result = mock(FindBugsResult.class);
+        when(result.getNumberOfAnnotations(Priority.HIGH)).thenReturn(high);
+        when(result.getNumberOfAnnotations(Priority.NORMAL)).thenReturn(normal);
+        when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(low);
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package hudson.plugins.cigame.model;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.cigame.rules.unittesting.UnitTestingRuleSet;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class EvaluationContextTest {
+
+    @Test
+    public void assertNullValuesAreRemembered() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        EvaluationContext context = new EvaluationContext();
+
+        assertThat(context.getPreviousBuild(build), is(nullValue()));
+        assertThat(context.getPreviousBuild(build), is(nullValue()));
+        assertThat(context.getTestResultAction(build), is(nullValue()));
+        assertThat(context.getTestResultAction(build), is(nullValue()));
+
+        verify(build, times(1)).getPreviousBuild();
+        verify(build, times(1)).getTestResultAction();
+    }
+
+    @Test
+    public void assertPreviousBuiltBuildSkipsBuildsWithoutResult() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        AbstractBuild notBuilt = mock(AbstractBuild.class);
+        AbstractBuild built = mock(AbstractBuild.class);
+        when(build.getPreviousBuild()).thenReturn(notBuilt);
+        when(notBuilt.getResult()).thenReturn(Result.NOT_BUILT);
+        when(notBuilt.getPreviousBuild()).thenReturn(built);
+        when(built.getResult()).thenReturn(Result.SUCCESS);
+        EvaluationContext context = new EvaluationContext();
+
+        assertThat(context.getPreviousBuiltBuild(build), is(built));
+        assertThat(context.getPreviousBuiltBuild(null), is(nullValue()));
+    }
+
+    @Test
+    public void assertHistoryIsInspectedOnceForAllUnitTestRules() {
+        AbstractBuild build = mockBuild(Result.SUCCESS, 10, 1);
+        AbstractBuild failedBuild = mockBuild(Result.UNSTABLE, 0, 0);
+        when(failedBuild.getTestResultAction()).thenReturn(null);
+        AbstractBuild previousBuild = mockBuild(Result.SUCCESS, 8, 2);
+        when(build.getPreviousBuild()).thenReturn(failedBuild);
+        when(failedBuild.getPreviousBuild()).thenReturn(previousBuild);
+        UnitTestingRuleSet ruleSet = new UnitTestingRuleSet();
+
+        ScoreCard card = new ScoreCard();
+        card.record(build, new RuleBook(ruleSet), null);
+
+        assertThat(ruleSet.getRules().size() > 1, is(true));
+        verify(build, times(1)).getPreviousBuild();
+        verify(build, times(1)).getTestResultAction();
+        verify(failedBuild, times(1)).getPreviousBuild();
+        verify(failedBuild, times(1)).getTestResultAction();
+        verify(previousBuild, times(1)).getTestResultAction();
+        verify(previousBuild, never()).getPreviousBuild();
+    }
+
+    @Test
+    public void assertActionsAreLookedUpOncePerType() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        AbstractTestResultAction action = mock(AbstractTestResultAction.class);
+        when(build.getActions(AbstractTestResultAction.class)).thenReturn(new ArrayList<AbstractTestResultAction>(
+                Arrays.asList(action)));
+        EvaluationContext context = new EvaluationContext();
+
+        assertThat(context.getActions(build, AbstractTestResultAction.class).size(), is(1));
+        assertThat(context.getActions(build, AbstractTestResultAction.class).size(), is(1));
+
+        verify(build, times(1)).getActions(AbstractTestResultAction.class);
+    }
+
+    @Test
+    public void assertTestResultOfScoredBuildIsNotLoaded() {
+        AbstractBuild build = mockBuild(Result.SUCCESS, 10, 1);
+        AbstractBuild previousBuild = mock(AbstractBuild.class);
+        when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
+        TestCountDigest.Holder holder = mock(TestCountDigest.Holder.class);
+        when(holder.getTestCountDigest()).thenReturn(new TestCountDigest(8, 2, 0));
+        when(previousBuild.getActions(TestCountDigest.Holder.class)).thenReturn(Arrays.asList(holder));
+        when(build.getPreviousBuild()).thenReturn(previousBuild);
+
+        ScoreCard card = new ScoreCard();
+        card.record(build, new RuleBook(new UnitTestingRuleSet()), null);
+
+        // three more passing tests
+        assertThat(card.getTotalPoints(), is(3d));
+        verify(previousBuild, never()).getTestResultAction();
+    }
+
+    private AbstractBuild mockBuild(Result result, int totalCount, int failCount) {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getResult()).thenReturn(result);
+        AbstractTestResultAction action = mock(AbstractTestResultAction.class);
+        when(action.getTotalCount()).thenReturn(totalCount);
+        when(action.getFailCount()).thenReturn(failCount);
+        when(build.getTestResultAction()).thenReturn(action);
+        return build;
+    }
+}
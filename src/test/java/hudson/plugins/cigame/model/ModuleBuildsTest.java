@@ -0,0 +1,133 @@
+package hudson.plugins.cigame.model;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import hudson.maven.MavenBuild;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class ModuleBuildsTest {
+
+    @Test
+    public void assertOtherBuildsHaveNoModuleBuilds() {
+        assertThat(ModuleBuilds.of(mock(AbstractBuild.class), new EvaluationContext()), is(nullValue()));
+    }
+
+    @Test
+    public void assertRuleIsEvaluatedForEveryModule() {
+        AbstractBuild previousOne = mock(AbstractBuild.class);
+        AbstractBuild buildOne = mock(AbstractBuild.class);
+        AbstractBuild buildTwo = mock(AbstractBuild.class);
+        ModuleBuilds moduleBuilds = new ModuleBuilds(Arrays.<AbstractBuild<?, ?>>asList(previousOne, null),
+                Arrays.<AbstractBuild<?, ?>>asList(buildOne, buildTwo));
+        SumRule rule = new SumRule();
+        rule.results.put(buildOne, 2);
+        rule.results.put(buildTwo, 3);
+
+        RuleResult<?> result = moduleBuilds.evaluate(rule, new EvaluationContext());
+
+        assertThat(result.getPoints(), is(5d));
+        assertThat(rule.previousBuilds.get(buildOne), is(previousOne));
+        assertThat(rule.previousBuilds.get(buildTwo), is(nullValue()));
+    }
+
+    @Test
+    public void assertNoModulesGiveEmptyResult() {
+        ModuleBuilds moduleBuilds = new ModuleBuilds(Collections.<AbstractBuild<?, ?>>emptyList(),
+                Collections.<AbstractBuild<?, ?>>emptyList());
+
+        assertThat(moduleBuilds.evaluate(new SumRule(), new EvaluationContext()), is((RuleResult) RuleResult.EMPTY_RESULT));
+    }
+
+    @Test
+    public void assertSubmittedResultsAreInModuleOrder() throws Exception {
+        List<AbstractBuild<?, ?>> builds = new ArrayList<AbstractBuild<?, ?>>();
+        SumRule rule = new SumRule();
+        for (int i = 0; i < 50; i++) {
+            AbstractBuild build = mock(AbstractBuild.class);
+            rule.results.put(build, i);
+            builds.add(build);
+        }
+        ModuleBuilds moduleBuilds = new ModuleBuilds(Arrays.asList(new AbstractBuild<?, ?>[50]), builds);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<TimedTask<RuleResult<Integer>>> futures = moduleBuilds.submit(rule, new EvaluationContext(), executor);
+
+            assertThat(futures.size(), is(50));
+            for (int i = 0; i < 50; i++) {
+                assertThat(futures.get(i).get().getAdditionalData(), is(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void assertModulesAreLookedUpOncePerRecord() throws Exception {
+        MavenBuild moduleBuild = mock(MavenBuild.class);
+        when(moduleBuild.getResult()).thenReturn(Result.SUCCESS);
+        Map<MavenModule, MavenBuild> modules = new LinkedHashMap<MavenModule, MavenBuild>();
+        // MavenModule is final and can not be mocked
+        modules.put(null, moduleBuild);
+        MavenModuleSetBuild build = mock(MavenModuleSetBuild.class);
+        when(build.getModuleLastBuilds()).thenReturn(modules);
+        SumRule rule = new SumRule();
+        rule.results.put(moduleBuild, 1);
+
+        ScoreCard card = new ScoreCard();
+        card.record(build, new RuleBook(new RuleSet("test", Arrays.<Rule>asList(rule, rule, rule))), null);
+
+        assertThat(card.getTotalPoints(), is(3d));
+        verify(build, times(1)).getModuleLastBuilds();
+        verify(moduleBuild, times(1)).getPreviousBuild();
+    }
+
+    /**
+     * Rule giving the points of the build, and summing them up when aggregated.
+     */
+    private static class SumRule implements AggregatableRule<Integer> {
+        private final Map<AbstractBuild<?, ?>, Integer> results =
+            Collections.synchronizedMap(new LinkedHashMap<AbstractBuild<?, ?>, Integer>());
+        private final Map<AbstractBuild<?, ?>, AbstractBuild<?, ?>> previousBuilds =
+            Collections.synchronizedMap(new LinkedHashMap<AbstractBuild<?, ?>, AbstractBuild<?, ?>>());
+
+        public RuleResult<?> aggregate(Collection<RuleResult<Integer>> results) {
+            double points = 0;
+            for (RuleResult<Integer> result : results) {
+                points += result.getPoints();
+            }
+            return new RuleResult<Void>(points, "sum");
+        }
+
+        public RuleResult<Integer> evaluate(AbstractBuild<?, ?> previousBuild, AbstractBuild<?, ?> build) {
+            previousBuilds.put(build, previousBuild);
+            Integer points = results.get(build);
+            return new RuleResult<Integer>(points, "points", points);
+        }
+
+        public RuleResult<Integer> evaluate(AbstractBuild<?, ?> build) {
+            throw new UnsupportedOperationException();
+        }
+
+        public String getName() {
+            return "sum";
+        }
+    }
+}
@@ -4,7 +4,13 @@ import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import hudson.model.AbstractBuild;
 
@@ -27,10 +33,165 @@ public class ScoreCardTest {
         assertThat(card.getScores().size(), is(0));
     }
     
+    @Test
+    public void assertRuleEvaluationsAreTimedWhenContextHasTimings() {
+        Rule rule = mock(Rule.class);
+        when(rule.evaluate(isA(AbstractBuild.class))).thenReturn(new RuleResult<Void>(1, "one"));
+        Rule otherRule = mock(Rule.class);
+        RuleTimings timings = new RuleTimings();
+        EvaluationContext context = new EvaluationContext();
+        context.setAttribute(RuleTimings.class, timings);
+
+        new ScoreCard().record(mock(AbstractBuild.class), new RuleBook(new RuleSet("test", Arrays.asList(rule))), context, null);
+
+        assertThat(timings.getCount(rule), is(1));
+        assertThat(timings.getTime(rule) > 0, is(true));
+        assertThat(timings.getCount(otherRule), is(0));
+        assertThat(timings.getTime(otherRule), is(0L));
+    }
+
     @Test
     public void assertEmptyRuleBookDoesNotThrowIllegalException() {
         ScoreCard scoreCard = new ScoreCard();
         scoreCard.record(mock(AbstractBuild.class), new RuleBook(), null);
         assertThat(scoreCard.getTotalPoints(), is(0d));
     }
+
+    @Test
+    public void assertParallelEvaluationRecordsScoresInSameOrder() throws Exception {
+        RuleBook ruleBook = new RuleBook();
+        for (int set = 0; set < 5; set++) {
+            List<Rule> rules = new ArrayList<Rule>();
+            for (int rule = 0; rule < 10; rule++) {
+                rules.add(createRule("rule" + rule, new RuleResult<Void>(rule % 3, "set" + set + " rule" + rule)));
+            }
+            ruleBook.addRuleSet(new RuleSet("set" + set, rules));
+        }
+        ScoreCard sequential = new ScoreCard();
+        sequential.record(mock(AbstractBuild.class), ruleBook, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ScoreCard parallel = new ScoreCard();
+            parallel.record(mock(AbstractBuild.class), ruleBook, new EvaluationContext(), executor, 10, TimeUnit.SECONDS, null);
+
+            assertThat(getDescriptions(parallel), is(getDescriptions(sequential)));
+            assertThat(parallel.getTotalPoints(), is(sequential.getTotalPoints()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void assertRuleThatTimesOutDoesNotScore() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Rule slowRule = new Rule() {
+            public RuleResult<?> evaluate(AbstractBuild<?, ?> build) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new RuleResult<Void>(10, "slow");
+            }
+            public String getName() {
+                return "slow";
+            }
+        };
+        Rule fastRule = createRule("fast", new RuleResult<Void>(1, "fast"));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ScoreCard card = new ScoreCard();
+            card.record(mock(AbstractBuild.class), new RuleBook(new RuleSet("test", Arrays.asList(slowRule, fastRule))), new EvaluationContext(),
+                    executor, 100, TimeUnit.MILLISECONDS, null);
+
+            assertThat(card.getScores().size(), is(1));
+            assertThat(card.getTotalPoints(), is(1d));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void assertTimeoutStartsWhenRuleStartsRunning() throws Exception {
+        List<Rule> slowRules = new ArrayList<Rule>();
+        for (int i = 0; i < 3; i++) {
+            slowRules.add(createSleepingRule(150));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            ScoreCard card = new ScoreCard();
+            card.record(mock(AbstractBuild.class), new RuleBook(new RuleSet("test", slowRules)), new EvaluationContext(),
+                    executor, 400, TimeUnit.MILLISECONDS, null);
+
+            // the last rule waits 300 ms for the thread, which does not count towards its timeout
+            assertThat(card.getScores().size(), is(3));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void assertRuleThatTimesOutFreesThreadForWaitingRules() throws Exception {
+        Rule hangingRule = createSleepingRule(TimeUnit.MINUTES.toMillis(10));
+        Rule fastRule = createRule("fast", new RuleResult<Void>(1, "fast"));
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            ScoreCard card = new ScoreCard();
+            card.record(mock(AbstractBuild.class), new RuleBook(new RuleSet("test", Arrays.asList(hangingRule, fastRule))), 
+                    new EvaluationContext(), executor, 100, TimeUnit.MILLISECONDS, null);
+
+            assertThat(card.getScores().size(), is(1));
+            assertThat(card.getTotalPoints(), is(1d));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = StackOverflowError.class)
+    public void assertErrorOfRuleIsRethrown() throws Exception {
+        Rule rule = mock(Rule.class);
+        when(rule.getName()).thenReturn("failing");
+        when(rule.evaluate(isA(AbstractBuild.class))).thenThrow(new StackOverflowError());
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            new ScoreCard().record(mock(AbstractBuild.class), new RuleBook(new RuleSet("test", Arrays.asList(rule))), new EvaluationContext(),
+                    executor, 10, TimeUnit.SECONDS, null);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Rule createSleepingRule(final long millis) {
+        return new Rule() {
+            public RuleResult<?> evaluate(AbstractBuild<?, ?> build) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                return new RuleResult<Void>(1, "slept");
+            }
+            public String getName() {
+                return "sleeping";
+            }
+        };
+    }
+
+    private Rule createRule(String name, RuleResult<?> result) {
+        Rule rule = mock(Rule.class);
+        when(rule.getName()).thenReturn(name);
+        doReturn(result).when(rule).evaluate(isA(AbstractBuild.class));
+        return rule;
+    }
+
+    private List<String> getDescriptions(ScoreCard card) {
+        List<String> descriptions = new ArrayList<String>();
+        for (Score score : card.getScores()) {
+            descriptions.add(score.getDescription());
+        }
+        return descriptions;
+    }
 }
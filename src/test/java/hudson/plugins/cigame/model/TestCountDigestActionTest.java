@@ -0,0 +1,74 @@
+package hudson.plugins.cigame.model;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import hudson.maven.MavenBuild;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.Action;
+import hudson.model.Result;
+import hudson.plugins.cigame.rules.unittesting.TestCaseRuleSet;
+import hudson.plugins.cigame.rules.unittesting.UnitTestingRuleSet;
+import hudson.plugins.cigame.util.HashedNames;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class TestCountDigestActionTest {
+
+    @Test
+    public void assertModuleBuildsAreGivenTheirDigest() throws Exception {
+        MavenBuild moduleBuild = mock(MavenBuild.class);
+        List<Action> actions = new ArrayList<Action>();
+        when(moduleBuild.getActions()).thenReturn(actions);
+        AbstractTestResultAction testResult = mock(AbstractTestResultAction.class);
+        when(testResult.getTotalCount()).thenReturn(10);
+        when(testResult.getFailCount()).thenReturn(2);
+        when(moduleBuild.getTestResultAction()).thenReturn(testResult);
+        MavenModuleSetBuild build = mock(MavenModuleSetBuild.class);
+        // MavenModule is final and can not be mocked
+        when(build.getModuleBuilds()).thenReturn(Collections.singletonMap((MavenModule) null, Arrays.asList(moduleBuild)));
+
+        TestCountDigestAction.addToModuleBuilds(build, new EvaluationContext());
+
+        assertThat(actions.size(), is(1));
+        TestCountDigest testCounts = ((TestCountDigestAction) actions.get(0)).getTestCountDigest();
+        assertThat(testCounts.getTotalCount(), is(10));
+        assertThat(testCounts.getFailCount(), is(2));
+        verify(moduleBuild).save();
+    }
+
+    @Test
+    public void assertTestResultsOfPreviousModuleBuildsAreNotLoaded() throws Exception {
+        MavenBuild previousModuleBuild = mock(MavenBuild.class);
+        when(previousModuleBuild.getResult()).thenReturn(Result.SUCCESS);
+        List digests = Arrays.asList(new TestCountDigestAction(new TestCountDigest(8, 0, 0, HashedNames.EMPTY)));
+        when(previousModuleBuild.getActions(TestCountDigest.Holder.class)).thenReturn(digests);
+        MavenBuild moduleBuild = mock(MavenBuild.class);
+        when(moduleBuild.getResult()).thenReturn(Result.SUCCESS);
+        when(moduleBuild.getPreviousBuild()).thenReturn(previousModuleBuild);
+        AbstractTestResultAction testResult = mock(AbstractTestResultAction.class);
+        when(testResult.getTotalCount()).thenReturn(10);
+        when(moduleBuild.getTestResultAction()).thenReturn(testResult);
+        MavenModuleSetBuild build = mock(MavenModuleSetBuild.class);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(build.getModuleLastBuilds()).thenReturn(Collections.singletonMap((MavenModule) null, moduleBuild));
+
+        RuleBook ruleBook = new RuleBook(new UnitTestingRuleSet());
+        ruleBook.addRuleSet(new TestCaseRuleSet());
+        ScoreCard card = new ScoreCard();
+        card.record(build, ruleBook, new EvaluationContext(), null);
+
+        // two more passing tests
+        assertThat(card.getTotalPoints(), is(2d));
+        verify(previousModuleBuild, never()).getTestResultAction();
+    }
+}
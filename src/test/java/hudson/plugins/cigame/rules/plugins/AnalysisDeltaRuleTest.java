@@ -0,0 +1,113 @@
+package hudson.plugins.cigame.rules.plugins;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.model.Result;
+import hudson.plugins.analysis.core.BuildResult;
+import hudson.plugins.analysis.core.HealthDescriptor;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.checkstyle.CheckStyleResult;
+import hudson.plugins.checkstyle.CheckStyleResultAction;
+import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.ScoreCard;
+import hudson.plugins.cigame.rules.plugins.checkstyle.CheckstyleRuleSet;
+import hudson.plugins.cigame.rules.plugins.findbugs.FindBugsRuleSet;
+import hudson.plugins.cigame.rules.plugins.opentasks.OpenTasksRuleSet;
+import hudson.plugins.cigame.rules.plugins.warnings.WarningsRuleSet;
+import hudson.plugins.findbugs.FindBugsResult;
+import hudson.plugins.findbugs.FindBugsResultAction;
+import hudson.plugins.tasks.TasksResult;
+import hudson.plugins.tasks.TasksResultAction;
+import hudson.plugins.warnings.WarningsResult;
+import hudson.plugins.warnings.WarningsResultAction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class AnalysisDeltaRuleTest {
+
+    /**
+     * Scoring a build with the 13 rules of the four rule sets used to read the results
+     * of a build once per rule; now every result is read once per priority.
+     */
+    @Test
+    public void assertResultsAreReadOncePerBuildForAllAnalysisRules() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        AbstractBuild previousBuild = mock(AbstractBuild.class);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(build.getPreviousBuild()).thenReturn(previousBuild);
+        when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
+        HealthDescriptor healthDescriptor = mock(HealthDescriptor.class);
+
+        CheckStyleResult checkstyle = mockResult(CheckStyleResult.class, 0, 3, 0);
+        CheckStyleResult previousCheckstyle = mockResult(CheckStyleResult.class, 0, 1, 0);
+        addAction(build, CheckStyleResultAction.class,
+                new CheckStyleResultAction(build, healthDescriptor, checkstyle));
+        addAction(previousBuild, CheckStyleResultAction.class,
+                new CheckStyleResultAction(previousBuild, healthDescriptor, previousCheckstyle));
+        WarningsResult warnings = mockResult(WarningsResult.class, 1, 0, 0);
+        WarningsResult previousWarnings = mockResult(WarningsResult.class, 2, 0, 0);
+        addAction(build, WarningsResultAction.class,
+                new WarningsResultAction(build, healthDescriptor, warnings));
+        addAction(previousBuild, WarningsResultAction.class,
+                new WarningsResultAction(previousBuild, healthDescriptor, previousWarnings));
+        TasksResult tasks = mockResult(TasksResult.class, 1, 0, 4);
+        TasksResult previousTasks = mockResult(TasksResult.class, 0, 0, 4);
+        addAction(build, TasksResultAction.class,
+                new TasksResultAction(build, healthDescriptor, tasks));
+        addAction(previousBuild, TasksResultAction.class,
+                new TasksResultAction(previousBuild, healthDescriptor, previousTasks));
+        FindBugsResult findBugs = mockResult(FindBugsResult.class, 0, 0, 2);
+        FindBugsResult previousFindBugs = mockResult(FindBugsResult.class, 0, 0, 1);
+        addAction(build, FindBugsResultAction.class,
+                new FindBugsResultAction(build, healthDescriptor, findBugs));
+        addAction(previousBuild, FindBugsResultAction.class,
+                new FindBugsResultAction(previousBuild, healthDescriptor, previousFindBugs));
+
+        RuleBook ruleBook = new RuleBook(new CheckstyleRuleSet());
+        ruleBook.addRuleSet(new WarningsRuleSet());
+        ruleBook.addRuleSet(new OpenTasksRuleSet());
+        ruleBook.addRuleSet(new FindBugsRuleSet());
+        ScoreCard card = new ScoreCard();
+        card.record(build, ruleBook, null);
+
+        // checkstyle -1 * 2, warnings +1, tasks HIGH -5, findbugs LOW -1
+        assertThat(card.getTotalPoints(), is(-7d));
+        List<BuildResult> results = new ArrayList<BuildResult>();
+        results.addAll(Arrays.asList(checkstyle, previousCheckstyle, warnings, previousWarnings));
+        results.addAll(Arrays.asList(tasks, previousTasks, findBugs, previousFindBugs));
+        for (BuildResult result : results) {
+            verify(result, times(1)).hasError();
+            verify(result, never()).getNumberOfAnnotations();
+            for (Priority priority : Priority.values()) {
+                verify(result, times(1)).getNumberOfAnnotations(priority);
+            }
+        }
+        for (AbstractBuild b : Arrays.asList(build, previousBuild)) {
+            verify(b, times(1)).getActions(CheckStyleResultAction.class);
+            verify(b, times(1)).getActions(WarningsResultAction.class);
+            verify(b, times(1)).getActions(TasksResultAction.class);
+            verify(b, times(1)).getActions(FindBugsResultAction.class);
+        }
+    }
+
+    private static <T extends Action> void addAction(AbstractBuild build, Class<T> type, T action) {
+        when(build.getActions(type)).thenReturn(Arrays.asList(action));
+    }
+
+    private static <T extends BuildResult> T mockResult(Class<T> type, int high, int normal, int low) {
+        T result = mock(type);
+        when(result.getNumberOfAnnotations(Priority.HIGH)).thenReturn(high);
+        when(result.getNumberOfAnnotations(Priority.NORMAL)).thenReturn(normal);
+        when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(low);
+        return result;
+    }
+}
@@ -9,6 +9,7 @@ import hudson.maven.MavenBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
 import hudson.plugins.analysis.core.HealthDescriptor;
+import hudson.plugins.analysis.util.model.Priority;
 import hudson.plugins.checkstyle.CheckStyleResult;
 import hudson.plugins.checkstyle.CheckStyleResultAction;
 import hudson.plugins.cigame.model.RuleResult;
@@ -26,27 +27,29 @@ public class DefaultCheckstyleRuleTest {
 	public void assertNewWarningsGiveNegativePoints() {
 		AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.SUCCESS);
-        addCheckstyleWarnings(build, 3);
+        CheckStyleResult result = addCheckstyleWarnings(build, 1, 3, 5);
         
         AbstractBuild previousBuild = mock(AbstractBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addCheckstyleWarnings(previousBuild, 1);
+        CheckStyleResult previousResult = addCheckstyleWarnings(previousBuild, 2, 1, 3);
         
         DefaultCheckstyleRule rule = new DefaultCheckstyleRule(-2, 2);
-        RuleResult ruleResult = rule.evaluate(previousBuild, build);
+        RuleResult<Integer> ruleResult = rule.evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
-        assertThat("Points should be -4", ruleResult.getPoints(), is(-4d));
+        // the warnings of all priorities are summed
+        assertThat("Points should be -6", ruleResult.getPoints(), is(-6d));
+        assertThat(ruleResult.getAdditionalData(), is(result.getNumberOfAnnotations() - previousResult.getNumberOfAnnotations()));
 	}
 	
 	@Test
 	public void assertRemovedWarningsGivePositivePoints() {
 		AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.SUCCESS);
-        addCheckstyleWarnings(build, 3);
+        addCheckstyleWarnings(build, 1, 1, 1);
         
         AbstractBuild previousBuild = mock(AbstractBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addCheckstyleWarnings(previousBuild, 12);
+        addCheckstyleWarnings(previousBuild, 2, 4, 6);
         
         DefaultCheckstyleRule rule = new DefaultCheckstyleRule(-2, 2);
         RuleResult ruleResult = rule.evaluate(previousBuild, build);
@@ -58,11 +61,11 @@ public class DefaultCheckstyleRuleTest {
     public void assertFailedBuildsIsWorthZeroPoints() {
         AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.FAILURE);
-        addCheckstyleWarnings(build, 1);
+        addCheckstyleWarnings(build, 1, 2, 3);
         
         AbstractBuild previousBuild = mock(AbstractBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addCheckstyleWarnings(previousBuild, 0);
+        addCheckstyleWarnings(previousBuild, 0, 0, 0);
 
         DefaultCheckstyleRule rule = new DefaultCheckstyleRule(-100, 100);
         RuleResult ruleResult = rule.evaluate(previousBuild, build);
@@ -75,7 +78,7 @@ public class DefaultCheckstyleRuleTest {
         AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.FAILURE);
         when(build.getPreviousBuild()).thenReturn(null);
-        addCheckstyleWarnings(build, 3);
+        addCheckstyleWarnings(build, 1, 2, 3);
 
         DefaultCheckstyleRule rule = new DefaultCheckstyleRule(-100, 100);
         RuleResult ruleResult = rule.evaluate(null, build);
@@ -99,8 +102,8 @@ public class DefaultCheckstyleRuleTest {
         when(previousBuild.getAction(CheckStyleResultAction.class)).thenReturn(previousAction);
         when(previousBuild.getActions(CheckStyleResultAction.class)).thenReturn(new ArrayList<CheckStyleResultAction>());
 
-        when(result.getNumberOfAnnotations()).thenReturn(10);
-        when(previosResult.getNumberOfAnnotations()).thenReturn(15);
+        stubWarnings(result, 2, 3, 5);
+        stubWarnings(previosResult, 3, 5, 7);
 
         RuleResult ruleResult = new DefaultCheckstyleRule(-100, 100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
@@ -123,8 +126,9 @@ public class DefaultCheckstyleRuleTest {
         when(previousBuild.getAction(CheckStyleResultAction.class)).thenReturn(previousAction);
         when(previousBuild.getActions(CheckStyleResultAction.class)).thenReturn(Arrays.asList(previousAction));
 
-        when(result.getNumberOfAnnotations()).thenReturn(10);
-        when(previosResult.getNumberOfAnnotations()).thenReturn(15);
+ 
+        stubWarnings(result, 2, 3, 5);
+        stubWarnings(previosResult, 3, 5, 7);
         
         RuleResult ruleResult = new DefaultCheckstyleRule(-100, 100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
@@ -135,28 +139,36 @@ public class DefaultCheckstyleRuleTest {
     public void assertNewMavenModuleGivesNegativePoints() {
     	AbstractBuild build = mock(MavenBuild.class); 
         when(build.getResult()).thenReturn(Result.SUCCESS);
-        addCheckstyleWarnings(build, 3);
+        addCheckstyleWarnings(build, 1, 2, 3);
         
         RuleResult ruleResult = new DefaultCheckstyleRule(-1, 1).evaluate(null, build);
         assertNotNull("Rule result must not be null", ruleResult);
-        assertThat("Points should be -3", ruleResult.getPoints(), is(-3d));
+        assertThat("Points should be -6", ruleResult.getPoints(), is(-6d));
     }
     
     @Test
     public void assertRemovedMavenModuleGivesPositivePoints() {
     	AbstractBuild previousBuild = mock(MavenBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addCheckstyleWarnings(previousBuild, 3);
+        addCheckstyleWarnings(previousBuild, 1, 2, 3);
         
         RuleResult ruleResult = new DefaultCheckstyleRule(-1, 1).evaluate(previousBuild, null);
         assertNotNull("Rule result must not be null", ruleResult);
-        assertThat("Points should be 3", ruleResult.getPoints(), is(3d));
+        assertThat("Points should be 6", ruleResult.getPoints(), is(6d));
     }
     
-    private static void addCheckstyleWarnings(AbstractBuild<?, ?> build, int numberOfWarnings) {
+    private static CheckStyleResult addCheckstyleWarnings(AbstractBuild<?, ?> build, int high, int normal, int low) {
     	CheckStyleResult result = mock(CheckStyleResult.class);
         CheckStyleResultAction action = new CheckStyleResultAction(build, mock(HealthDescriptor.class), result);
         when(build.getActions(CheckStyleResultAction.class)).thenReturn(Arrays.asList(action));
-        when(result.getNumberOfAnnotations()).thenReturn(numberOfWarnings);
+        stubWarnings(result, high, normal, low);
+        return result;
+    }
+
+    private static void stubWarnings(CheckStyleResult result, int high, int normal, int low) {
+        when(result.getNumberOfAnnotations(Priority.HIGH)).thenReturn(high);
+        when(result.getNumberOfAnnotations(Priority.NORMAL)).thenReturn(normal);
+        when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(low);
+        when(result.getNumberOfAnnotations()).thenReturn(high + normal + low);
     }
 }
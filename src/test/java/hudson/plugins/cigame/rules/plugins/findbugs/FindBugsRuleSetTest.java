@@ -0,0 +1,59 @@
+package hudson.plugins.cigame.rules.plugins.findbugs;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.analysis.core.HealthDescriptor;
+import hudson.plugins.analysis.util.model.Priority;
+import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.ScoreCard;
+import hudson.plugins.findbugs.FindBugsResult;
+import hudson.plugins.findbugs.FindBugsResultAction;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class FindBugsRuleSetTest {
+
+    @Test
+    public void assertResultsAreReadOnceForAllFindBugsRules() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        AbstractBuild previousBuild = mock(AbstractBuild.class);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(build.getPreviousBuild()).thenReturn(previousBuild);
+        when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
+        FindBugsResult result = mockResult(1, 4, 6);
+        FindBugsResult previousResult = mockResult(2, 2, 2);
+        FindBugsResultAction action = new FindBugsResultAction(build, mock(HealthDescriptor.class), result);
+        FindBugsResultAction previousAction = new FindBugsResultAction(previousBuild, mock(HealthDescriptor.class), previousResult);
+        when(build.getActions(FindBugsResultAction.class)).thenReturn(Arrays.asList(action));
+        when(previousBuild.getActions(FindBugsResultAction.class)).thenReturn(Arrays.asList(previousAction));
+
+        ScoreCard card = new ScoreCard();
+        card.record(build, new RuleBook(new FindBugsRuleSet()), null);
+
+        // fixed HIGH +5, new NORMAL -3 * 2, new LOW -1 * 4
+        assertThat(card.getTotalPoints(), is(-5d));
+        for (FindBugsResult r : Arrays.asList(result, previousResult)) {
+            verify(r, times(1)).hasError();
+            for (Priority priority : Priority.values()) {
+                verify(r, times(1)).getNumberOfAnnotations(priority);
+            }
+        }
+        verify(build, times(1)).getActions(FindBugsResultAction.class);
+        verify(previousBuild, times(1)).getActions(FindBugsResultAction.class);
+    }
+
+    private static FindBugsResult mockResult(int high, int normal, int low) {
+        FindBugsResult result = mock(FindBugsResult.class);
+        when(result.getNumberOfAnnotations(Priority.HIGH)).thenReturn(high);
+        when(result.getNumberOfAnnotations(Priority.NORMAL)).thenReturn(normal);
+        when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(low);
+        return result;
+    }
+}
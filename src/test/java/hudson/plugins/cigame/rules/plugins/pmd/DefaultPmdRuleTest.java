@@ -5,6 +5,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import hudson.maven.MavenBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
 import hudson.plugins.analysis.core.HealthDescriptor;
@@ -26,7 +27,7 @@ public class DefaultPmdRuleTest {
         when(build.getResult()).thenReturn(Result.FAILURE);
 
         DefaultPmdRule rule = new DefaultPmdRule(Priority.HIGH, 100, -100);
-        RuleResult ruleResult = rule.evaluate(build);
+        RuleResult ruleResult = rule.evaluate(null, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be zero", ruleResult.getPoints(), is((double) 0));
     }
@@ -38,7 +39,7 @@ public class DefaultPmdRuleTest {
         when(build.getPreviousBuild()).thenReturn(null);
 
         DefaultPmdRule rule = new DefaultPmdRule(Priority.HIGH, 100, -100);
-        RuleResult ruleResult = rule.evaluate(build);
+        RuleResult ruleResult = rule.evaluate(null, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be zero", ruleResult.getPoints(), is((double) 0));
     }
@@ -62,7 +63,7 @@ public class DefaultPmdRuleTest {
         when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(10);
         when(previosResult.getNumberOfAnnotations(Priority.LOW)).thenReturn(5);
 
-        RuleResult ruleResult = new DefaultPmdRule(Priority.LOW, 100, -100).evaluate(build);
+        RuleResult ruleResult = new DefaultPmdRule(Priority.LOW, 100, -100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be 0", ruleResult.getPoints(), is(0d));
     }
@@ -87,8 +88,49 @@ public class DefaultPmdRuleTest {
         when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(10);
         when(previosResult.getNumberOfAnnotations(Priority.LOW)).thenReturn(5);
 
-        RuleResult ruleResult = new DefaultPmdRule(Priority.LOW, 100, -100).evaluate(build);
+        RuleResult ruleResult = new DefaultPmdRule(Priority.LOW, 100, -100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be 0", ruleResult.getPoints(), is(0d));
     }
+
+    @Test
+    public void assertIfPreviousBuildHasNoResultResultIsWorthZeroPoints() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        AbstractBuild previousBuild = mock(AbstractBuild.class);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
+        addPmdWarnings(build, 10);
+
+        RuleResult ruleResult = new DefaultPmdRule(Priority.LOW, 100, -100).evaluate(previousBuild, build);
+        assertNotNull("Rule result must not be null", ruleResult);
+        assertThat("Points should be 0", ruleResult.getPoints(), is(0d));
+        addPmdWarnings(previousBuild, 5);
+        assertThat("Points should be 500", new DefaultPmdRule(Priority.LOW, 100, -100).evaluate(previousBuild, build).getPoints(), is(500d));
+    }
+
+    @Test
+    public void assertModuleResultsAreAggregated() {
+        AbstractBuild newModule = mock(MavenBuild.class);
+        when(newModule.getResult()).thenReturn(Result.SUCCESS);
+        addPmdWarnings(newModule, 3);
+        AbstractBuild previousModule = mock(MavenBuild.class);
+        when(previousModule.getResult()).thenReturn(Result.SUCCESS);
+        addPmdWarnings(previousModule, 5);
+        AbstractBuild module = mock(MavenBuild.class);
+        when(module.getResult()).thenReturn(Result.SUCCESS);
+        addPmdWarnings(module, 1);
+
+        DefaultPmdRule rule = new DefaultPmdRule(Priority.LOW, -1, 1);
+        RuleResult<?> ruleResult = rule.aggregate(Arrays.asList(
+                rule.evaluate(null, newModule), rule.evaluate(previousModule, module)));
+        // 3 new warnings in the new module, 4 fixed in the other
+        assertThat("Points should be 1", ruleResult.getPoints(), is(1d));
+    }
+
+    private static void addPmdWarnings(AbstractBuild build, int numberOfWarnings) {
+        PmdResult result = mock(PmdResult.class);
+        PmdResultAction action = new PmdResultAction(build, mock(HealthDescriptor.class), result);
+        when(build.getActions(PmdResultAction.class)).thenReturn(Arrays.asList(action));
+        when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(numberOfWarnings);
+    }
 }
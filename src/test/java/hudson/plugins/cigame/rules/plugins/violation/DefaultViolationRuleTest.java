@@ -9,6 +9,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import hudson.maven.MavenBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
 import hudson.plugins.cigame.model.RuleResult;
@@ -28,7 +29,7 @@ public class DefaultViolationRuleTest {
         when(build.getResult()).thenReturn(Result.FAILURE);
 
         DefaultViolationRule rule = new DefaultViolationRule("pmd", "PMD Violations", 100, -100);
-        RuleResult ruleResult = rule.evaluate(build);
+        RuleResult ruleResult = rule.evaluate(null, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be zero", ruleResult.getPoints(), is((double) 0));
     }
@@ -51,7 +52,7 @@ public class DefaultViolationRuleTest {
         when(build.getActions(ViolationsBuildAction.class)).thenReturn(actionList);
 
         DefaultViolationRule rule = new DefaultViolationRule("pmd", "PMD Violations", 100, -100);
-        RuleResult ruleResult = rule.evaluate(build);
+        RuleResult ruleResult = rule.evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be zero", ruleResult.getPoints(), is((double) 0));
     }
@@ -63,7 +64,7 @@ public class DefaultViolationRuleTest {
         when(build.getPreviousBuild()).thenReturn(null);
         
         DefaultViolationRule rule = new DefaultViolationRule("pmd", "PMD Violations", 100, -100);
-        RuleResult ruleResult = rule.evaluate(build);
+        RuleResult ruleResult = rule.evaluate(null, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be zero", ruleResult.getPoints(), is((double) 0));
     }
@@ -86,7 +87,7 @@ public class DefaultViolationRuleTest {
         when(build.getActions(ViolationsBuildAction.class)).thenReturn(Arrays.asList(currentAction));
         when(currentAction.getReport()).thenReturn(currentReport);
 
-        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(build);
+        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be 5000", ruleResult.getPoints(), is(5000d));
     }
@@ -105,7 +106,7 @@ public class DefaultViolationRuleTest {
         ViolationsReport currentReport = createViolationsReportStub("pmd", 100, previousReport);
         when(action.getReport()).thenReturn(currentReport);
 
-        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(build);
+        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be 0", ruleResult.getPoints(), is(0d));
     }
@@ -129,7 +130,7 @@ public class DefaultViolationRuleTest {
         when(build.getActions(ViolationsBuildAction.class)).thenReturn(Arrays.asList(currentAction));
         when(currentAction.getReport()).thenReturn(currentReport);
 
-        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(build);
+        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be 0", ruleResult.getPoints(), is(0d));
     }
@@ -154,11 +155,37 @@ public class DefaultViolationRuleTest {
         when(build.getActions(ViolationsBuildAction.class)).thenReturn(Arrays.asList(currentAction));
         when(currentAction.getReport()).thenReturn(currentReport);
 
-        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(build);
+        RuleResult ruleResult = new DefaultViolationRule("pmd", "PMD violations", 100, -100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
         assertThat("Points should be 0", ruleResult.getPoints(), is(0d));
     }
 
+    @Test
+    public void assertModuleResultsAreAggregated() {
+        AbstractBuild newModule = mock(MavenBuild.class);
+        when(newModule.getResult()).thenReturn(Result.SUCCESS);
+        addViolations(newModule, "pmd", 3);
+        AbstractBuild previousModule = mock(MavenBuild.class);
+        when(previousModule.getResult()).thenReturn(Result.SUCCESS);
+        addViolations(previousModule, "pmd", 5);
+        AbstractBuild module = mock(MavenBuild.class);
+        when(module.getResult()).thenReturn(Result.SUCCESS);
+        addViolations(module, "pmd", 1);
+
+        DefaultViolationRule rule = new DefaultViolationRule("pmd", "PMD violations", -1, 1);
+        RuleResult<?> ruleResult = rule.aggregate(Arrays.asList(
+                rule.evaluate(null, newModule), rule.evaluate(previousModule, module)));
+        // 3 new violations in the new module, 4 fixed in the other
+        assertThat("Points should be 1", ruleResult.getPoints(), is(1d));
+    }
+
+    private void addViolations(AbstractBuild build, String type, int number) {
+        ViolationsBuildAction action = mock(ViolationsBuildAction.class);
+        ViolationsReport report = createViolationsReportStub(type, number, null);
+        when(build.getActions(ViolationsBuildAction.class)).thenReturn(Arrays.asList(action));
+        when(action.getReport()).thenReturn(report);
+    }
+
     /**
      * Creates a violation report stub with one TypeReport containing the method params
      * @param type type in the report
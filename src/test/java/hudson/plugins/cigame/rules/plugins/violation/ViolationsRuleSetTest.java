@@ -0,0 +1,69 @@
+package hudson.plugins.cigame.rules.plugins.violation;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.ScoreCard;
+import hudson.plugins.violations.TypeSummary;
+import hudson.plugins.violations.ViolationsBuildAction;
+import hudson.plugins.violations.ViolationsReport;
+import hudson.plugins.violations.ViolationsReport.TypeReport;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class ViolationsRuleSetTest {
+
+    @Test
+    public void assertReportsAreReadOnceForAllViolationRules() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        AbstractBuild previousBuild = mock(AbstractBuild.class);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(build.getPreviousBuild()).thenReturn(previousBuild);
+        when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
+        ViolationsReport report = createViolationsReportStub(12, 1);
+        ViolationsReport previousReport = createViolationsReportStub(10, 2);
+        addViolationsAction(build, report);
+        addViolationsAction(previousBuild, previousReport);
+
+        ScoreCard card = new ScoreCard();
+        card.record(build, new RuleBook(new ViolationsRuleSet()), null);
+
+        // 2 new pmd violations -1 each, 1 fixed cpd violation +5
+        assertThat(card.getTotalPoints(), is(3d));
+        for (ViolationsReport r : Arrays.asList(report, previousReport)) {
+            verify(r, times(1)).getTypeReports();
+            verify(r, times(1)).typeCount("pmd");
+            verify(r, times(1)).typeCount("cpd");
+        }
+        verify(build, times(1)).getActions(ViolationsBuildAction.class);
+        verify(previousBuild, times(1)).getActions(ViolationsBuildAction.class);
+    }
+
+    private static void addViolationsAction(AbstractBuild build, ViolationsReport report) {
+        ViolationsBuildAction action = mock(ViolationsBuildAction.class);
+        when(action.getReport()).thenReturn(report);
+        when(build.getActions(ViolationsBuildAction.class)).thenReturn(Arrays.asList(action));
+    }
+
+    private static ViolationsReport createViolationsReportStub(int pmdCount, int cpdCount) {
+        ViolationsReport report = mock(ViolationsReport.class);
+        Map<String, TypeReport> typeReports = new HashMap<String, TypeReport>();
+        typeReports.put("pmd", report.new TypeReport("pmd", null, pmdCount));
+        typeReports.put("cpd", report.new TypeReport("cpd", null, cpdCount));
+        when(report.getTypeReports()).thenReturn(typeReports);
+        when(report.getTypeSummary("pmd")).thenReturn(new TypeSummary());
+        when(report.getTypeSummary("cpd")).thenReturn(new TypeSummary());
+        when(report.typeCount("pmd")).thenReturn(pmdCount);
+        when(report.typeCount("cpd")).thenReturn(cpdCount);
+        return report;
+    }
+}
@@ -10,6 +10,7 @@ import hudson.maven.MavenBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
 import hudson.plugins.analysis.core.HealthDescriptor;
+import hudson.plugins.analysis.util.model.Priority;
 import hudson.plugins.cigame.model.RuleResult;
 import hudson.plugins.warnings.WarningsResult;
 import hudson.plugins.warnings.WarningsResultAction;
@@ -25,27 +26,29 @@ public class DefaultWarningsRuleTest {
 	public void assertNewWarningsGiveNegativePoints() {
 		AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.SUCCESS);
-        addWarnings(build, 3);
+        WarningsResult result = addWarnings(build, 1, 3, 5);
         
         AbstractBuild previousBuild = mock(AbstractBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addWarnings(previousBuild, 1);
+        WarningsResult previousResult = addWarnings(previousBuild, 2, 1, 3);
         
         DefaultWarningsRule rule = new DefaultWarningsRule(-2, 2);
-        RuleResult ruleResult = rule.evaluate(previousBuild, build);
+        RuleResult<Integer> ruleResult = rule.evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
-        assertThat("Points should be -4", ruleResult.getPoints(), is(-4d));
+        // the warnings of all priorities are summed
+        assertThat("Points should be -6", ruleResult.getPoints(), is(-6d));
+        assertThat(ruleResult.getAdditionalData(), is(result.getNumberOfAnnotations() - previousResult.getNumberOfAnnotations()));
 	}
 	
 	@Test
 	public void assertRemovedWarningsGivePositivePoints() {
 		AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.SUCCESS);
-        addWarnings(build, 3);
+        addWarnings(build, 1, 1, 1);
         
         AbstractBuild previousBuild = mock(AbstractBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addWarnings(previousBuild, 12);
+        addWarnings(previousBuild, 2, 4, 6);
         
         DefaultWarningsRule rule = new DefaultWarningsRule(-2, 2);
         RuleResult ruleResult = rule.evaluate(previousBuild, build);
@@ -57,11 +60,11 @@ public class DefaultWarningsRuleTest {
     public void assertFailedBuildsIsWorthZeroPoints() {
         AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.FAILURE);
-        addWarnings(build, 15);
+        addWarnings(build, 3, 5, 7);
         
         AbstractBuild previousBuild = mock(AbstractBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addWarnings(previousBuild, 10);
+        addWarnings(previousBuild, 2, 3, 5);
 
         DefaultWarningsRule rule = new DefaultWarningsRule(-100, 100);
         RuleResult ruleResult = rule.evaluate(previousBuild, build);
@@ -74,7 +77,7 @@ public class DefaultWarningsRuleTest {
         AbstractBuild build = mock(AbstractBuild.class); 
         when(build.getResult()).thenReturn(Result.SUCCESS);
         when(build.getPreviousBuild()).thenReturn(null);
-        addWarnings(build, 7);
+        addWarnings(build, 1, 2, 4);
 
         DefaultWarningsRule rule = new DefaultWarningsRule(-100, 100);
         RuleResult ruleResult = rule.evaluate(null, build);
@@ -96,8 +99,8 @@ public class DefaultWarningsRuleTest {
         when(build.getActions(WarningsResultAction.class)).thenReturn(Arrays.asList(action));
         when(previousBuild.getActions(WarningsResultAction.class)).thenReturn(Arrays.asList(previousAction));
         
-        when(result.getNumberOfAnnotations()).thenReturn(15);
-        when(previosResult.getNumberOfAnnotations()).thenReturn(10);
+        stubWarnings(result, 3, 5, 7);
+        stubWarnings(previosResult, 2, 3, 5);
 
         RuleResult ruleResult = new DefaultWarningsRule(-100, 100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
@@ -119,8 +122,8 @@ public class DefaultWarningsRuleTest {
         when(build.getActions(WarningsResultAction.class)).thenReturn(Arrays.asList(action));
         when(previousBuild.getActions(WarningsResultAction.class)).thenReturn(Arrays.asList(previousAction));
         
-        when(result.getNumberOfAnnotations()).thenReturn(15);
-        when(previosResult.getNumberOfAnnotations()).thenReturn(10);
+        stubWarnings(result, 3, 5, 7);
+        stubWarnings(previosResult, 2, 3, 5);
 
         RuleResult ruleResult = new DefaultWarningsRule(-100, 100).evaluate(previousBuild, build);
         assertNotNull("Rule result must not be null", ruleResult);
@@ -131,29 +134,37 @@ public class DefaultWarningsRuleTest {
     public void assertNewMavenModuleGivesNegativePoints() {
     	AbstractBuild build = mock(MavenBuild.class); 
         when(build.getResult()).thenReturn(Result.SUCCESS);
-        addWarnings(build, 3);
+        addWarnings(build, 1, 2, 3);
         
         RuleResult ruleResult = new DefaultWarningsRule(-1, 1).evaluate(null, build);
         assertNotNull("Rule result must not be null", ruleResult);
-        assertThat("Points should be -3", ruleResult.getPoints(), is(-3d));
+        assertThat("Points should be -6", ruleResult.getPoints(), is(-6d));
     }
     
     @Test
     public void assertRemovedMavenModuleGivesPositivePoints() {
     	AbstractBuild previousBuild = mock(MavenBuild.class); 
         when(previousBuild.getResult()).thenReturn(Result.SUCCESS);
-        addWarnings(previousBuild, 3);
+        addWarnings(previousBuild, 1, 2, 3);
         
         RuleResult ruleResult = new DefaultWarningsRule(-1, 1).evaluate(previousBuild, null);
         assertNotNull("Rule result must not be null", ruleResult);
-        assertThat("Points should be 3", ruleResult.getPoints(), is(3d));
+        assertThat("Points should be 6", ruleResult.getPoints(), is(6d));
     }
     
-    private static void addWarnings(AbstractBuild build, int numberOfWarnings) {
+    private static WarningsResult addWarnings(AbstractBuild build, int high, int normal, int low) {
     	WarningsResult result = mock(WarningsResult.class);
         WarningsResultAction action = new WarningsResultAction(build, mock(HealthDescriptor.class), result);
         when(build.getActions(WarningsResultAction.class)).thenReturn(Arrays.asList(action));
         
-        when(result.getNumberOfAnnotations()).thenReturn(numberOfWarnings);
+        stubWarnings(result, high, normal, low);
+        return result;
+    }
+
+    private static void stubWarnings(WarningsResult result, int high, int normal, int low) {
+        when(result.getNumberOfAnnotations(Priority.HIGH)).thenReturn(high);
+        when(result.getNumberOfAnnotations(Priority.NORMAL)).thenReturn(normal);
+        when(result.getNumberOfAnnotations(Priority.LOW)).thenReturn(low);
+        when(result.getNumberOfAnnotations()).thenReturn(high + normal + low);
     }
 }
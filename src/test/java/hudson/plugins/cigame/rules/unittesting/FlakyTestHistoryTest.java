@@ -0,0 +1,145 @@
+package hudson.plugins.cigame.rules.unittesting;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.cigame.model.EvaluationContext;
+import hudson.plugins.cigame.model.RuleResult;
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.util.HashedNames;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("unchecked")
+public class FlakyTestHistoryTest {
+
+    private static final long[] ONE = HashedNames.of(Arrays.asList("a.Test.one"));
+    private static final long[] TWO = HashedNames.of(Arrays.asList("a.Test.two"));
+    private static final long[] ONE_AND_TWO = HashedNames.of(Arrays.asList("a.Test.one", "a.Test.two"));
+
+    @org.junit.Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void assertTestFlippingMoreThanThresholdIsFlaky() throws Exception {
+        FlakyTestHistory history = newHistory();
+        for (int build = 1; build <= FlakyTestHistory.FLIP_THRESHOLD; build++) {
+            history.update(build, (build % 2 == 1) ? ONE_AND_TWO : HashedNames.EMPTY);
+            assertThat(history.getFlakyTests().length, is(0));
+        }
+        history.update(FlakyTestHistory.FLIP_THRESHOLD + 1, TWO);
+
+        assertThat(history.getFlakyTests(), is(ONE));
+    }
+
+    @Test
+    public void assertTestFailingInEveryBuildIsNotFlaky() throws Exception {
+        FlakyTestHistory history = newHistory();
+        for (int build = 1; build <= FlakyTestHistory.WINDOW; build++) {
+            history.update(build, ONE);
+        }
+
+        assertThat(history.getFlakyTests().length, is(0));
+    }
+
+    @Test
+    public void assertTestIsNoLongerFlakyWhenFlipsLeaveTheWindow() throws Exception {
+        FlakyTestHistory history = newHistory();
+        for (int build = 1; build <= 6; build++) {
+            history.update(build, (build % 2 == 1) ? ONE : HashedNames.EMPTY);
+        }
+        assertThat(history.getFlakyTests(), is(ONE));
+
+        for (int build = 7; build < 7 + FlakyTestHistory.WINDOW; build++) {
+            history.update(build, HashedNames.EMPTY);
+        }
+
+        assertThat(history.getFlakyTests().length, is(0));
+    }
+
+    @Test
+    public void assertOlderBuildsAreIgnored() throws Exception {
+        FlakyTestHistory history = newHistory();
+        history.update(10, HashedNames.EMPTY);
+        for (int build = 1; build <= 9; build++) {
+            history.update(build, (build % 2 == 1) ? ONE : HashedNames.EMPTY);
+        }
+
+        assertThat(history.getFlakyTests().length, is(0));
+    }
+
+    @Test
+    public void assertHistoryIsReadFromFile() throws Exception {
+        File file = new File(folder.getRoot(), FlakyTestHistory.FILENAME);
+        FlakyTestHistory history = new FlakyTestHistory(file);
+        for (int build = 1; build <= 5; build++) {
+            history.update(build, (build % 2 == 1) ? ONE : HashedNames.EMPTY);
+        }
+
+        FlakyTestHistory readHistory = new FlakyTestHistory(file);
+        assertThat(readHistory.getFlakyTests(), is(ONE));
+        readHistory.update(6, HashedNames.EMPTY);
+        readHistory.update(5, ONE);
+        assertThat(new FlakyTestHistory(file).getFlakyTests(), is(ONE));
+    }
+
+    @Test
+    public void assertFlakyFailedTestIsNotCountedByFailedTestsRules() throws Exception {
+        FlakyTestHistory history = newHistory();
+        for (int build = 1; build <= 5; build++) {
+            history.update(build, (build % 2 == 1) ? ONE : HashedNames.EMPTY);
+        }
+        EvaluationContext context = new EvaluationContext();
+        context.setAttribute(FlakyTestHistory.class, history);
+        AbstractBuild previousBuild = mockBuild(10);
+        AbstractBuild build = mockBuild(10, "a.Test.one", "a.Test.two");
+
+        RuleResult<Integer> result = new IncreasingFailedTestsRule(-1).evaluate(previousBuild, build, context);
+        assertThat(result.getPoints(), is(-1d));
+        assertNull(new RemovedFailedTestsRule().evaluate(build, mockBuild(10, "a.Test.two"), context));
+        assertThat(new IncreasingFailedTestsRule(-1).evaluate(previousBuild, build).getPoints(), is(-2d));
+    }
+
+    @Test
+    public void assertFlakyFailedTestIsNotCountedByTestCaseRules() throws Exception {
+        FlakyTestHistory history = newHistory();
+        for (int build = 1; build <= 5; build++) {
+            history.update(build, (build % 2 == 1) ? ONE : HashedNames.EMPTY);
+        }
+        EvaluationContext context = new EvaluationContext();
+        context.setAttribute(FlakyTestHistory.class, history);
+        AbstractBuild buildFailingTwo = mockBuild(10, "a.Test.two");
+        AbstractBuild buildFailingOne = mockBuild(10, "a.Test.one");
+
+        assertNull(new BrokenTestCasesRule().evaluate(buildFailingTwo, buildFailingOne, context));
+        assertNull(new FixedTestCasesRule().evaluate(buildFailingOne, buildFailingTwo, context));
+        assertThat(new FixedTestCasesRule().evaluate(buildFailingTwo, buildFailingOne, context).getPoints(), is(1d));
+        assertThat(new BrokenTestCasesRule().evaluate(buildFailingTwo, buildFailingOne).getPoints(), is(-1d));
+    }
+
+    private FlakyTestHistory newHistory() {
+        return new FlakyTestHistory(new File(folder.getRoot(), FlakyTestHistory.FILENAME));
+    }
+
+    private static AbstractBuild mockBuild(int totalCount, String... failedTests) {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getResult()).thenReturn(Result.UNSTABLE);
+        AbstractTestResultAction action = mock(AbstractTestResultAction.class);
+        when(action.getTotalCount()).thenReturn(totalCount);
+        when(action.getFailCount()).thenReturn(failedTests.length);
+        when(build.getTestResultAction()).thenReturn(action);
+        TestCountDigest.Holder holder = mock(TestCountDigest.Holder.class);
+        when(holder.getTestCountDigest()).thenReturn(new TestCountDigest(totalCount, failedTests.length, 0,
+                HashedNames.of(Arrays.asList(failedTests))));
+        when(build.getActions(TestCountDigest.Holder.class)).thenReturn(Arrays.asList(holder));
+        return build;
+    }
+}
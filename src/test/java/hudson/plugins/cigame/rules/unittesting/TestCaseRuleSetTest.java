@@ -0,0 +1,141 @@
+package hudson.plugins.cigame.rules.unittesting;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+
+import hudson.maven.MavenBuild;
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.cigame.model.RuleBook;
+import hudson.plugins.cigame.model.RuleResult;
+import hudson.plugins.cigame.model.ScoreCard;
+import hudson.plugins.cigame.model.TestCountDigest;
+import hudson.plugins.cigame.util.HashedNames;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class TestCaseRuleSetTest {
+
+    @Test
+    public void assertFixingOneTestAndBreakingAnotherScoresBoth() {
+        AbstractBuild previousBuild = mockBuild(Result.UNSTABLE, 10, "a.Test.one");
+        AbstractBuild build = mockBuild(Result.UNSTABLE, 10, "a.Test.two");
+
+        assertThat(new FixedTestCasesRule(2).evaluate(previousBuild, build).getPoints(), is(2d));
+        assertThat(new BrokenTestCasesRule(-3).evaluate(previousBuild, build).getPoints(), is(-3d));
+    }
+
+    @Test
+    public void assertTestsFailingInBothBuildsDoNotScore() {
+        AbstractBuild previousBuild = mockBuild(Result.UNSTABLE, 10, "a.Test.one", "a.Test.two");
+        AbstractBuild build = mockBuild(Result.UNSTABLE, 10, "a.Test.two", "a.Test.one");
+
+        assertNull(new FixedTestCasesRule().evaluate(previousBuild, build));
+        assertNull(new BrokenTestCasesRule().evaluate(previousBuild, build));
+    }
+
+    @Test
+    public void assertRemovedFailingTestsAreNotFixed() {
+        AbstractBuild previousBuild = mockBuild(Result.UNSTABLE, 10, "a.Test.one", "a.Test.two");
+        AbstractBuild build = mockBuild(Result.UNSTABLE, 9, "a.Test.three", "a.Test.four");
+
+        RuleResult<Integer> result = new FixedTestCasesRule().evaluate(previousBuild, build);
+
+        assertThat(result.getAdditionalData(), is(1));
+    }
+
+    @Test
+    public void assertFailedBuildsDoNotScore() {
+        AbstractBuild previousBuild = mockBuild(Result.FAILURE, 10, "a.Test.one");
+        AbstractBuild build = mockBuild(Result.UNSTABLE, 10, "a.Test.two");
+
+        assertNull(new FixedTestCasesRule().evaluate(previousBuild, build));
+        assertNull(new BrokenTestCasesRule().evaluate(build, mockBuild(Result.FAILURE, 10, "a.Test.one")));
+    }
+
+    @Test
+    public void assertBuildsWithoutFailedTestsKeptDoNotScore() {
+        AbstractBuild previousBuild = mock(AbstractBuild.class);
+        when(previousBuild.getResult()).thenReturn(Result.UNSTABLE);
+        TestCountDigest.Holder holder = mock(TestCountDigest.Holder.class);
+        when(holder.getTestCountDigest()).thenReturn(new TestCountDigest(10, 1, 0));
+        when(previousBuild.getActions(TestCountDigest.Holder.class)).thenReturn(Arrays.asList(holder));
+        AbstractBuild build = mockBuild(Result.UNSTABLE, 10, "a.Test.two");
+
+        assertNull(new BrokenTestCasesRule().evaluate(previousBuild, build));
+    }
+
+    @Test
+    public void assertTestCasesScoredByChangedTestCountsDoNotScore() {
+        AbstractBuild previousBuild = mockBuild(Result.UNSTABLE, 10, "a.Test.one");
+        AbstractBuild build = mockBuild(Result.UNSTABLE, 10, "a.Test.one", "a.Test.two");
+
+        assertNull(new BrokenTestCasesRule().evaluate(previousBuild, build));
+        assertNull(new FixedTestCasesRule().evaluate(build, previousBuild));
+    }
+
+    @Test
+    public void assertOneBrokenTestScoresOnceInRuleBook() {
+        AbstractBuild previousBuild = mockBuild(Result.SUCCESS, 10);
+        AbstractBuild build = mockBuild(Result.UNSTABLE, 10, "a.Test.one");
+        when(build.getPreviousBuild()).thenReturn(previousBuild);
+
+        ScoreCard scoreCard = new ScoreCard();
+        scoreCard.record(build, createRuleBook(), null);
+
+        assertThat(scoreCard.getTotalPoints(), is(-1d));
+    }
+
+    @Test
+    public void assertOneFixedTestScoresOnceInRuleBook() {
+        AbstractBuild previousBuild = mockBuild(Result.UNSTABLE, 10, "a.Test.one");
+        AbstractBuild build = mockBuild(Result.SUCCESS, 10);
+        when(build.getPreviousBuild()).thenReturn(previousBuild);
+
+        ScoreCard scoreCard = new ScoreCard();
+        scoreCard.record(build, createRuleBook(), null);
+
+        assertThat(scoreCard.getTotalPoints(), is(1d));
+    }
+
+    @Test
+    public void assertModuleResultsAreAggregated() {
+        AbstractTestCaseRule rule = new BrokenTestCasesRule();
+        RuleResult<Integer> first = rule.evaluate(mockBuild(MavenBuild.class, Result.UNSTABLE, 5, "a.Test.x"), 
+                mockBuild(MavenBuild.class, Result.UNSTABLE, 5, "a.Test.one"));
+        RuleResult<Integer> second = rule.evaluate(mockBuild(MavenBuild.class, Result.UNSTABLE, 5, "b.Test.x", "b.Test.y"),
+                mockBuild(MavenBuild.class, Result.UNSTABLE, 5, "b.Test.one", "b.Test.two"));
+
+        RuleResult<?> result = rule.aggregate(Arrays.asList(first, second, null));
+
+        assertThat(result.getPoints(), is(-3d));
+    }
+
+    private static RuleBook createRuleBook() {
+        RuleBook ruleBook = new RuleBook();
+        ruleBook.addRuleSet(new UnitTestingRuleSet());
+        ruleBook.addRuleSet(new TestCaseRuleSet());
+        return ruleBook;
+    }
+
+    private static AbstractBuild mockBuild(Result result, int totalCount, String... failedTests) {
+        return mockBuild(AbstractBuild.class, result, totalCount, failedTests);
+    }
+
+    private static <T extends AbstractBuild> T mockBuild(Class<T> type, Result result, int totalCount, String... failedTests) {
+        T build = mock(type);
+        when(build.getResult()).thenReturn(result);
+        TestCountDigest.Holder holder = mock(TestCountDigest.Holder.class);
+        when(holder.getTestCountDigest()).thenReturn(new TestCountDigest(totalCount, failedTests.length, 0,
+                HashedNames.of(Arrays.asList(failedTests))));
+        when(build.getActions(TestCountDigest.Holder.class)).thenReturn(Arrays.asList(holder));
+        AbstractTestResultAction action = new AbstractUnitTestsRule.TestCounts(totalCount, failedTests.length, 0);
+        when(build.getTestResultAction()).thenReturn(action);
+        return build;
+    }
+}
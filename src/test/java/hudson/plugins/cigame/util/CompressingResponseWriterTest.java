@@ -0,0 +1,52 @@
+package hudson.plugins.cigame.util;
+
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+public class CompressingResponseWriterTest {
+
+    @Test
+    public void assertSmallBodyIsNotCompressed() throws Exception {
+        StaplerRequest req = mock(StaplerRequest.class);
+        StaplerResponse rsp = mock(StaplerResponse.class);
+        StringWriter body = new StringWriter();
+        PrintWriter writer = new PrintWriter(body);
+        when(rsp.getWriter()).thenReturn(writer);
+
+        CompressingResponseWriter out = new CompressingResponseWriter(req, rsp, 10);
+        out.write("0123");
+        out.write("456789");
+        out.close();
+
+        assertFalse(out.isCompressing());
+        assertThat(body.toString(), is("0123456789"));
+        verify(rsp, never()).getCompressedWriter(req);
+    }
+
+    @Test
+    public void assertLargeBodyIsCompressed() throws Exception {
+        StaplerRequest req = mock(StaplerRequest.class);
+        StaplerResponse rsp = mock(StaplerResponse.class);
+        StringWriter body = new StringWriter();
+        when(rsp.getCompressedWriter(req)).thenReturn(body);
+
+        CompressingResponseWriter out = new CompressingResponseWriter(req, rsp, 10);
+        out.write("0123");
+        out.write("456789".toCharArray());
+        out.write("abc");
+        out.close();
+
+        assertTrue(out.isCompressing());
+        assertThat(body.toString(), is("0123456789abc"));
+        verify(rsp, never()).getWriter();
+        verify(rsp).setHeader("Vary", "Accept-Encoding");
+    }
+}
@@ -0,0 +1,44 @@
+package hudson.plugins.cigame.util;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class HashedNamesTest {
+
+    @Test
+    public void assertSetIsSortedWithoutDuplicates() {
+        long[] set = HashedNames.of(Arrays.asList("c", "a", "b", "a"));
+
+        assertThat(set.length, is(3));
+        for (int i = 1; i < set.length; i++) {
+            assertThat(set[i - 1] < set[i], is(true));
+        }
+    }
+
+    @Test
+    public void assertNamesNotInOtherSetAreCounted() {
+        long[] set = HashedNames.of(Arrays.asList("a", "b", "c", "d"));
+        long[] other = HashedNames.of(Arrays.asList("b", "d", "e"));
+
+        assertThat(HashedNames.countNotIn(set, other), is(2));
+        assertThat(HashedNames.countNotIn(other, set), is(1));
+        assertThat(HashedNames.countNotIn(set, set), is(0));
+        assertThat(HashedNames.countNotIn(set, HashedNames.EMPTY), is(4));
+        assertThat(HashedNames.countNotIn(HashedNames.of(Collections.<String>emptyList()), set), is(0));
+    }
+
+    @Test
+    public void assertNamesInOtherSetAreLeftOut() {
+        long[] set = HashedNames.of(Arrays.asList("a", "b", "c", "d"));
+        long[] other = HashedNames.of(Arrays.asList("b", "d", "e"));
+
+        assertThat(HashedNames.notIn(set, other), is(HashedNames.of(Arrays.asList("a", "c"))));
+        assertThat(HashedNames.notIn(set, HashedNames.EMPTY), is(set));
+        assertThat(HashedNames.notIn(set, set).length, is(0));
+    }
+}
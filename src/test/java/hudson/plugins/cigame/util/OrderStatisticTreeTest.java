@@ -0,0 +1,80 @@
+package hudson.plugins.cigame.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class OrderStatisticTreeTest {
+
+    @Test
+    public void assertHeadCountIsNumberOfSmallerElements() {
+        OrderStatisticTree<Integer> tree = createTree(10, 20, 30, 40);
+        assertThat(tree.headCount(5), is(0));
+        assertThat(tree.headCount(10), is(0));
+        assertThat(tree.headCount(25), is(2));
+        assertThat(tree.headCount(40), is(3));
+        assertThat(tree.headCount(45), is(4));
+    }
+
+    @Test
+    public void assertIteratorStartsAtFirstElementNotLessThanGivenElement() {
+        OrderStatisticTree<Integer> tree = createTree(10, 20, 30, 40);
+        assertThat(toList(tree.iterator(20)).toString(), is("[20, 30, 40]"));
+        assertThat(toList(tree.iterator(25)).toString(), is("[30, 40]"));
+        assertThat(toList(tree.iterator(45)).toString(), is("[]"));
+    }
+
+    @Test
+    public void assertDuplicatesAreNotAdded() {
+        OrderStatisticTree<Integer> tree = createTree(10, 20);
+        assertThat(tree.add(10), is(false));
+        assertThat(tree.size(), is(2));
+        assertThat(tree.remove(15), is(false));
+    }
+
+    @Test
+    public void assertTreeBehavesAsSortedSetForRandomOperations() {
+        Random random = new Random(42);
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<Integer>();
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            Integer value = random.nextInt(500);
+            if (random.nextBoolean()) {
+                assertThat(tree.add(value), is(expected.add(value)));
+            } else {
+                assertThat(tree.remove(value), is(expected.remove(value)));
+            }
+            assertThat(tree.size(), is(expected.size()));
+            assertThat(tree.headCount(value), is(expected.headSet(value).size()));
+            assertThat(tree.contains(value), is(expected.contains(value)));
+        }
+        assertThat(toList(tree.iterator()), is((List<Integer>) new ArrayList<Integer>(expected)));
+        int index = 0;
+        for (Integer value : expected) {
+            assertThat(tree.get(index++), is(value));
+        }
+    }
+
+    private static OrderStatisticTree<Integer> createTree(int... values) {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<Integer>();
+        for (int value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    private static List<Integer> toList(Iterator<Integer> iterator) {
+        List<Integer> list = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+}